@@ -0,0 +1,59 @@
+package org.announcementserver.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.announcementserver.ws.cli.FrontEnd;
+
+/*
+* Bulk import into a running cluster of 3f + 1 servers
+*
+* Posts `posts` announcements to the personal board of client1, one post
+* per request and then -Dcli.batch posts per postBatch request, and
+* prints the time each took:
+*
+*   java -Dkeystore.dir=announcementServer-ws-cli/src/main/resources/ \
+*     -cp announcementServer-bench/target/benchmarks.jar \
+*     org.announcementserver.bench.BatchImport localhost 1 1000
+*/
+
+public class BatchImport {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("Usage: java " + BatchImport.class.getName() + " host faults posts");
+			return;
+		}
+
+		String host = args[0];
+		String faults = args[1];
+		int posts = Integer.valueOf(args[2]);
+
+		FrontEnd frontEnd = new FrontEnd(host, faults);
+		frontEnd.init("client1");
+		frontEnd.register();
+
+		List<String> messages = new ArrayList<>();
+		for (int i = 0; i < posts; i++) {
+			messages.add("import " + i);
+		}
+		List<List<String>> references = Collections.nCopies(posts, Collections.<String>emptyList());
+
+		long start = System.nanoTime();
+		for (String message : messages) {
+			frontEnd.post(message, new ArrayList<>());
+		}
+		long single = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		frontEnd.postBatch(messages, references);
+		long batched = System.nanoTime() - start;
+
+		int requests = (posts + FrontEnd.BATCH - 1) / FrontEnd.BATCH;
+		System.out.println(String.format("f=%s posts=%d batch=%d", faults, posts, FrontEnd.BATCH));
+		System.out.println(String.format("post       %d requests per replica, %.1f s", posts, single / 1e9));
+		System.out.println(String.format("postBatch  %d requests per replica, %.1f s", requests, batched / 1e9));
+		System.exit(0);
+	}
+}
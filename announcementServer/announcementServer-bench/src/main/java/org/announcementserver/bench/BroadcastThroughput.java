@@ -0,0 +1,83 @@
+package org.announcementserver.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.announcementserver.broadcast.ReliableBroadcast;
+import org.announcementserver.common.CryptoTools;
+
+/*
+* Throughput of the reliable broadcast among n servers on this host
+*
+* For each n, n servers (f = (n - 1) / 3) are started in this JVM and
+* every one of them is given the same `writes` general board writes, as a
+* client writing to all of them would. Prints the writes delivered by all
+* servers per second and the messages per signed frame:
+*
+*   java -Dkeystore.dir=announcementServer-ws/src/main/resources/ \
+*     -cp announcementServer-bench/target/benchmarks.jar \
+*     org.announcementserver.bench.BroadcastThroughput 2000 4 7 16
+*/
+
+public class BroadcastThroughput {
+	/* Writes waiting for delivery at each server at once */
+	private static final int IN_FLIGHT = Integer.getInteger("bench.inflight", 64);
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: java " + BroadcastThroughput.class.getName() + " writes n...");
+			return;
+		}
+
+		int writes = Integer.valueOf(args[0]);
+		run(4, writes, false); // warm up
+		for (int i = 1; i < args.length; i++) {
+			run(Integer.valueOf(args[i]), writes, true);
+		}
+	}
+
+	private static void run(int replicas, int writes, boolean print) throws Exception {
+		int faults = (replicas - 1) / 3;
+
+		List<ReliableBroadcast> servers = new ArrayList<>();
+		for (int id = 1; id <= replicas; id++) {
+			ReliableBroadcast server = new ReliableBroadcast("localhost", id, replicas, faults);
+			server.start();
+			servers.add(server);
+		}
+
+		byte[][] digests = new byte[writes][];
+		for (int wts = 0; wts < writes; wts++) {
+			digests[wts] = CryptoTools.encoder().string("client1").number(wts).digest();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(replicas * IN_FLIGHT);
+		List<Future<?>> delivered = new ArrayList<>();
+		long start = System.nanoTime();
+
+		for (int wts = 0; wts < writes; wts++) {
+			for (ReliableBroadcast server : servers) {
+				int write = wts;
+				delivered.add(executor.submit(() -> server.deliver("client1", write, digests[write])));
+			}
+		}
+		for (Future<?> delivery : delivered) {
+			delivery.get();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long frames = servers.stream().mapToLong(ReliableBroadcast::getFrames).sum();
+		long messages = servers.stream().mapToLong(ReliableBroadcast::getMessages).sum();
+
+		if (print) System.out.println(String.format("n=%d f=%d: %d writes in %.2f s, %.0f writes/s, %.1f messages per frame",
+			replicas, faults, writes, seconds, writes / seconds, (double) messages / frames));
+
+		executor.shutdownNow();
+		for (ReliableBroadcast server : servers) {
+			server.stop();
+		}
+	}
+}
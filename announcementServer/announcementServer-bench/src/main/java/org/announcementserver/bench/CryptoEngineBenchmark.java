@@ -0,0 +1,97 @@
+package org.announcementserver.bench;
+
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+import org.announcementserver.common.CryptoTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Crypto engines: CryptoTools' per-thread engines against looking up a
+* MessageDigest and a Cipher on every call
+*
+* One thread by default, so scores are operations per second per core;
+* run with -t to see how they scale. Run from /announcementServer.
+*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(value = 1, jvmArgsAppend = "-Dkeystore.dir=" + SignatureBenchmark.DIRECTORY)
+public class CryptoEngineBenchmark {
+
+	private static final String[] MESSAGE = { "client1", "server1", "0", "post", "General", "0" };
+
+	private PrivateKey privateKey;
+	private PublicKey publicKey;
+	private String signature;
+
+	@Setup
+	public void keys() throws Exception {
+		privateKey = CryptoTools.getPrivateKey(MESSAGE[0]);
+		publicKey = CryptoTools.getPublicKey(MESSAGE[0]);
+		signature = CryptoTools.makeSignature(MESSAGE);
+	}
+
+	// --- Hash -------------
+
+	@Benchmark
+	public String newEngineHash() throws Exception {
+		MessageDigest hashFunc = MessageDigest.getInstance("SHA-256");
+		for (String arg : MESSAGE) {
+			hashFunc.update(arg.getBytes());
+		}
+		return Base64.getEncoder().encodeToString(hashFunc.digest());
+	}
+
+	@Benchmark
+	public String reusedEngineHash() throws Exception {
+		return CryptoTools.makeHash(MESSAGE);
+	}
+
+	// --- Sign -------------
+
+	@Benchmark
+	public String newEngineSign() throws Exception {
+		Cipher cipher = Cipher.getInstance("RSA");
+		cipher.init(Cipher.ENCRYPT_MODE, privateKey);
+		return Base64.getEncoder().encodeToString(cipher.doFinal(Base64.getDecoder().decode(newEngineHash())));
+	}
+
+	@Benchmark
+	public String reusedEngineSign() throws Exception {
+		return CryptoTools.makeSignature(MESSAGE);
+	}
+
+	// --- Verify -------------
+
+	@Benchmark
+	public String newEngineVerify() throws Exception {
+		Cipher cipher = Cipher.getInstance("RSA");
+		cipher.init(Cipher.DECRYPT_MODE, publicKey);
+		return Base64.getEncoder().encodeToString(cipher.doFinal(Base64.getDecoder().decode(signature)));
+	}
+
+	@Benchmark
+	public String reusedEngineVerify() throws Exception {
+		return CryptoTools.decryptSignature(MESSAGE[0], signature);
+	}
+}
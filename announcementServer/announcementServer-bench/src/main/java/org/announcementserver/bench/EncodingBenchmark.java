@@ -0,0 +1,105 @@
+package org.announcementserver.bench;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.common.MessageEncoder;
+import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.ws.AnnouncementMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Message hashing: MessageEncoder against the previous String lists
+*
+* Hashes a read response carrying `posts` announcements, and, as the client
+* and the servers do for every post, the hash a post is signed on and the
+* board hash chain of the response. Run with -prof gc to see the
+* allocation per message (gc.alloc.rate.norm).
+*/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int posts;
+
+	private List<AnnouncementMessage> announcements;
+
+	@Setup
+	public void announcements() {
+		announcements = new ArrayList<>();
+
+		for (int i = 1; i <= posts; i++) {
+			AnnouncementMessage post = new AnnouncementMessage();
+			post.setWriter("client1");
+			post.setMessage("announcement number " + i);
+			post.getAnnouncementList().add("pa1c" + i);
+			post.setWts(i);
+			post.setType("Personal");
+			post.setSignature("c2lnbmF0dXJlIG9mIHRoZSBhbm5vdW5jZW1lbnQgbnVtYmVyIA==" + i);
+			announcements.add(post);
+		}
+	}
+
+	@Benchmark
+	public byte[] stringListHash() throws Exception {
+		List<String> toHash = new ArrayList<>();
+		toHash.add("server1");
+		toHash.add("client1");
+		toHash.add(String.valueOf(42));
+		toHash.add(String.valueOf(7));
+
+		for (AnnouncementMessage post : announcements) {
+			toHash.add(post.getWriter());
+			toHash.add(post.getMessage());
+			toHash.add(post.getAnnouncementList().toString());
+			toHash.add(String.valueOf(post.getWts()));
+			toHash.add(post.getType());
+			toHash.add(post.getSignature());
+		}
+
+		MessageDigest hashFunc = MessageDigest.getInstance("SHA-256");
+		for (String arg : toHash.toArray(new String[0])) {
+			hashFunc.update(arg.getBytes());
+		}
+		return hashFunc.digest();
+	}
+
+	@Benchmark
+	public byte[] encoderHash() {
+		MessageEncoder encoder = CryptoTools.encoder()
+			.string("server1")
+			.string("client1")
+			.number(42)
+			.number(7);
+		return AnnouncementTools.encodePosts(encoder, announcements).digest();
+	}
+
+	@Benchmark
+	public byte[] postHash() {
+		return AnnouncementTools.encodePost(CryptoTools.encoder(), announcements.get(0), false).digest();
+	}
+
+	@Benchmark
+	public byte[] chainDigest() {
+		return AnnouncementTools.chain(AnnouncementTools.EMPTY_DIGEST, announcements);
+	}
+}
@@ -0,0 +1,109 @@
+package org.announcementserver.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementBoard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* General board: AnnouncementBoard against the previous ArrayList + sort
+*
+* Each operation works on a board already holding `posts` announcements.
+* In order posts are the common case, late posts land in the middle.
+*/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneralBoardBenchmark {
+
+	// Same wts posts are ordered by reverse author name
+	private static final String[] AUTHORS = { "client3", "client2", "client1" };
+
+	@Param({ "100000", "1000000" })
+	public int posts;
+
+	private ArrayList<Announcement> list;
+	private AnnouncementBoard board;
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void fill() {
+		list = new ArrayList<>();
+		board = new AnnouncementBoard();
+
+		for (next = 0; next < posts; next++) {
+			Announcement announcement = announcement(next);
+			list.add(announcement);
+			board.add(announcement);
+		}
+	}
+
+	// --- Post General -------------
+
+	@Benchmark
+	public int listPostInOrder() {
+		list.add(announcement(next++));
+		list.sort(null);
+		return list.size();
+	}
+
+	@Benchmark
+	public int boardPostInOrder() {
+		board.add(announcement(next++));
+		return board.size();
+	}
+
+	@Benchmark
+	public int listPostLate() {
+		list.add(announcement(posts / 2));
+		list.sort(null);
+		return list.size();
+	}
+
+	@Benchmark
+	public int boardPostLate() {
+		board.add(announcement(posts / 2));
+		return board.size();
+	}
+
+	// --- Read General -------------
+
+	@Benchmark
+	public List<Announcement> listReadLast() {
+		int end = list.size();
+		return new ArrayList<>(list.subList(end - 10, end));
+	}
+
+	@Benchmark
+	public List<Announcement> boardReadLast() {
+		List<Announcement> snapshot = board.snapshot();
+		int end = snapshot.size();
+		return snapshot.subList(end - 10, end);
+	}
+
+	// --- Auxiliary functions -------------
+
+	private static Announcement announcement(int i) {
+		Announcement res = new Announcement(AUTHORS[i % AUTHORS.length], "post" + i, i / AUTHORS.length);
+		res.setType("General");
+		return res;
+	}
+}
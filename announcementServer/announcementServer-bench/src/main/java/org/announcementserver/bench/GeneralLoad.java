@@ -0,0 +1,96 @@
+package org.announcementserver.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.announcementserver.ws.cli.FrontEnd;
+
+/*
+* General board write throughput of many concurrent writers on a running
+* cluster of 3f + 1 servers
+*
+* `writers` threads, spread over `clients` front ends (one per client
+* keystore), each post `posts` times to the general board. Concurrent
+* posts of a front end are combined into batches; compare with
+* -Dcli.combine=false, where each post is written on its own:
+*
+*   java -Dkeystore.dir=announcementServer-ws-cli/src/main/resources/ \
+*     -cp announcementServer-bench/target/benchmarks.jar \
+*     org.announcementserver.bench.GeneralLoad localhost 1 3 60 20
+*/
+
+public class GeneralLoad {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 5) {
+			System.err.println("Usage: java " + GeneralLoad.class.getName() + " host faults clients writers posts");
+			return;
+		}
+
+		String host = args[0];
+		String faults = args[1];
+		int clients = Integer.valueOf(args[2]);
+		int writers = Integer.valueOf(args[3]);
+		int posts = Integer.valueOf(args[4]);
+
+		List<FrontEnd> frontEnds = new ArrayList<>();
+		for (int i = 1; i <= clients; i++) {
+			FrontEnd frontEnd = new FrontEnd(host, faults);
+			frontEnd.init("client" + i);
+			frontEnd.register();
+			frontEnds.add(frontEnd);
+		}
+
+		List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+		AtomicInteger failed = new AtomicInteger();
+		List<Thread> workers = new ArrayList<>();
+		long start = System.nanoTime();
+
+		for (int w = 0; w < writers; w++) {
+			FrontEnd frontEnd = frontEnds.get(w % clients);
+			int writer = w;
+			Thread worker = new Thread(() -> {
+				for (int post = 0; post < posts; post++) {
+					long before = System.nanoTime();
+					try {
+						frontEnd.postGeneral("writer " + writer + " post " + post, new ArrayList<>());
+						latencies.add(System.nanoTime() - before);
+					} catch (Exception e) {
+						failed.incrementAndGet();
+						System.out.println("Post failed: " + e.getMessage());
+					}
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		long elapsed = System.nanoTime() - start;
+		Long[] sorted = latencies.toArray(new Long[0]);
+		Arrays.sort(sorted);
+
+		long batches = 0;
+		for (FrontEnd frontEnd : frontEnds) {
+			batches += frontEnd.getGeneralBatcher().getBatches();
+		}
+
+		System.out.println(String.format("combine=%s f=%s clients=%d writers=%d posts=%d failed=%d", FrontEnd.COMBINE, faults,
+			clients, writers, sorted.length, failed.get()));
+		System.out.println(String.format("throughput %.1f posts/s", sorted.length / (elapsed / 1e9)));
+		System.out.println(String.format("p50 %.1f ms, p99 %.1f ms", millis(sorted, 0.50), millis(sorted, 0.99)));
+		if (batches > 0) System.out.println(String.format("%.1f posts per batch", sorted.length / (double) batches));
+		System.exit(0);
+	}
+
+	private static double millis(Long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
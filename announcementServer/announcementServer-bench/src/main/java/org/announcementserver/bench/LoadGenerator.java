@@ -0,0 +1,158 @@
+package org.announcementserver.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.announcementserver.ws.cli.FrontEnd;
+
+/*
+* Load on a cluster of 3f + 1 servers (e.g. a LocalCluster), reporting the
+* throughput and latency percentiles of each operation
+*
+* `users` threads share `clients` front ends (one per client keystore) and
+* run the operations of -Dload.ops (default: post,postGeneral,read,
+* readGeneral) in turn for `seconds`. Without a `rate` the load is a
+* closed loop, each user issuing its next operation when the last one
+* returns. With a `rate` (operations per second) it is an open loop:
+* operations are issued on a fixed schedule to the users, and latencies
+* count from the scheduled time, so time spent waiting for a free user
+* is included:
+*
+*   java -Dkeystore.dir=announcementServer-ws-cli/src/main/resources/ \
+*     -cp announcementServer-bench/target/benchmarks.jar \
+*     org.announcementserver.bench.LoadGenerator localhost 1 3 30 20 [50]
+*/
+
+public class LoadGenerator {
+	private static final String[] OPS = System.getProperty("load.ops", "post,postGeneral,read,readGeneral").split(",");
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 5) {
+			System.err.println("Usage: java " + LoadGenerator.class.getName() + " host faults clients users seconds [rate]");
+			return;
+		}
+
+		String host = args[0];
+		String faults = args[1];
+		int clients = Integer.valueOf(args[2]);
+		int users = Integer.valueOf(args[3]);
+		long seconds = Long.valueOf(args[4]);
+		double rate = (args.length > 5) ? Double.valueOf(args[5]) : 0;
+
+		Map<String, List<Long>> latencies = new LinkedHashMap<>();
+		Map<String, AtomicInteger> failures = new LinkedHashMap<>();
+		for (String op : OPS) {
+			if (!Arrays.asList("post", "postGeneral", "read", "readGeneral").contains(op)) {
+				System.err.println("Unknown operation " + op);
+				return;
+			}
+			latencies.put(op, Collections.synchronizedList(new ArrayList<>()));
+			failures.put(op, new AtomicInteger());
+		}
+
+		List<FrontEnd> frontEnds = new ArrayList<>();
+		for (int i = 1; i <= clients; i++) {
+			FrontEnd frontEnd = new FrontEnd(host, faults);
+			frontEnd.init("client" + i);
+			frontEnd.register();
+			frontEnds.add(frontEnd);
+		}
+
+		long start = System.nanoTime();
+		long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+		if (rate > 0) {
+			// Open loop: operation k is due at start + k / rate
+			ExecutorService pool = Executors.newFixedThreadPool(users);
+			long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+			int k = 0;
+			for (long due = start; due < end; due = start + ++k * interval) {
+				long wait = due - System.nanoTime();
+				if (wait > 0) LockSupport.parkNanos(wait);
+
+				FrontEnd frontEnd = frontEnds.get(k % clients);
+				String op = OPS[k % OPS.length];
+				int n = k;
+				long scheduled = due;
+				pool.execute(() -> run(frontEnd, op, n, scheduled, latencies, failures));
+			}
+			pool.shutdown();
+			pool.awaitTermination(1, TimeUnit.HOURS);
+		} else {
+			List<Thread> workers = new ArrayList<>();
+			for (int u = 0; u < users; u++) {
+				FrontEnd frontEnd = frontEnds.get(u % clients);
+				int user = u;
+				Thread worker = new Thread(() -> {
+					for (int i = 0; System.nanoTime() < end; i++) {
+						run(frontEnd, OPS[(user + i) % OPS.length], i, System.nanoTime(), latencies, failures);
+					}
+				});
+				worker.start();
+				workers.add(worker);
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		}
+
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		long total = 0;
+
+		System.out.println(String.format("%s f=%s clients=%d users=%d seconds=%d", (rate > 0) ? "open loop, " + rate + " ops/s," : "closed loop,",
+			faults, clients, users, seconds));
+		for (String op : OPS) {
+			Long[] sorted = latencies.get(op).toArray(new Long[0]);
+			Arrays.sort(sorted);
+			total += sorted.length;
+
+			if (sorted.length == 0) {
+				System.out.println(String.format("%-12s none done, failed %d", op, failures.get(op).get()));
+				continue;
+			}
+			System.out.println(String.format("%-12s %6d done, failed %d, %.1f ops/s, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms", op,
+				sorted.length, failures.get(op).get(), sorted.length / elapsed, millis(sorted, 0.50), millis(sorted, 0.90),
+				millis(sorted, 0.99), millis(sorted, 1.0)));
+		}
+		System.out.println(String.format("throughput %.1f ops/s", total / elapsed));
+		System.exit(0);
+	}
+
+	/* Latency from `since`, the scheduled time in an open loop */
+	private static void run(FrontEnd frontEnd, String op, int n, long since, Map<String, List<Long>> latencies,
+			Map<String, AtomicInteger> failures) {
+		try {
+			switch (op) {
+				case "post":
+					frontEnd.post("load " + n, new ArrayList<>());
+					break;
+				case "postGeneral":
+					frontEnd.postGeneral("load " + n, new ArrayList<>());
+					break;
+				case "read":
+					frontEnd.read("client1", 10);
+					break;
+				default:
+					frontEnd.readGeneral(10);
+			}
+			latencies.get(op).add(System.nanoTime() - since);
+		} catch (Exception e) {
+			failures.get(op).incrementAndGet();
+			System.out.println(String.format("%s failed: %s", op, e.getMessage()));
+		}
+	}
+
+	private static double millis(Long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
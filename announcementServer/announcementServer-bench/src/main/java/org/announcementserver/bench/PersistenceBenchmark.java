@@ -0,0 +1,120 @@
+package org.announcementserver.bench;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.announcementserver.utils.PersistenceUtils;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Snapshot and recovery of a server holding `posts` general board posts
+* (and as many personal posts of client1)
+*
+* Recovery reads the snapshot and replays the `logged` operations after
+* it. Files go to src/main/resources/, so this is run from
+* /announcementServer-ws.
+*/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PersistenceBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Snapshot {
+		static final String SERVER_ID = "snapshotBench";
+
+		@Param({ "10000", "100000" })
+		public int posts;
+
+		AnnouncementServer server;
+
+		@Setup
+		public void fill() {
+			server = filled(SERVER_ID, posts);
+		}
+
+		@TearDown
+		public void delete() {
+			PersistenceUtils.close(SERVER_ID);
+			ServerBenchmark.delete(SERVER_ID);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Recovery {
+		static final String SERVER_ID = "recoveryBench";
+
+		@Param({ "10000", "100000" })
+		public int posts;
+
+		@Param({ "500" })
+		public int logged;
+
+		@Setup
+		public void persist() {
+			AnnouncementServer server = filled(SERVER_ID, posts);
+			PersistenceUtils.serialize(server, SERVER_ID);
+
+			int sn = 0;
+			for (int wts = posts + 1; wts <= posts + logged; wts++) {
+				sn = server.postGeneral(new Announcement("client1", "general post " + wts, wts), sn) + 1;
+			}
+			PersistenceUtils.close(SERVER_ID);
+		}
+
+		@TearDown
+		public void delete() {
+			PersistenceUtils.close(SERVER_ID);
+			AnnouncementServer.setInstance(null);
+			ServerBenchmark.delete(SERVER_ID);
+		}
+	}
+
+	@Benchmark
+	public AnnouncementServer serialize(Snapshot state) {
+		PersistenceUtils.serialize(state.server, Snapshot.SERVER_ID);
+		return state.server;
+	}
+
+	@Benchmark
+	public AnnouncementServer recover(Recovery state) {
+		return PersistenceUtils.recover(Recovery.SERVER_ID);
+	}
+
+	// --- Auxiliary functions -------------
+
+	private static AnnouncementServer filled(String serverId, int posts) {
+		String signature = String.join("", Collections.nCopies(43, "signatur")); // as long as an RSA one
+		AnnouncementServer server = AnnouncementServer.create(serverId);
+		PersistenceUtils.start(server, serverId);
+
+		server.addClient("client1");
+		for (int wts = 1; wts <= posts; wts++) {
+			Announcement personal = new Announcement("client1", "personal post " + wts, wts);
+			personal.setSignature(signature);
+			server.putPersonal("client1", personal);
+
+			Announcement general = new Announcement("client1", "general post " + wts, wts);
+			general.setSignature(signature);
+			server.putGeneral(general);
+		}
+		server.wtss.put("client1", posts);
+		return server;
+	}
+}
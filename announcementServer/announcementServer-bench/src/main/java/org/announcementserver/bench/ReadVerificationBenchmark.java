@@ -0,0 +1,124 @@
+package org.announcementserver.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.ws.AnnouncementMessage;
+import org.announcementserver.ws.cli.SignatureCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Post signatures of a read: verifying every post of every replica, as
+* Client.verifySigns did, against the client's SignatureCache
+*
+* A read returns the same `posts` announcements from `replicas` servers.
+* The cached read verifies the `fresh` newest posts only, the rest were
+* verified by earlier reads. Keystores are read from keystore.dir, run
+* from /announcementServer.
+*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dkeystore.dir=" + SignatureBenchmark.DIRECTORY)
+public class ReadVerificationBenchmark {
+
+	@Param({ "10000" })
+	public int posts;
+
+	@Param({ "4" })
+	public int replicas;
+
+	@Param({ "10" })
+	public int fresh;
+
+	private List<AnnouncementMessage> board;
+	private SignatureCache cache;
+
+	@Setup
+	public void board() throws Exception {
+		board = new ArrayList<>();
+
+		for (int i = 1; i <= posts; i++) {
+			AnnouncementMessage post = new AnnouncementMessage();
+			post.setWriter("client1");
+			post.setMessage("announcement number " + i);
+			post.setWts(i);
+			post.setType("General");
+			post.setSignature(CryptoTools.makeSignature("client1", AnnouncementTools.encodePost(CryptoTools.encoder(), post, false).digest()));
+			board.add(post);
+		}
+	}
+
+	/* Every post but the newest ones was seen by an earlier read */
+	@Setup(Level.Invocation)
+	public void cache() {
+		if (cache == null) {
+			cache = new SignatureCache();
+			cache.verifyAll(board);
+		}
+		for (AnnouncementMessage post : board.subList(posts - fresh, posts)) {
+			post.setMessage(post.getMessage() + ".");
+			post.setSignature(resign(post));
+		}
+	}
+
+	@Benchmark
+	public boolean uncachedRead() throws Exception {
+		boolean valid = true;
+
+		for (int r = 0; r < replicas; r++) {
+			for (AnnouncementMessage post : board) {
+				byte[] hash = AnnouncementTools.encodePost(CryptoTools.encoder(), post, false).digest();
+				valid &= CryptoTools.verifySignature(post.getWriter(), hash, post.getSignature());
+			}
+		}
+
+		return valid;
+	}
+
+	@Benchmark
+	public boolean cachedRead() throws Exception {
+		List<Thread> threads = new ArrayList<>();
+		boolean[] valid = new boolean[replicas];
+
+		// One thread per replica, as the front end reads them
+		for (int r = 0; r < replicas; r++) {
+			final int replica = r;
+			Thread thread = new Thread(() -> valid[replica] = cache.verifyAll(board));
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		return valid[0] && valid[replicas - 1];
+	}
+
+	// --- Auxiliary functions -------------
+
+	private static String resign(AnnouncementMessage post) {
+		try {
+			return CryptoTools.makeSignature("client1", AnnouncementTools.encodePost(CryptoTools.encoder(), post, false).digest());
+		} catch (Exception e) {
+			throw new RuntimeException(e.getMessage());
+		}
+	}
+}
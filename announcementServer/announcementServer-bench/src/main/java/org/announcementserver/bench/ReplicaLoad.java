@@ -0,0 +1,98 @@
+package org.announcementserver.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.announcementserver.ws.cli.FrontEnd;
+
+/*
+* Load on a running cluster of 3f + 1 servers
+*
+* `clients` front ends, one per client keystore, each post and read the
+* general board `ops` times concurrently. Prints the latency percentiles
+* and the peak number of threads of the client JVM. Compare the
+* asynchronous stubs with the blocking ones with -Dcli.async=false:
+*
+*   java -Dkeystore.dir=announcementServer-ws-cli/src/main/resources/ \
+*     -cp announcementServer-bench/target/benchmarks.jar \
+*     org.announcementserver.bench.ReplicaLoad localhost 1 3 200
+*/
+
+public class ReplicaLoad {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4) {
+			System.err.println("Usage: java " + ReplicaLoad.class.getName() + " host faults clients ops");
+			return;
+		}
+
+		String host = args[0];
+		String faults = args[1];
+		int clients = Integer.valueOf(args[2]);
+		int ops = Integer.valueOf(args[3]);
+
+		List<FrontEnd> frontEnds = new ArrayList<>();
+		for (int i = 1; i <= clients; i++) {
+			FrontEnd frontEnd = new FrontEnd(host, faults);
+			frontEnd.init("client" + i);
+			frontEnd.register();
+			frontEnds.add(frontEnd);
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.resetPeakThreadCount();
+
+		List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> workers = new ArrayList<>();
+		long start = System.nanoTime();
+
+		for (FrontEnd frontEnd : frontEnds) {
+			Thread worker = new Thread(() -> {
+				for (int op = 0; op < ops; op++) {
+					long before = System.nanoTime();
+					try {
+						if (op % 2 == 0) {
+							frontEnd.postGeneral("load " + op, new ArrayList<>());
+						} else {
+							frontEnd.readGeneral(10);
+						}
+					} catch (Exception e) {
+						System.out.println("Operation failed: " + e.getMessage());
+					}
+					latencies.add(System.nanoTime() - before);
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		long elapsed = System.nanoTime() - start;
+		Long[] sorted = latencies.toArray(new Long[0]);
+		Arrays.sort(sorted);
+
+		System.out.println(String.format("async=%s session=%s f=%s clients=%d ops=%d", FrontEnd.ASYNC, FrontEnd.SESSION, faults, clients, sorted.length));
+		System.out.println(String.format("throughput %.1f ops/s", sorted.length / (elapsed / 1e9)));
+		System.out.println(String.format("p50 %.1f ms, p99 %.1f ms", millis(sorted, 0.50), millis(sorted, 0.99)));
+		System.out.println(String.format("peak threads %d", threads.getPeakThreadCount()));
+		long reads = 0, unanimous = 0;
+		for (FrontEnd frontEnd : frontEnds) {
+			reads += frontEnd.getReadStats().getReads();
+			unanimous += frontEnd.getReadStats().getUnanimous();
+		}
+		System.out.println(String.format("unanimous reads %d of %d", unanimous, reads));
+		System.exit(0);
+	}
+
+	private static double millis(Long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
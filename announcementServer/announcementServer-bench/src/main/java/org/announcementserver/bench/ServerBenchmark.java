@@ -0,0 +1,107 @@
+package org.announcementserver.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.announcementserver.utils.PersistenceUtils;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementBoard;
+import org.announcementserver.ws.AnnouncementServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Server operations, as the endpoint calls them, on boards already holding
+* `posts` announcements
+*
+* Every operation is logged and waits for its commit, so scores include
+* the disk flush. The server logs to src/main/resources/, so this is run
+* from /announcementServer-ws.
+*/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerBenchmark {
+
+	static final String SERVER_ID = "serverBench";
+
+	@Param({ "1000", "100000" })
+	public int posts;
+
+	private AnnouncementServer server;
+	private int wts;
+	private int generalWts;
+
+	@Setup
+	public void fill() {
+		server = AnnouncementServer.create(SERVER_ID);
+		PersistenceUtils.start(server, SERVER_ID);
+
+		// client1 writes, client2 reads
+		for (String client : new String[] { "client1", "client2" }) {
+			server.addClient(client);
+		}
+		for (wts = 1; wts <= posts; wts++) {
+			server.putPersonal("client1", new Announcement("client1", "personal post " + wts, wts));
+			server.putGeneral(new Announcement("client1", "general post " + wts, wts));
+		}
+		server.wtss.put("client1", posts);
+		generalWts = posts + 1;
+	}
+
+	@TearDown
+	public void delete() {
+		PersistenceUtils.close(SERVER_ID);
+		delete(SERVER_ID);
+	}
+
+	// --- Post -------------
+
+	@Benchmark
+	public List<Integer> post() {
+		return server.post(new Announcement("client1", "personal post " + wts, wts++), server.sns.get("client1"));
+	}
+
+	@Benchmark
+	public Integer postGeneral() {
+		return server.postGeneral(new Announcement("client1", "general post " + generalWts, generalWts++), server.sns.get("client1"));
+	}
+
+	// --- Read -------------
+
+	@Benchmark
+	public AnnouncementBoard.Snapshot read() {
+		return server.read("client2", "client1", 10, server.sns.get("client2"));
+	}
+
+	@Benchmark
+	public AnnouncementBoard.Snapshot readGeneral() {
+		return server.readGeneral("client2", 10, server.sns.get("client2"));
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* Snapshots and log segments of a benchmark server */
+	static void delete(String serverId) {
+		try {
+			PersistenceUtils.delete(serverId);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
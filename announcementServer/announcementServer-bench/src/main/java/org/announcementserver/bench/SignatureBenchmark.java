@@ -0,0 +1,117 @@
+package org.announcementserver.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.announcementserver.common.CryptoTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Signatures: CryptoTools against reading the keys from the keystore on
+* every call, as it did before keys were cached, and against the session
+* key HMAC that authenticates requests after registration
+*
+* Keystores are read from keystore.dir, run from /announcementServer.
+*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dkeystore.dir=" + SignatureBenchmark.DIRECTORY)
+public class SignatureBenchmark {
+
+	static final String DIRECTORY = "announcementServer-ws/src/main/resources/";
+
+	private static final String[] MESSAGE = { "client1", "server1", "0", "post", "General", "0" };
+
+	private String signature;
+	private SecretKey session;
+	private byte[] hash;
+	private String mac;
+
+	@Setup
+	public void sign() throws Exception {
+		signature = CryptoTools.makeSignature(MESSAGE);
+		session = CryptoTools.newSessionKey();
+		hash = CryptoTools.encoder().strings(MESSAGE).digest();
+		mac = CryptoTools.makeMac(session, hash);
+	}
+
+	// --- Sign -------------
+
+	@Benchmark
+	public String uncachedSign() throws Exception {
+		Cipher cipher = Cipher.getInstance("RSA");
+		cipher.init(Cipher.ENCRYPT_MODE, (PrivateKey) loadEntry(MESSAGE[0]).getPrivateKey());
+		return Base64.getEncoder().encodeToString(cipher.doFinal(Base64.getDecoder().decode(CryptoTools.makeHash(MESSAGE))));
+	}
+
+	@Benchmark
+	public String cachedSign() throws Exception {
+		return CryptoTools.makeSignature(MESSAGE);
+	}
+
+	// --- Verify -------------
+
+	@Benchmark
+	public String uncachedVerify() throws Exception {
+		Cipher cipher = Cipher.getInstance("RSA");
+		cipher.init(Cipher.DECRYPT_MODE, (PublicKey) loadEntry(MESSAGE[0]).getCertificate().getPublicKey());
+		return Base64.getEncoder().encodeToString(cipher.doFinal(Base64.getDecoder().decode(signature)));
+	}
+
+	@Benchmark
+	public String cachedVerify() throws Exception {
+		return CryptoTools.decryptSignature(MESSAGE[0], signature);
+	}
+
+	// --- Session key -------------
+
+	@Benchmark
+	public String sessionMac() throws Exception {
+		return CryptoTools.makeMac(session, hash);
+	}
+
+	@Benchmark
+	public boolean sessionVerify() throws Exception {
+		return CryptoTools.verifyMac(session, hash, mac);
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* Properties and keystore read from disk, as every call used to */
+	private static KeyStore.PrivateKeyEntry loadEntry(String id) throws Exception {
+		Properties passwords = new Properties();
+		try (InputStream in = new FileInputStream(new File(DIRECTORY + "announcement.properties"))) {
+			passwords.load(in);
+		}
+		char[] password = passwords.getProperty(id + "-password").toCharArray();
+
+		KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		try (InputStream in = new FileInputStream(new File(DIRECTORY + "keystores/" + id + ".p12"))) {
+			keyStore.load(in, password);
+		}
+		return (KeyStore.PrivateKeyEntry) keyStore.getEntry(id, new KeyStore.PasswordProtection(password));
+	}
+}
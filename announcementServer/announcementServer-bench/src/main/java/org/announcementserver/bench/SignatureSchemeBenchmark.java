@@ -0,0 +1,73 @@
+package org.announcementserver.bench;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.common.KeyCache;
+import org.announcementserver.common.SignatureProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+* Sign and verify latency of each signature scheme, the size of its
+* signatures is printed on setup
+*
+* ed25519 needs a JVM that has it (15 or later). Keystores are read from
+* the ws resources, run from /announcementServer.
+*/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureSchemeBenchmark {
+
+	private static final String DIRECTORY = "announcementServer-ws/src/main/resources/";
+
+	@Param({ "rsa", "ecdsa", "ed25519" })
+	public String scheme;
+
+	private SignatureProvider provider;
+	private PrivateKey privateKey;
+	private PublicKey publicKey;
+	private byte[] hash;
+	private byte[] signature;
+
+	@Setup
+	public void setup() throws Exception {
+		provider = SignatureProvider.forName(scheme);
+		KeyCache keys = new KeyCache(DIRECTORY, provider.keystores());
+		privateKey = keys.getPrivateKey("client1");
+		publicKey = keys.getPublicKey("client1");
+
+		hash = CryptoTools.encoder().strings("client1", "server1", "0", "post", "General", "0").digest();
+		signature = provider.sign(privateKey, hash);
+
+		System.out.println(String.format("%n%s signature: %d bytes, %d in Base64", scheme, signature.length,
+			Base64.getEncoder().encodeToString(signature).length()));
+	}
+
+	@Benchmark
+	public byte[] sign() throws Exception {
+		return provider.sign(privateKey, hash);
+	}
+
+	@Benchmark
+	public boolean verify() throws Exception {
+		return provider.verify(publicKey, hash, signature);
+	}
+}
@@ -0,0 +1,117 @@
+package org.announcementserver.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.announcementserver.transfer.StateTransfer;
+import org.announcementserver.utils.PersistenceUtils;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementServer;
+
+/*
+* Time for an empty server to catch up with 3 peers holding `posts` general
+* board posts (and 1000 personal posts of client1 and client2), while client3
+* keeps posting to it
+*
+* The peers and the lagging server run in this JVM; the lagging server logs
+* to src/main/resources/, so this is run from /announcementServer-ws:
+*
+*   java -Xmx3g -cp ../announcementServer-bench/target/benchmarks.jar \
+*     org.announcementserver.bench.StateTransferBench 1000000
+*/
+
+public class StateTransferBench {
+	private static final String LAGGARD_ID = "transferBench";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: java " + StateTransferBench.class.getName() + " posts");
+			return;
+		}
+
+		int posts = Integer.valueOf(args[0]);
+
+		// The peers are correct, so one state serves for the three of them
+		AnnouncementServer peer = AnnouncementServer.create("server1");
+		fill(peer, posts);
+
+		List<StateTransfer> peers = new ArrayList<>();
+		for (int id = 1; id <= 3; id++) {
+			StateTransfer transfer = new StateTransfer("localhost", id, 4, 1, peer);
+			transfer.start();
+			peers.add(transfer);
+		}
+
+		AnnouncementServer laggard = AnnouncementServer.create(LAGGARD_ID);
+		PersistenceUtils.start(laggard, LAGGARD_ID);
+		StateTransfer transfer = new StateTransfer("localhost", 4, 4, 1, laggard);
+
+		// A new client of the lagging server, posting while it catches up
+		List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+		AtomicBoolean running = new AtomicBoolean(true);
+		Thread client = new Thread(() -> {
+			int sn = laggard.register("client3").get(0);
+			for (int wts = 1; running.get(); wts++) {
+				long before = System.nanoTime();
+				sn = laggard.post(new Announcement("client3", "post" + wts, wts), sn).get(0) + 1;
+				latencies.add(System.nanoTime() - before);
+			}
+		});
+
+		try {
+			client.start();
+			long start = System.nanoTime();
+			int added = transfer.catchUp();
+			long elapsed = System.nanoTime() - start;
+			running.set(false);
+			client.join();
+
+			Long[] sorted = latencies.toArray(new Long[0]);
+			Arrays.sort(sorted);
+
+			System.out.println(String.format("caught up %d posts in %.2f s (%.0f posts/s), chunks of %d", added, elapsed / 1e9,
+				added / (elapsed / 1e9), StateTransfer.CHUNK));
+			System.out.println(String.format("general board %s", Arrays.equals(peer.board(null).head(), laggard.board(null).head())
+				? "matches the peers" : "DIFFERS from the peers"));
+			if (sorted.length > 0) {
+				System.out.println(String.format("client posts meanwhile %d: p50 %.1f ms, p99 %.1f ms, max %.1f ms", sorted.length,
+					millis(sorted, 0.50), millis(sorted, 0.99), millis(sorted, 1.0)));
+			}
+		} finally {
+			peers.forEach(StateTransfer::stop);
+			transfer.stop();
+			PersistenceUtils.close(LAGGARD_ID);
+			ServerBenchmark.delete(LAGGARD_ID);
+		}
+		System.exit(0);
+	}
+
+	private static void fill(AnnouncementServer server, int posts) {
+		String signature = String.join("", Collections.nCopies(43, "signatur")); // as long as an RSA one
+
+		for (String client : new String[] { "client1", "client2" }) {
+			server.addClient(client);
+			server.sns.put(client, 1001);
+			server.wtss.put(client, 1000);
+			for (int i = 1; i <= 1000; i++) {
+				Announcement announcement = new Announcement(client, "personal post " + i, i);
+				announcement.setSignature(signature);
+				server.putPersonal(client, announcement);
+			}
+		}
+		for (int i = 1; i <= posts; i++) {
+			Announcement announcement = new Announcement("client" + (i % 2 + 1), "general post " + i, i);
+			announcement.setSignature(signature);
+			server.putGeneral(announcement);
+		}
+	}
+
+	private static double millis(Long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
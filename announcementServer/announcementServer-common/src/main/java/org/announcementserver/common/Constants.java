@@ -4,4 +4,10 @@ public class Constants {
     public static final String SERVER_NAME = "server";
     public static final Integer PORT_START = 8090;
     public static final String WS_NAME_FORMAT = "http://%s:%s/announcementserver-ws/endpoint/";
+    /* Fault of a request authenticated with a session key the server does not have */
+    public static final String SESSION_INVALID = "Session not valid";
+    /* Fault of a write back whose posts do not continue from the server's last one */
+    public static final String WRITEBACK_GAP = "Write back does not follow the board";
+    /* Fault of a register whose nonce is not one the server handed out, or was already taken */
+    public static final String NONCE_INVALID = "Register nonce not valid";
 }
\ No newline at end of file
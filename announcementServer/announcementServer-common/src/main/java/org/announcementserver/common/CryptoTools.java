@@ -2,20 +2,17 @@ package org.announcementserver.common;
 
 import java.util.Arrays;
 import java.util.Base64;
-import java.util.Properties;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 
 import java.security.KeyStore;
 import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
 
 import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 
 import java.io.IOException;
 import java.security.KeyStoreException;
@@ -33,44 +30,39 @@ import java.security.cert.CertificateException;
 
 public class CryptoTools {
 	
-	private static final String KEYSTORE_FILE_PATH = "src/main/resources/";
-	private static final String PASSWORD_FILENAME = "announcement.properties";
+	private static final String KEYSTORE_FILE_PATH = System.getProperty("keystore.dir", "src/main/resources/");
+	public static final String SIGNATURE = System.getProperty("crypto.signature", "rsa");
+	
+	private static final SignatureProvider scheme = SignatureProvider.forName(SIGNATURE);
+	private static final KeyCache keys = new KeyCache(KEYSTORE_FILE_PATH, scheme.keystores());
+	// Session keys are always sent encrypted with the RSA keys
+	private static final RsaSignatureProvider rsa = new RsaSignatureProvider();
+	private static final KeyCache rsaKeys = (scheme instanceof RsaSignatureProvider) ? keys : new KeyCache(KEYSTORE_FILE_PATH);
+	
+	// Engines are reused by each thread instead of being looked up on every call
+	private static final ThreadLocal<MessageEncoder> encoders = ThreadLocal.withInitial(() -> new MessageEncoder(newDigest()));
+	private static final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(CryptoTools::newCipher);
+	private static final ThreadLocal<Mac> macs = ThreadLocal.withInitial(CryptoTools::newMac);
+	
+	/* Marks an authenticator made with a session key instead of a signature */
+	private static final String MAC_PREFIX = "hmac:";
+	private static final String MAC_ALGORITHM = "HmacSHA256";
 	
 	public static KeyStore getKeystore(String id, String password) throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException {
-		File keystoreResource = new File(KEYSTORE_FILE_PATH + "keystores/" + id + ".p12");
-		InputStream keyStoreIS = new FileInputStream(keystoreResource);
-		KeyStore keyStore = KeyStore.getInstance("PKCS12");
-		keyStore.load(keyStoreIS, password.toCharArray());
-		return keyStore;
-	}
-
-	private static String getPassword(String id) throws IOException {
-		Properties passwordProps = new Properties();
-		File passwordResource = new File(KEYSTORE_FILE_PATH + PASSWORD_FILENAME);
-		InputStream passwordIS = new FileInputStream(passwordResource);
-		passwordProps.load(passwordIS);
-		String password = passwordProps.getProperty(id + "-password");
-		return password;
+		return keys.getKeystore(id, password);
 	}
 	
 	public static PublicKey getPublicKey(String clientId) throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, IOException, CertificateException {
-		
-		String password = getPassword(clientId);
-		KeyStore keyStore = getKeystore(clientId, password);
-		KeyStore.PrivateKeyEntry privateKeyEntry = (KeyStore.PrivateKeyEntry) keyStore.getEntry(clientId, new KeyStore.PasswordProtection(password.toCharArray()));
-		
-		RSAPublicKey publicKey = (RSAPublicKey) privateKeyEntry.getCertificate().getPublicKey();
-		return publicKey;
+		return keys.getPublicKey(clientId);
 	}
 	
 	public static PrivateKey getPrivateKey(String clientId) throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, IOException, CertificateException {
-		
-		String password = getPassword(clientId);
-		KeyStore keyStore = getKeystore(clientId, password);
-		KeyStore.PrivateKeyEntry privateKeyEntry = (KeyStore.PrivateKeyEntry) keyStore.getEntry(clientId, new KeyStore.PasswordProtection(password.toCharArray()));
-		
-		RSAPrivateKey privateKey = (RSAPrivateKey) privateKeyEntry.getPrivateKey();
-		return privateKey;
+		return keys.getPrivateKey(clientId);
+	}
+	
+	/* Keys are loaded once per principal; use it to preload or reload them */
+	public static KeyCache getKeyCache() {
+		return keys;
 	}
 	
 	public static String publicKeyAsString(PublicKey publicKey) {
@@ -85,15 +77,12 @@ public class CryptoTools {
 	
 	public static String makeHash(String... args) 
 			throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, CertificateException, IOException {
-		MessageDigest hashFunc = MessageDigest.getInstance("SHA-256");
-		
-		for (String arg: args) {
-			hashFunc.update(arg.getBytes());
-		}
-		
-		byte[] hash = hashFunc.digest();
-		
-		return byteToString(hash);
+		return byteToString(hash(args));
+	}
+	
+	/* Per thread encoder for the next message to hash */
+	public static MessageEncoder encoder() {
+		return encoders.get().reset();
 	}
 	
 	public static boolean checkHash(String... ret) 
@@ -113,34 +102,112 @@ public class CryptoTools {
 	public static String makeSignature(String... args) 
 			throws CertificateException, IOException, KeyStoreException, NoSuchAlgorithmException, NoSuchPaddingException, 
 				IllegalBlockSizeException, BadPaddingException, InvalidKeyException, UnrecoverableEntryException {
-		
-		PrivateKey privKey = getPrivateKey(args[0]);
-		
-		String hash = makeHash(args);
-		
-		byte[] bytes = stringToByte(hash);
-			    
-	    Cipher cipher = Cipher.getInstance("RSA");
-		cipher.init(Cipher.ENCRYPT_MODE, privKey);
-		
-		cipher.update(bytes);
-		
-		return byteToString(cipher.doFinal());		
+		return makeSignature(args[0], hash(args));
 	}
 	
+	/* Only for the rsa scheme */
 	public static String decryptSignature(String src, String signature) 
 			throws CertificateException, IOException, KeyStoreException, NoSuchAlgorithmException, NoSuchPaddingException, 
 				IllegalBlockSizeException, BadPaddingException, InvalidKeyException, UnrecoverableEntryException {
-		PublicKey pubKey = getPublicKey(src);
+		return byteToString(rsa.decrypt(rsaKeys.getPublicKey(src), stringToByte(signature)));
+	}
+	
+	/* Signs the hash of a message encoded with encoder() */
+	public static String makeSignature(String signer, byte[] hash) 
+			throws CertificateException, IOException, KeyStoreException, NoSuchAlgorithmException, NoSuchPaddingException, 
+				IllegalBlockSizeException, BadPaddingException, InvalidKeyException, UnrecoverableEntryException {
+		return byteToString(scheme.sign(getPrivateKey(signer), hash));
+	}
+	
+	/* Throws if the signature cannot be read, false if it is not for this hash */
+	public static boolean verifySignature(String signer, byte[] hash, String signature) 
+			throws CertificateException, IOException, KeyStoreException, NoSuchAlgorithmException, NoSuchPaddingException, 
+				IllegalBlockSizeException, BadPaddingException, InvalidKeyException, UnrecoverableEntryException {
+		return scheme.verify(getPublicKey(signer), hash, stringToByte(signature));
+	}
+	
+	// --- Session keys -------------
+	
+	public static SecretKey newSessionKey() {
+		try {
+			KeyGenerator generator = KeyGenerator.getInstance(MAC_ALGORITHM);
+			generator.init(256);
+			return generator.generateKey();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(MAC_ALGORITHM + " not available");
+		}
+	}
+	
+	/* The session key encrypted for `receiver` only */
+	public static String wrapKey(String receiver, SecretKey key) 
+			throws CertificateException, IOException, KeyStoreException, NoSuchAlgorithmException, NoSuchPaddingException, 
+				IllegalBlockSizeException, BadPaddingException, InvalidKeyException, UnrecoverableEntryException {
+		Cipher cipher = ciphers.get();
+		cipher.init(Cipher.ENCRYPT_MODE, rsaKeys.getPublicKey(receiver));
 		
-		Cipher cipher = Cipher.getInstance("RSA");
-		cipher.init(Cipher.DECRYPT_MODE, pubKey);
+		return byteToString(cipher.doFinal(key.getEncoded()));
+	}
+	
+	/* The session key sent to `receiver` by wrapKey */
+	public static SecretKey unwrapKey(String receiver, String wrapped) 
+			throws CertificateException, IOException, KeyStoreException, NoSuchAlgorithmException, NoSuchPaddingException, 
+				IllegalBlockSizeException, BadPaddingException, InvalidKeyException, UnrecoverableEntryException {
+		Cipher cipher = ciphers.get();
+		cipher.init(Cipher.DECRYPT_MODE, rsaKeys.getPrivateKey(receiver));
 		
-		cipher.update(stringToByte(signature));
+		return new SecretKeySpec(cipher.doFinal(stringToByte(wrapped)), MAC_ALGORITHM);
+	}
+	
+	/* Authenticates the hash of a message encoded with encoder() with a session key */
+	public static String makeMac(SecretKey key, byte[] hash) throws InvalidKeyException {
+		return MAC_PREFIX + byteToString(mac(key, hash));
+	}
+	
+	/* Raw HMAC of the data, with this thread's engine */
+	public static byte[] mac(SecretKey key, byte[] data) throws InvalidKeyException {
+		Mac mac = macs.get();
+		mac.init(key);
 		
-		byte[] clearText = cipher.doFinal();		
+		return mac.doFinal(data);
+	}
+	
+	public static boolean verifyMac(SecretKey key, byte[] hash, String authenticator) throws InvalidKeyException {
+		if (!isMac(authenticator)) return false;
 		
-		return byteToString(clearText);
+		return MessageDigest.isEqual(makeMac(key, hash).getBytes(), authenticator.getBytes());
+	}
+	
+	/* True if the authenticator was made with makeMac, not signed */
+	public static boolean isMac(String authenticator) {
+		return authenticator != null && authenticator.startsWith(MAC_PREFIX);
+	}
+	
+	private static byte[] hash(String... args) {
+		return encoder().strings(args).digest();
+	}
+	
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 not available");
+		}
+	}
+	
+	private static Cipher newCipher() {
+		try {
+			return Cipher.getInstance("RSA");
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+			throw new RuntimeException("RSA not available");
+		}
+	}
+	
+	private static Mac newMac() {
+		try {
+			return Mac.getInstance(MAC_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(MAC_ALGORITHM + " not available");
+		}
 	}
 	
 	private static String byteToString(byte[] bytes) {
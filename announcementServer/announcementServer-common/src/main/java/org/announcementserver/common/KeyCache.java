@@ -0,0 +1,124 @@
+package org.announcementserver.common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.UnrecoverableEntryException;
+import java.security.cert.CertificateException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+* Key material cache
+*
+* Each principal's keystore is opened once, on first use or through
+* preload, and its key pair is kept in memory. Keystores are read from the
+* keystores/ directory, or from the one of a signature scheme. reload and reloadAll drop
+* cached keys (e.g. after a keystore is replaced) so that the next use
+* reads them from disk again.
+*/
+
+public class KeyCache {
+
+	private static final String PASSWORD_FILENAME = "announcement.properties";
+
+	private final String directory;
+	private final String keystores;
+	private final Map<String, KeyStore.PrivateKeyEntry> entries = new ConcurrentHashMap<>();
+	private volatile Properties passwords;
+
+	public KeyCache(String directory) {
+		this(directory, "keystores/");
+	}
+
+	public KeyCache(String directory, String keystores) {
+		this.directory = directory;
+		this.keystores = keystores;
+	}
+
+	public PublicKey getPublicKey(String id)
+			throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, IOException, CertificateException {
+		return getEntry(id).getCertificate().getPublicKey();
+	}
+
+	public PrivateKey getPrivateKey(String id)
+			throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, IOException, CertificateException {
+		return getEntry(id).getPrivateKey();
+	}
+
+	/* Loads the keys of the given principals ahead of their first use */
+	public void preload(String... ids)
+			throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, IOException, CertificateException {
+		for (String id : ids) {
+			getEntry(id);
+		}
+	}
+
+	/* Reads one principal's keys from disk again, replacing the cached ones */
+	public void reload(String id)
+			throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, IOException, CertificateException {
+		entries.put(id, load(id));
+	}
+
+	/* Drops every cached key and password, they are read again on next use */
+	public void reloadAll() {
+		passwords = null;
+		entries.clear();
+	}
+
+	public KeyStore getKeystore(String id, String password)
+			throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException {
+		File keystoreResource = new File(directory + keystores + id + ".p12");
+		KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		try (InputStream keyStoreIS = new FileInputStream(keystoreResource)) {
+			keyStore.load(keyStoreIS, password.toCharArray());
+		}
+		return keyStore;
+	}
+
+	// --- Auxiliary functions -------------
+
+	private KeyStore.PrivateKeyEntry getEntry(String id)
+			throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, IOException, CertificateException {
+		KeyStore.PrivateKeyEntry entry = entries.get(id);
+
+		if (entry == null) {
+			// Concurrent first uses may both load, the keys are the same
+			entry = load(id);
+			KeyStore.PrivateKeyEntry previous = entries.putIfAbsent(id, entry);
+			if (previous != null) entry = previous;
+		}
+
+		return entry;
+	}
+
+	private KeyStore.PrivateKeyEntry load(String id)
+			throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, IOException, CertificateException {
+		String password = getPassword(id);
+		if (password == null) throw new KeyStoreException("No password for " + id);
+
+		KeyStore keyStore = getKeystore(id, password);
+		return (KeyStore.PrivateKeyEntry) keyStore.getEntry(id, new KeyStore.PasswordProtection(password.toCharArray()));
+	}
+
+	private String getPassword(String id) throws IOException {
+		Properties current = passwords;
+
+		if (current == null) {
+			current = new Properties();
+			try (InputStream passwordIS = new FileInputStream(new File(directory + PASSWORD_FILENAME))) {
+				current.load(passwordIS);
+			}
+			passwords = current;
+		}
+
+		return current.getProperty(id + "-password");
+	}
+}
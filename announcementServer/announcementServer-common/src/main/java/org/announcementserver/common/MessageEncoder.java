@@ -0,0 +1,171 @@
+package org.announcementserver.common;
+
+import java.security.MessageDigest;
+import java.util.List;
+
+/*
+* Canonical encoding of signed messages
+*
+* Fields are streamed straight into a SHA-256 digest, without building
+* intermediate strings: a string is its UTF-8 length followed by its bytes,
+* a number is a presence byte followed by 4 bytes, a list is its size
+* followed by its elements, raw bytes are their length followed by them.
+* Nulls are encoded explicitly, so two different messages never share an
+* encoding.
+*
+* An encoder is reused for many messages (see CryptoTools.encoder), each
+* one ends with digest.
+*/
+
+public class MessageEncoder {
+
+	private static final int NULL = -1;
+
+	private final MessageDigest digest;
+	private final byte[] buffer = new byte[512];
+	private int position;
+
+	public MessageEncoder(MessageDigest digest) {
+		this.digest = digest;
+	}
+
+	public MessageEncoder string(String value) {
+		if (value == null) {
+			writeInt(NULL);
+			return this;
+		}
+
+		writeInt(utf8Length(value));
+
+		for (int i = 0; i < value.length(); i++) {
+			if (position > buffer.length - 4) flush();
+
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer[position++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xc0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			} else if (isPair(value, i)) {
+				int code = Character.toCodePoint(c, value.charAt(++i));
+				buffer[position++] = (byte) (0xf0 | (code >> 18));
+				buffer[position++] = (byte) (0x80 | ((code >> 12) & 0x3f));
+				buffer[position++] = (byte) (0x80 | ((code >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (code & 0x3f));
+			} else if (Character.isSurrogate(c)) {
+				buffer[position++] = '?'; // as String.getBytes does for malformed input
+			} else {
+				buffer[position++] = (byte) (0xe0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+
+		return this;
+	}
+
+	public MessageEncoder number(Integer value) {
+		if (position > buffer.length - 5) flush();
+
+		if (value == null) {
+			buffer[position++] = 0;
+		} else {
+			buffer[position++] = 1;
+			writeInt(value);
+		}
+
+		return this;
+	}
+
+	public MessageEncoder strings(List<String> values) {
+		if (values == null) {
+			writeInt(NULL);
+			return this;
+		}
+
+		writeInt(values.size());
+		for (int i = 0; i < values.size(); i++) {
+			string(values.get(i));
+		}
+
+		return this;
+	}
+
+	public MessageEncoder strings(String... values) {
+		writeInt(values.length);
+		for (String value : values) {
+			string(value);
+		}
+
+		return this;
+	}
+
+	public MessageEncoder bytes(byte[] value) {
+		if (value == null) {
+			writeInt(NULL);
+			return this;
+		}
+
+		writeInt(value.length);
+		flush();
+		digest.update(value);
+
+		return this;
+	}
+
+	/* Hash of the message encoded so far; the encoder is ready for the next one */
+	public byte[] digest() {
+		flush();
+		return digest.digest();
+	}
+
+	/* Drops a partially encoded message */
+	public MessageEncoder reset() {
+		position = 0;
+		digest.reset();
+		return this;
+	}
+
+	// --- Auxiliary functions -------------
+
+	private void writeInt(int value) {
+		if (position > buffer.length - 4) flush();
+
+		buffer[position++] = (byte) (value >>> 24);
+		buffer[position++] = (byte) (value >>> 16);
+		buffer[position++] = (byte) (value >>> 8);
+		buffer[position++] = (byte) value;
+	}
+
+	private void flush() {
+		digest.update(buffer, 0, position);
+		position = 0;
+	}
+
+	private static boolean isPair(String value, int i) {
+		return Character.isHighSurrogate(value.charAt(i))
+			&& i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1));
+	}
+
+	private static int utf8Length(String value) {
+		int length = 0;
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				length += 1;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (isPair(value, i)) {
+				length += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				length += 1;
+			} else {
+				length += 3;
+			}
+		}
+
+		return length;
+	}
+}
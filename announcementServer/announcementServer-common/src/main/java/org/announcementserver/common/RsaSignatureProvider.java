@@ -0,0 +1,57 @@
+package org.announcementserver.common;
+
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+
+/*
+* The hash encrypted with the RSA private key, the first scheme of the
+* system and the default one
+*/
+
+public class RsaSignatureProvider implements SignatureProvider {
+
+	private static final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(RsaSignatureProvider::newCipher);
+
+	@Override
+	public String keystores() {
+		return "keystores/";
+	}
+
+	@Override
+	public byte[] sign(PrivateKey key, byte[] hash) throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+		Cipher cipher = ciphers.get();
+		cipher.init(Cipher.ENCRYPT_MODE, key);
+
+		return cipher.doFinal(hash);
+	}
+
+	@Override
+	public boolean verify(PublicKey key, byte[] hash, byte[] signature)
+			throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+		return MessageDigest.isEqual(hash, decrypt(key, signature));
+	}
+
+	/* The hash the signature was made for */
+	public byte[] decrypt(PublicKey key, byte[] signature) throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+		Cipher cipher = ciphers.get();
+		cipher.init(Cipher.DECRYPT_MODE, key);
+
+		return cipher.doFinal(signature);
+	}
+
+	private static Cipher newCipher() {
+		try {
+			return Cipher.getInstance("RSA");
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+			throw new RuntimeException("RSA not available");
+		}
+	}
+}
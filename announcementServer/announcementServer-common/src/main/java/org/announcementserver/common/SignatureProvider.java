@@ -0,0 +1,42 @@
+package org.announcementserver.common;
+
+import java.security.InvalidKeyException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+
+/*
+* Signature scheme of a deployment
+*
+* Chosen with -Dcrypto.signature: rsa (default), ecdsa (P-256) or ed25519
+* (on JVMs that have it). Each scheme reads the keystores of its own
+* directory, with the same passwords.
+*/
+
+public interface SignatureProvider {
+
+	/* Directory of the keystores, under keystore.dir */
+	String keystores();
+
+	/* Signs the hash of a message encoded with CryptoTools.encoder() */
+	byte[] sign(PrivateKey key, byte[] hash) throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException;
+
+	/* Throws if the signature cannot be read, false if it is not for this hash */
+	boolean verify(PublicKey key, byte[] hash, byte[] signature)
+			throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException;
+
+	static SignatureProvider forName(String name) {
+		switch (name) {
+			case "rsa":
+				return new RsaSignatureProvider();
+			case "ecdsa":
+				return new StandardSignatureProvider("SHA256withECDSA", "keystores/ecdsa/");
+			case "ed25519":
+				return new StandardSignatureProvider("Ed25519", "keystores/ed25519/");
+			default:
+				throw new RuntimeException("Unknown signature scheme " + name);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package org.announcementserver.common;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/*
+* Signatures of java.security.Signature (SHA256withECDSA, Ed25519, ...),
+* one engine per thread
+*/
+
+public class StandardSignatureProvider implements SignatureProvider {
+
+	private final String algorithm;
+	private final String keystores;
+	private final ThreadLocal<Signature> engines;
+
+	public StandardSignatureProvider(String algorithm, String keystores) {
+		this.algorithm = algorithm;
+		this.keystores = keystores;
+		this.engines = ThreadLocal.withInitial(this::newEngine);
+		engines.get(); // fails now if the JVM does not have it
+	}
+
+	@Override
+	public String keystores() {
+		return keystores;
+	}
+
+	@Override
+	public byte[] sign(PrivateKey key, byte[] hash) throws InvalidKeyException {
+		Signature engine = engines.get();
+		engine.initSign(key);
+
+		try {
+			engine.update(hash);
+			return engine.sign();
+		} catch (SignatureException e) {
+			throw new RuntimeException(algorithm + " signature failed");
+		}
+	}
+
+	/* A malformed signature is not valid for any hash */
+	@Override
+	public boolean verify(PublicKey key, byte[] hash, byte[] signature) throws InvalidKeyException {
+		Signature engine = engines.get();
+		engine.initVerify(key);
+
+		try {
+			engine.update(hash);
+			return engine.verify(signature);
+		} catch (SignatureException e) {
+			return false;
+		}
+	}
+
+	private Signature newEngine() {
+		try {
+			return Signature.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(algorithm + " not available");
+		}
+	}
+}
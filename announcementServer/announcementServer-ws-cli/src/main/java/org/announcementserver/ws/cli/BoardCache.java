@@ -0,0 +1,96 @@
+package org.announcementserver.ws.cli;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.ws.AnnouncementMessage;
+import org.announcementserver.ws.ReadRet;
+
+/*
+* Posts of a board the front end already read
+*
+* Keeps the last run of verified posts of a board, with the digests of the
+* board before them (prefix) and after them (head). The next read only
+* asks for the posts after the last cached wts, and a server's reply is
+* only taken if its prefix is the cached head, so the new posts are known
+* to follow the cached ones.
+*/
+
+public class BoardCache {
+    private static final String EMPTY = AnnouncementTools.digestToString(AnnouncementTools.EMPTY_DIGEST);
+
+    private final List<AnnouncementMessage> posts;
+    private final String prefix;
+    private String head;
+
+    public BoardCache(ReadRet ret) {
+        this.posts = new ArrayList<>(ret.getAnnouncements());
+        this.prefix = ret.getPrefix();
+        this.head = ret.getHead();
+    }
+
+    public BoardCache(BoardCache cached) {
+        this.posts = new ArrayList<>(cached.posts);
+        this.prefix = cached.prefix;
+        this.head = cached.head;
+    }
+
+    /* Posts that follow the cached ones */
+    public void append(ReadRet ret) {
+        posts.addAll(ret.getAnnouncements());
+        head = ret.getHead();
+    }
+
+    /* Wts after which posts are new, 0 if there are none cached */
+    public Integer since() {
+        return posts.isEmpty() ? 0 : posts.get(posts.size() - 1).getWts();
+    }
+
+    public String head() {
+        return head;
+    }
+
+    /*
+    * For each of the `heads` the cached posts go through, the posts after
+    * it; one pass over the chain from the prefix
+    */
+    public Map<String, List<AnnouncementMessage>> after(Collection<String> heads) {
+        Map<String, List<AnnouncementMessage>> res = new HashMap<>();
+        Map<String, byte[]> pending = new HashMap<>();
+        for (String head : heads) {
+            pending.put(head, AnnouncementTools.stringToDigest(head));
+        }
+
+        byte[] digest = AnnouncementTools.stringToDigest(prefix);
+        for (int i = 0; !pending.isEmpty(); i++) {
+            for (String head : new ArrayList<>(pending.keySet())) {
+                if (MessageDigest.isEqual(digest, pending.get(head))) {
+                    res.put(head, new ArrayList<>(posts.subList(i, posts.size())));
+                    pending.remove(head);
+                }
+            }
+            if (i == posts.size()) break;
+            digest = AnnouncementTools.link(digest, posts.get(i));
+        }
+
+        return res;
+    }
+
+    /* True if the last `number` posts of the board (all of them for 0) are cached */
+    public boolean covers(Integer number) {
+        return EMPTY.equals(prefix) || (number != 0 && posts.size() >= number);
+    }
+
+    /* Last `number` cached posts, all of them for 0 */
+    public List<AnnouncementMessage> last(Integer number) {
+        Integer end = posts.size();
+        Integer start = (number > end || number == 0) ? 0 : end - number;
+
+        return posts.subList(start, end);
+    }
+}
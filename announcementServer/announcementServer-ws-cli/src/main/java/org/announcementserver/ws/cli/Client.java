@@ -1,520 +1,629 @@
 package org.announcementserver.ws.cli;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.announcementserver.common.*;
 import org.announcementserver.utils.AnnouncementTools;
 import org.announcementserver.ws.AnnouncementServerPortType;
+import org.announcementserver.ws.NonceReq;
+import org.announcementserver.ws.NonceRet;
+import org.announcementserver.ws.NonceResponse;
 import org.announcementserver.ws.RegisterReq;
 import org.announcementserver.ws.RegisterRet;
 import org.announcementserver.ws.WriteReq;
 import org.announcementserver.ws.WriteRet;
+import org.announcementserver.ws.WriteBatchReq;
 import org.announcementserver.ws.ReadReq;
 import org.announcementserver.ws.ReadGeneralReq;
 import org.announcementserver.ws.ReadRet;
 import org.announcementserver.ws.WriteBackReq;
 import org.announcementserver.ws.WriteBackRet;
+import org.announcementserver.ws.RegisterResponse;
+import org.announcementserver.ws.PostResponse;
+import org.announcementserver.ws.PostGeneralResponse;
+import org.announcementserver.ws.PostBatchResponse;
+import org.announcementserver.ws.PostGeneralBatchResponse;
+import org.announcementserver.ws.ReadResponse;
+import org.announcementserver.ws.ReadGeneralResponse;
+import org.announcementserver.ws.WriteBackResponse;
 import org.announcementserver.ws.AnnouncementMessage;
-import java.time.LocalDateTime;
+import org.announcementserver.ws.BusyRet;
+import org.announcementserver.ws.ServerBusy;
 
 import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableEntryException;
 import java.security.cert.CertificateException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.xml.ws.AsyncHandler;
 import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
 
 enum Operation {
-    REGISTER, POST, POSTGENERAL, READ, READGENERAL, WRITEBACK
+    REGISTER, POST, POSTGENERAL, POSTBATCH, POSTGENERALBATCH, READ, READGENERAL, WRITEBACK
 };
 
-public class Client extends Thread {
+public class Client {
+    private static final ScheduledExecutorService DELAYS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "client-retries");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final String EMPTY_PREFIX = AnnouncementTools.digestToString(AnnouncementTools.EMPTY_DIGEST);
+
     private FrontEnd parent;
     private Integer servId;
     private Operation op;
     
     public String readKey;
-    public String message;
-    public List<String> references;
+    public AnnouncementMessage post;
+    public List<AnnouncementMessage> posts;
     public String boardKey;
     public Integer number;
     public String clientID;
     public Integer seqNumber;
-    public List<RegisterRet> regRets;
-    public List<WriteRet> writeRets;
-    public List<ReadRet> readRets;
-    public List<WriteBackRet> writeBackRets;
-    public ReadRet writeBack;
+    public List<AnnouncementMessage> writeBack;
     public Integer wts;
     public Integer rid;
+    public Integer since = 0;
+    public String prefix;
+    public Map<String, String> cursors;
+    public boolean summary = false;
     public List<String> ret;
 
+    private String servName;
+    private String username;
+    private SecretKey session;
+    private String wrappedSession;
+    private long end;
+    private int attempts = 0;
+    private volatile boolean cancelled = false;
+    private volatile boolean nonceRefused = false;
+
     public Client(FrontEnd parent, Operation op, Integer id) {
         this.parent = parent;
         this.op = op;
         this.servId = id;
+        this.seqNumber = parent.seqNum(id);
     }
 
-    @Override
-    public void run() {
+    /* Valid response of the server, null if there is none; does not block */
+    public CompletableFuture<Object> call() {
         AnnouncementServerPortType port = parent.ports.get(servId - 1);
-        String servName = Constants.SERVER_NAME + servId.toString();
-        String username = parent.username;
-        String signature = "";
-        String hash = null;
-        List<String> toHash = new ArrayList<>();
-        LocalDateTime end;
+        servName = Constants.SERVER_NAME + servId.toString();
+        username = parent.username;
+        end = System.currentTimeMillis() + parent.retries.deadline();
+
+        if (op != Operation.REGISTER && seqNumber == null) throw new RuntimeException("Not registered with " + servName);
+
+        CompletableFuture<Object> res = CompletableFuture.completedFuture(null);
 
         switch (this.op) {
             case REGISTER:
-                RegisterRet response = null;
-                RegisterReq request = new RegisterReq();
-                request.setSender(username);
-                request.setDestination(servName);
+                res = register(port);
+                break;
+            case POST:
+                res = send(this::writeRequest, port::postAsync, PostResponse::getReturn)
+                    .thenApply(this::checkPost);
+                break;
+            case POSTGENERAL:
+                res = send(this::writeRequest, port::postGeneralAsync, PostGeneralResponse::getReturn)
+                    .thenApply(this::checkPostGeneral);
+                break;
+            case POSTBATCH:
+                res = send(this::batchRequest, port::postBatchAsync, PostBatchResponse::getReturn)
+                    .thenApply(this::checkPost);
+                break;
+            case POSTGENERALBATCH:
+                res = send(this::batchRequest, port::postGeneralBatchAsync, PostGeneralBatchResponse::getReturn)
+                    .thenApply(this::checkPostGeneral);
+                break;
+            case READ:
+                res = send(this::readRequest, port::readAsync, ReadResponse::getReturn)
+                    .thenApply(this::checkRead);
+                break;
+            case READGENERAL:
+                res = send(this::readGeneralRequest, port::readGeneralAsync, ReadGeneralResponse::getReturn)
+                    .thenApply(this::checkRead);
+                break;
+            case WRITEBACK:
+                res = send(this::writeBackRequest, port::writeBackAsync, WriteBackResponse::getReturn)
+                    .thenApply(this::checkWriteBack);
+                break;
+        }
 
-                toHash.add(request.getSender());
-                toHash.add(request.getDestination());
+        // Cancelling the call stops the retries, but a reply on its way is
+        // still checked, so the sequence number it carries is not lost
+        CompletableFuture<Object> call = res.thenApply(reply -> reply);
+        call.whenComplete((r, e) -> {
+            if (call.isCancelled()) cancelled = true;
+        });
 
-                signature = makeSignature(toHash.toArray(new String[0]));
+        return call;
+    }
 
-                if (signature == null) return;
+    /*
+    * Registers with a nonce the server just handed out; a register refused
+    * for its nonce (e.g. a retry of one that went through) starts over
+    */
+    private CompletableFuture<Object> register(AnnouncementServerPortType port) {
+        nonceRefused = false;
+
+        return send(this::nonceRequest, port::nonceAsync, NonceResponse::getReturn)
+            .thenApply(this::checkNonce)
+            .thenCompose(nonce -> (nonce == null)
+                ? CompletableFuture.<RegisterRet>completedFuture(null)
+                : send(() -> registerRequest(nonce), port::registerAsync, RegisterResponse::getReturn))
+            .thenCompose(reply -> (nonceRefused && !cancelled && System.currentTimeMillis() < end)
+                ? register(port)
+                : CompletableFuture.<Object>completedFuture(checkRegister(reply)));
+    }
 
-                request.setSignature(signature);
+    // --- Requests ---------
 
-                end = LocalDateTime.now().plusSeconds(40);
+    private NonceReq nonceRequest() {
+        NonceReq request = new NonceReq();
+        request.setSender(username);
+        request.setDestination(servName);
 
-                while (LocalDateTime.now().isBefore(end)) {
-                    try {
-                        response = port.register(request);
-                        break;
-                    } catch (WebServiceException e) {
+        return request;
+    }
 
-                    }
-                }
+    private RegisterReq registerRequest(String nonce) {
+        RegisterReq request = new RegisterReq();
+        request.setSender(username);
+        request.setDestination(servName);
+        request.setNonce(nonce);
+
+        // A new session key with this server, the same one on every retry
+        if (FrontEnd.SESSION && session == null) {
+            SecretKey key = CryptoTools.newSessionKey();
+            wrappedSession = wrapKey(key);
+            if (wrappedSession == null) return null;
+            session = key;
+        }
+        request.setSessionKey(wrappedSession);
 
-                if (response == null) return;
+        MessageEncoder encoder = CryptoTools.encoder()
+            .string(request.getSender())
+            .string(request.getDestination())
+            .string(nonce);
+        if (wrappedSession != null) encoder.string(wrappedSession);
+        String signature = makeSignature(encoder.digest());
 
-                if (!response.getSender().equals(servName)) throw new RuntimeException("Received response that wasn't from right server");
-                if (!response.getDestination().equals(username)) throw new RuntimeException("Received response that wasn't for me");
+        if (signature == null) return null;
 
-                toHash = new ArrayList<>();
-                toHash.add(response.getSender());
-                toHash.add(response.getDestination());
-                toHash.add(String.valueOf(response.getSeqNumber()));
-                toHash.add(String.valueOf(response.getWts()));
-                toHash.add(String.valueOf(response.getRid()));
+        request.setSignature(signature);
 
-                hash = decryptSignature(response.getSender(), response.getSignature());
-                
-                if (hash == null) return;
+        return request;
+    }
 
-                toHash.add(hash);
+    /* The post is signed once by the front end, the same for every server */
+    private WriteReq writeRequest() {
+        WriteReq postReq = new WriteReq();
+        postReq.setSender(username);
+        postReq.setDestination(servName);
+        postReq.setSeqNumber(seqNumber);
+        postReq.setAnnouncement(post);
 
-                if (!checkHash(toHash.toArray(new String[0]))) return;
-                
-                synchronized(parent) {
-                    parent.seqNums.set(servId - 1, response.getSeqNumber());
-                    regRets.add(response);
-                    parent.notify();
-                }
+        MessageEncoder encoder = CryptoTools.encoder()
+            .string(username)
+            .string(servName)
+            .number(seqNumber);
+        String signature = authenticate(AnnouncementTools.encodePost(encoder, post, true).digest());
 
-                return;
-            case POST:
-                WriteRet postRet = null;
-                WriteReq postReq = new WriteReq();
-                postReq.setSender(username);
-                postReq.setDestination(servName);
-                postReq.setSeqNumber(seqNumber);
-
-                AnnouncementMessage post = new AnnouncementMessage();
-                post.setWriter(username);
-                post.setMessage(message);
-                post.getAnnouncementList().addAll(this.references);
-                post.setWts(wts);
-                post.setType("Personal");
-
-                List<String> messHash = AnnouncementTools.postToSign(post, false);
-
-                String messSig = makeSignature(messHash.toArray(new String[0]));
-
-                if (messSig == null) return;
-
-                post.setSignature(messSig);
-
-                postReq.setAnnouncement(post);
-
-                toHash = new ArrayList<>();
-                toHash.add(username);
-                toHash.add(servName);
-                toHash.add(String.valueOf(seqNumber));
-                toHash.addAll(AnnouncementTools.postToSign(post, true));
-
-                end = LocalDateTime.now().plusSeconds(40);
-
-                while (LocalDateTime.now().isBefore(end)) {
-                    signature = makeSignature(toHash.toArray(new String[0]));
-                
-                    if (signature == null) return;
-                
-                    postReq.setSignature(signature);
-                    
-                    try {
-                        postRet = port.post(postReq);
-                        break;
-                    } catch (Exception e2) {
-                        synchronized(parent) {
-                            seqNumber = parent.seqNums.get(servId - 1);
-                        }
+        if (signature == null) return null;
 
-                        toHash.set(2, String.valueOf(seqNumber));
-                        postReq.setSeqNumber(seqNumber);
-                    } 
-                }
+        postReq.setSignature(signature);
 
-                hash = decryptSignature(servName, postRet.getSignature());
-                
-                if (hash == null) {
-                    System.out.println("Issue on hash");
-                    return;
-                }
-                
-                toHash = new ArrayList<>();
-
-                if (wts != postRet.getWts()) {
-                    System.out.println("WTS wrongly set");
-                    return; // if server acked wrong w
-                } 
-
-                toHash.add(servName);
-                toHash.add(username);
-                toHash.add(String.valueOf(seqNumber));
-                toHash.add(hash);
-                
-                if (!checkHash(toHash.toArray(new String[0]))) {
-                    return;
-                }
+        return postReq;
+    }
 
-                synchronized(parent) {
-                    parent.seqNums.set(servId - 1, seqNumber + 1);
-                    writeRets.add(postRet);
-                    parent.notify();
-                }
-                
-                return;                
-            case POSTGENERAL:
-            	WriteRet postGenRet = null;
-            	WriteReq postGenReq = new WriteReq();
-            	postGenReq.setSender(username);
-            	postGenReq.setDestination(servName);
-                postGenReq.setSeqNumber(seqNumber);
-            	
-            	AnnouncementMessage postGen = new AnnouncementMessage();
-            	postGen.setWriter(username);
-            	postGen.setMessage(message);
-                postGen.getAnnouncementList().addAll(this.references);
-                postGen.setWts(wts);
-                postGen.setType("General");
-            	
-                List<String> messHashG = AnnouncementTools.postToSign(postGen, false);
-                
-                String messSigG = makeSignature(messHashG.toArray(new String[0]));
-
-                if (messSigG == null) return;
-                
-                postGen.setSignature(messSigG);
-
-                postGenReq.setAnnouncement(postGen);
-                
-                toHash = new ArrayList<>();
-                toHash.add(username);
-                toHash.add(servName);
-                toHash.add(String.valueOf(seqNumber));
-                toHash.addAll(AnnouncementTools.postToSign(postGen, true));
-                
-                
-                end = LocalDateTime.now().plusSeconds(40);
-                
-                while (LocalDateTime.now().isBefore(end)) {
-                    signature = makeSignature(toHash.toArray(new String[0]));
-    
-                    if (signature == null) return;
-                    
-                    postGenReq.setSignature(signature);
-
-                    try {
-                        postGenRet = port.postGeneral(postGenReq);
-                        break;
-                    } catch (Exception e2) {
-                        synchronized(parent) {
-                            seqNumber = parent.seqNums.get(servId - 1);
-                        }
+    /* The posts are already signed, only the batch is signed for each server */
+    private WriteBatchReq batchRequest() {
+        WriteBatchReq batchReq = new WriteBatchReq();
+        batchReq.setSender(username);
+        batchReq.setDestination(servName);
+        batchReq.setSeqNumber(seqNumber);
+        batchReq.getAnnouncements().addAll(posts);
 
-                        toHash.set(2, String.valueOf(seqNumber));
-                        postGenReq.setSeqNumber(seqNumber);
-                    }
-                }
+        MessageEncoder encoder = CryptoTools.encoder()
+            .string(username)
+            .string(servName)
+            .number(seqNumber);
+        String signature = authenticate(AnnouncementTools.encodePosts(encoder, posts).digest());
 
-                hash = decryptSignature(servName, postGenRet.getSignature());
+        if (signature == null) return null;
 
-                if (hash == null) return;
-                
-                toHash = new ArrayList<>();
+        batchReq.setSignature(signature);
 
-                toHash.add(servName);
-                toHash.add(username);
-                toHash.add(String.valueOf(postGenRet.getSeqNumber()));
-                toHash.add(hash);
-                
-                if (!checkHash(toHash.toArray(new String[0]))) {
-                    return;
-                }
+        return batchReq;
+    }
 
-                synchronized(parent) {
-                    parent.seqNums.set(servId - 1, seqNumber + 1);
-                    writeRets.add(postGenRet);
-                    parent.notify();
-                }
-                
-                return;
-            case READ:
-                ReadRet readRet = null;
-                ReadReq readReq = new ReadReq();
-                readReq.setSender(username);
-                readReq.setDestination(servName);
-                readReq.setSeqNumber(seqNumber);
-                readReq.setOwner(clientID);
-                readReq.setRid(rid);
-                readReq.setNumber(number);
-                
-                toHash = new ArrayList<>();
-                toHash.add(username);
-                toHash.add(servName);
-                toHash.add(String.valueOf(seqNumber));
-                toHash.add(String.valueOf(clientID));
-                toHash.add(String.valueOf(rid));
-                toHash.add(String.valueOf(number));
-                
-                end = LocalDateTime.now().plusSeconds(40);
-
-                while (LocalDateTime.now().isBefore(end)) {
-                    signature = makeSignature(toHash.toArray(new String[0]));
-
-                    if (signature == null) return;
-
-                    readReq.setSignature(signature);
-
-                    try {
-                        readRet = port.read(readReq);
-                        break;
-                    } catch (Exception e2) {
-                        synchronized(parent) {
-                            seqNumber = parent.seqNums.get(servId - 1);
-                        }
+    private ReadReq readRequest() {
+        ReadReq readReq = new ReadReq();
+        readReq.setSender(username);
+        readReq.setDestination(servName);
+        readReq.setSeqNumber(seqNumber);
+        readReq.setOwner(clientID);
+        readReq.setRid(rid);
+        readReq.setNumber(number);
+        readReq.setSince(since);
+        readReq.setCursor(cursor());
+        readReq.setSummary(summary);
+
+        String signature = authenticate(CryptoTools.encoder()
+            .string(username)
+            .string(servName)
+            .number(seqNumber)
+            .string(clientID)
+            .number(rid)
+            .number(number)
+            .number(since)
+            .string(cursor())
+            .number(summary ? 1 : 0)
+            .digest());
+
+        if (signature == null) return null;
+
+        readReq.setSignature(signature);
+
+        return readReq;
+    }
 
-                        toHash.set(2, String.valueOf(seqNumber));
-                        readReq.setSeqNumber(seqNumber);
-                    }
-                }
-                
-                if (readRet == null) return;
+    private ReadGeneralReq readGeneralRequest() {
+        ReadGeneralReq readGenReq = new ReadGeneralReq();
+        readGenReq.setSender(username);
+        readGenReq.setDestination(servName);
+        readGenReq.setSeqNumber(seqNumber);
+        readGenReq.setRid(rid);
+        readGenReq.setNumber(number);
+        readGenReq.setSince(since);
+        readGenReq.setCursor(cursor());
+        readGenReq.setSummary(summary);
+
+        String signature = authenticate(CryptoTools.encoder()
+            .string(username)
+            .string(servName)
+            .number(seqNumber)
+            .number(rid)
+            .number(number)
+            .number(since)
+            .string(cursor())
+            .number(summary ? 1 : 0)
+            .digest());
+
+        if (signature == null) return null;
+
+        readGenReq.setSignature(signature);
+
+        return readGenReq;
+    }
 
-                if (!readRet.getSender().equals(servName)) 
-                    throw new RuntimeException("Not my server response");
-                
-                if (!readRet.getDestination().equals(username))
-                    throw new RuntimeException("Response not to me");
+    private WriteBackReq writeBackRequest() {
+        WriteBackReq writeBackReq = new WriteBackReq();
+        writeBackReq.setSender(username);
+        writeBackReq.setDestination(servName);
+        writeBackReq.setSeqNumber(seqNumber);
+        writeBackReq.getAnnouncements().addAll(writeBack);
 
-                if (readRet.getSeqNumber() != seqNumber) {
-                    throw new RuntimeException("Sequence numbers don't match");
-                }
+        MessageEncoder encoder = CryptoTools.encoder()
+            .string(writeBackReq.getSender())
+            .string(writeBackReq.getDestination())
+            .number(writeBackReq.getSeqNumber());
+        String signature = authenticate(AnnouncementTools.encodePosts(encoder, writeBackReq.getAnnouncements()).digest());
 
-                hash = decryptSignature(readRet.getSender(), readRet.getSignature());
-
-                if (hash == null) return;
-                
-                toHash = new ArrayList<>();
-                toHash.add(readRet.getSender());
-                toHash.add(readRet.getDestination());
-                toHash.add(String.valueOf(readRet.getSeqNumber()));
-                toHash.add(String.valueOf(rid));
-                toHash.addAll(AnnouncementTools.listToSign(readRet.getAnnouncements()));
-                toHash.add(hash);
-
-                if (!checkHash(toHash.toArray(new String[0]))) {
-                	System.out.println("Hashes do not match");
-                    return;
-                }
+        if (signature == null) return null;
 
-                if (!verifySigns(readRet.getAnnouncements())) {
-                    System.out.println("Posts are not valid");
-                    return;
-                }
-                
-                synchronized (parent) {
-                    parent.seqNums.set(servId - 1, seqNumber + 1);
-                	readRets.add(readRet);
-                	parent.notify();
-                }
-                
-				return;				
-            case READGENERAL:
-            	ReadRet readGenRet = null;
-            	ReadGeneralReq readGenReq = new ReadGeneralReq();
-            	readGenReq.setSender(username);
-            	readGenReq.setDestination(servName);
-                readGenReq.setSeqNumber(seqNumber);
-                readGenReq.setRid(rid);
-                readGenReq.setNumber(number);
-                            	
-            	toHash = new ArrayList<>();
-                toHash.add(username);
-                toHash.add(servName);
-                toHash.add(String.valueOf(seqNumber));
-                toHash.add(String.valueOf(rid));
-                toHash.add(String.valueOf(number));
-                
-                
-                end = LocalDateTime.now().plusSeconds(40);
-                
-                while (LocalDateTime.now().isBefore(end)) {
-                    signature = makeSignature(toHash.toArray(new String[0]));
-                    
-                    if (signature == null) return;
-                    
-                    readGenReq.setSignature(signature);
-                    
-                    try {
-                        readGenRet = port.readGeneral(readGenReq);
-                        break;
-                    } catch (Exception e2) {
-                        synchronized(parent) {
-                            seqNumber = parent.seqNums.get(servId - 1);
-                        }
+        writeBackReq.setSignature(signature);
 
-                        toHash.set(2, String.valueOf(seqNumber));
-                        readGenReq.setSeqNumber(seqNumber);
-                    } 
-                }
+        return writeBackReq;
+    }
 
-                if (readGenRet == null) return;
-                
-                if (!readGenRet.getSender().equals(servName)) 
-                    throw new RuntimeException("Not my server response");
-                
-                if (!readGenRet.getDestination().equals(username))
-                    throw new RuntimeException("Response not to me");
+    // --- Responses ---------
 
-                if (readGenRet.getSeqNumber() != seqNumber) {
-                    throw new RuntimeException("Sequence numbers don't match");
-                }
-                
-                hash = decryptSignature(readGenRet.getSender(), readGenRet.getSignature());
-
-                if (hash == null) return;
-                
-                toHash = new ArrayList<>();
-                toHash.add(readGenRet.getSender());
-                toHash.add(readGenRet.getDestination());
-                toHash.add(String.valueOf(readGenRet.getSeqNumber()));
-                toHash.add(String.valueOf(rid));
-                toHash.addAll(AnnouncementTools.listToSign(readGenRet.getAnnouncements()));
-                toHash.add(hash);
-
-                if (!checkHash(toHash.toArray(new String[0]))) {
-                    return;
-                }
-                
-                if (!verifySigns(readGenRet.getAnnouncements())) {
-                    System.out.println("Posts are not valid");
-                    return;
-                }
-                
-                synchronized (parent) {
-                    parent.seqNums.set(servId - 1, seqNumber + 1);
-                    readRets.add(readGenRet);
-                    parent.notify();
-                }
+    /* Not signed, the register that carries it is */
+    private String checkNonce(NonceRet response) {
+        if (response == null) return null;
 
-                return;
-             case WRITEBACK:
-                WriteBackRet writeBackRet = null;
-                WriteBackReq writeBackReq = new WriteBackReq();
-                
-                writeBackReq.setSender(username);
-                writeBackReq.setDestination(servName);
-                writeBackReq.setSeqNumber(seqNumber);
-                writeBackReq.getAnnouncements().addAll(writeBack.getAnnouncements());
-                
-                toHash = new ArrayList<>();
-                toHash.add(writeBackReq.getSender());
-                toHash.add(writeBackReq.getDestination());
-                toHash.add(String.valueOf(writeBackReq.getSeqNumber()));
-                toHash.addAll(AnnouncementTools.listToSign(writeBackReq.getAnnouncements()));
-                
-                end = LocalDateTime.now().plusSeconds(40);
-                
-                while (LocalDateTime.now().isBefore(end)) {
-                    signature = makeSignature(toHash.toArray(new String[0]));
-                
-                    if (signature == null) return;
-                
-                    writeBackReq.setSignature(signature);
-
-                    try {
-                        writeBackRet = port.writeBack(writeBackReq);
-                        break;
-                    } catch (Exception e2) {
-                        synchronized(parent) {
-                            seqNumber = parent.seqNums.get(servId - 1);
-                        }
+        if (!servName.equals(response.getSender()) || !username.equals(response.getDestination())) return null;
 
-                        toHash.set(2, String.valueOf(seqNumber));
-                        writeBackReq.setSeqNumber(seqNumber);
-                    }
-                }
+        return response.getNonce();
+    }
 
-                if (writeBackRet == null) return;
+    private RegisterRet checkRegister(RegisterRet response) {
+        if (response == null) return null;
 
-                hash = decryptSignature(writeBackRet.getSender(), writeBackRet.getSignature());
-                
-                if (hash == null) {
-                    System.out.println("Issue on hash");
-                    return;
-                }
-                
-                toHash = new ArrayList<>();
-
-                toHash.add(servName);
-                toHash.add(username);
-                toHash.add(String.valueOf(seqNumber));
-                toHash.add(hash);
-                
-                if (!checkHash(toHash.toArray(new String[0]))) {
-                    return;
+        if (!response.getSender().equals(servName)) throw new RuntimeException("Received response that wasn't from right server");
+        if (!response.getDestination().equals(username)) throw new RuntimeException("Received response that wasn't for me");
+
+        MessageEncoder encoder = CryptoTools.encoder()
+            .string(response.getSender())
+            .string(response.getDestination())
+            .number(response.getSeqNumber())
+            .number(response.getWts())
+            .number(response.getRid());
+        if (wrappedSession != null) encoder.string(wrappedSession);
+
+        if (!verifySignature(response.getSender(), encoder.digest(), response.getSignature())) return null;
+
+        synchronized(parent.seqNums) {
+            parent.seqNums.set(servId - 1, response.getSeqNumber());
+        }
+
+        if (session != null) {
+            parent.sessions.put(servId, session);
+        } else {
+            parent.sessions.remove(servId);
+        }
+
+        return response;
+    }
+
+    private WriteRet checkPost(WriteRet postRet) {
+        if (postRet == null) return null;
+
+        if (wts != postRet.getWts()) {
+            System.out.println("WTS wrongly set");
+            return null; // if server acked wrong w
+        }
+
+        MessageEncoder encoder = CryptoTools.encoder()
+            .string(servName)
+            .string(username)
+            .number(seqNumber);
+
+        if (!verifyServer(encoder.digest(), postRet.getSignature())) {
+            System.out.println("Issue on hash");
+            return null;
+        }
+
+        synchronized(parent.seqNums) {
+            parent.seqNums.set(servId - 1, seqNumber + 1);
+        }
+
+        return postRet;
+    }
+
+    private WriteRet checkPostGeneral(WriteRet postGenRet) {
+        if (postGenRet == null) return null;
+
+        MessageEncoder encoder = CryptoTools.encoder()
+            .string(servName)
+            .string(username)
+            .number(postGenRet.getSeqNumber());
+
+        if (!verifyServer(encoder.digest(), postGenRet.getSignature())) {
+            return null;
+        }
+
+        synchronized(parent.seqNums) {
+            parent.seqNums.set(servId - 1, seqNumber + 1);
+        }
+
+        return postGenRet;
+    }
+
+    private ReadRet checkRead(ReadRet readRet) {
+        if (readRet == null) return null;
+
+        if (!readRet.getSender().equals(servName)) 
+            throw new RuntimeException("Not my server response");
+
+        if (!readRet.getDestination().equals(username))
+            throw new RuntimeException("Response not to me");
+
+        if (readRet.getSeqNumber() != seqNumber) {
+            throw new RuntimeException("Sequence numbers don't match");
+        }
+
+        if (!verifyReadRet(readRet)) {
+            System.out.println("Hashes do not match");
+            return null;
+        }
+
+        if (!verifySigns(readRet.getAnnouncements())) {
+            System.out.println("Posts are not valid");
+            return null;
+        }
+
+        synchronized (parent.seqNums) {
+            parent.seqNums.set(servId - 1, seqNumber + 1);
+        }
+
+        // Newer posts must follow the ones the front end already has (a
+        // summary only holds the last of them)
+        if (!summary && prefix != null && !readRet.getPrefix().equals(prefix)) {
+            System.out.println("Posts do not follow the cached ones");
+            return null;
+        }
+
+        // A whole board must start at its first post, only the last posts
+        // of the general board may start anywhere
+        if (!summary && prefix == null && since == 0 && (op == Operation.READ || number == null || number == 0)
+                && !readRet.getPrefix().equals(EMPTY_PREFIX)) {
+            System.out.println("Posts do not start at the first one");
+            return null;
+        }
+
+        return readRet;
+    }
+
+    private WriteBackRet checkWriteBack(WriteBackRet writeBackRet) {
+        if (writeBackRet == null) return null;
+
+        MessageEncoder encoder = CryptoTools.encoder()
+            .string(servName)
+            .string(username)
+            .number(seqNumber);
+
+        if (!verifyServer(encoder.digest(), writeBackRet.getSignature())) {
+            System.out.println("Issue on hash");
+            return null;
+        }
+
+        synchronized(parent.seqNums) {
+            parent.seqNums.set(servId - 1, seqNumber + 1);
+        }
+
+        return writeBackRet;
+    }
+
+    private boolean verifyBusy(BusyRet busy) {
+        if (!servName.equals(busy.getSender()) || !username.equals(busy.getDestination())) return false;
+
+        Integer sent = (op == Operation.REGISTER) ? 0 : seqNumber;
+        if (busy.getSeqNumber() != sent) return false;
+
+        MessageEncoder encoder = CryptoTools.encoder()
+            .string(busy.getSender())
+            .string(busy.getDestination())
+            .number(busy.getSeqNumber())
+            .number(busy.getRetryAfter());
+
+        return verifyServer(encoder.digest(), busy.getSignature());
+    }
+
+    // --- Transport ---------
+
+    /*
+    * Sends the request built by `request` without blocking, and sends it
+    * again, with the last sequence number, as the retry policy says, until
+    * the server answers, the call is cancelled or the deadline passes.
+    * Completes with null if the server did not answer.
+    */
+    private <Q, W, R> CompletableFuture<R> send(Supplier<Q> request,
+            BiFunction<Q, AsyncHandler<W>, Future<?>> async, Function<W, R> unwrap) {
+        CompletableFuture<R> res = new CompletableFuture<>();
+
+        // The request is only signed again when its sequence number or session key changed
+        Supplier<Q> signed = new Supplier<Q>() {
+            private Integer signedSeq;
+            private SecretKey signedSession;
+            private Q signedReq;
+
+            @Override
+            public Q get() {
+                SecretKey current = parent.sessions.get(servId);
+                if (signedReq == null || !Objects.equals(signedSeq, seqNumber) || signedSession != current) {
+                    signedSeq = seqNumber;
+                    signedSession = current;
+                    signedReq = request.get();
                 }
+                return signedReq;
+            }
+        };
 
-                synchronized(parent) {
-                    parent.seqNums.set(servId - 1, seqNumber + 1);
-                    writeBackRets.add(writeBackRet);
-                    parent.notify();
+        attempt(res, signed, async, unwrap);
+
+        return res;
+    }
+
+    private <Q, W, R> void attempt(CompletableFuture<R> res, Supplier<Q> request,
+            BiFunction<Q, AsyncHandler<W>, Future<?>> async, Function<W, R> unwrap) {
+        Q req = request.get();
+
+        if (req == null) {
+            res.complete(null);
+            return;
+        }
+
+        try {
+            async.apply(req, response -> {
+                try {
+                    R reply = unwrap.apply(response.get());
+                    parent.retries.success(servId);
+                    res.complete(reply);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ServerBusy && verifyBusy(((ServerBusy) e.getCause()).getFaultInfo())) {
+                        // Overloaded but alive, try again once it asked to
+                        retry(res, request, async, unwrap, ((ServerBusy) e.getCause()).getFaultInfo().getRetryAfter());
+                        return;
+                    }
+                    // A fault is still an answer, only a replica that does not answer is suspected
+                    if (e.getCause() instanceof SOAPFaultException) {
+                        parent.retries.success(servId);
+                        // The server misses posts before the ones written back, sending them again does not help
+                        if (Constants.WRITEBACK_GAP.equals(e.getCause().getMessage())) {
+                            res.complete(null);
+                            return;
+                        }
+                        // The nonce is stale or already taken, the register starts over with a new one
+                        if (Constants.NONCE_INVALID.equals(e.getCause().getMessage())) {
+                            nonceRefused = true;
+                            res.complete(null);
+                            return;
+                        }
+                        // The server lost the session key (e.g. it restarted), sign until registering again
+                        if (Constants.SESSION_INVALID.equals(e.getCause().getMessage())) parent.sessions.remove(servId);
+                    } else {
+                        parent.retries.failure(servId);
+                    }
+                    retry(res, request, async, unwrap, 0);
+                } catch (InterruptedException e) {
+                    parent.retries.failure(servId);
+                    retry(res, request, async, unwrap, 0);
                 }
-                
-                return;   	 
+            });
+        } catch (WebServiceException e) {
+            parent.retries.failure(servId);
+            retry(res, request, async, unwrap, 0);
         }
-        
-        System.out.println("HELLO");
     }
-    
+
+    private <Q, W, R> void retry(CompletableFuture<R> res, Supplier<Q> request,
+            BiFunction<Q, AsyncHandler<W>, Future<?>> async, Function<W, R> unwrap, long wait) {
+        long left = end - System.currentTimeMillis();
+
+        if (cancelled || left <= 0) {
+            res.complete(null);
+            return;
+        }
+
+        // A request refused for an old sequence number is sent again at once with the new one
+        long delay = Objects.equals(parent.seqNum(servId), seqNumber)
+            ? Math.max(wait, parent.retries.delay(servId, attempts++))
+            : wait;
+
+        DELAYS.schedule(() -> {
+            if (cancelled) {
+                res.complete(null);
+                return;
+            }
+
+            seqNumber = parent.seqNum(servId);
+            attempt(res, request, async, unwrap);
+        }, Math.min(delay, left), TimeUnit.MILLISECONDS);
+    }
+
     // --- Auxiliary ---------
 
-    private String makeSignature(String[] args) {
+    /* Where this server's last page ended, if it said more posts follow */
+    private String cursor() {
+        return (cursors == null) ? null : cursors.get(servName);
+    }
+
+    private String makeSignature(byte[] hash) {
         String res = null;
         try {
-            res = CryptoTools.makeSignature(args);
+            res = CryptoTools.makeSignature(parent.username, hash);
         } catch (InvalidKeyException | CertificateException | KeyStoreException | NoSuchAlgorithmException
                 | NoSuchPaddingException | IllegalBlockSizeException | BadPaddingException
                 | UnrecoverableEntryException | IOException e) {
@@ -523,10 +632,38 @@ public class Client extends Thread {
         return res;
     }
 
-    private String decryptSignature(String sender, String signature) {
+    /* Authenticated with the session key once registered, signed before */
+    private String authenticate(byte[] hash) {
+        SecretKey key = parent.sessions.get(servId);
+        if (key == null) return makeSignature(hash);
+
+        String res = null;
+        try {
+            res = CryptoTools.makeMac(key, hash);
+        } catch (InvalidKeyException e) {
+            e.printStackTrace();
+        }
+        return res;
+    }
+
+    /* A reply of the server, authenticated with the session key or signed */
+    private boolean verifyServer(byte[] hash, String authenticator) {
+        if (!CryptoTools.isMac(authenticator)) return verifySignature(servName, hash, authenticator);
+
+        SecretKey key = parent.sessions.get(servId);
+        boolean res = false;
+        try {
+            res = key != null && CryptoTools.verifyMac(key, hash, authenticator);
+        } catch (InvalidKeyException e) {
+            e.printStackTrace();
+        }
+        return res;
+    }
+
+    private String wrapKey(SecretKey key) {
         String res = null;
         try {
-            res = CryptoTools.decryptSignature(sender, signature);
+            res = CryptoTools.wrapKey(servName, key);
         } catch (InvalidKeyException | CertificateException | KeyStoreException | NoSuchAlgorithmException
                 | NoSuchPaddingException | IllegalBlockSizeException | BadPaddingException
                 | UnrecoverableEntryException | IOException e) {
@@ -535,35 +672,37 @@ public class Client extends Thread {
         return res;
     }
 
-    private boolean checkHash(String[] args) {
+    private boolean verifySignature(String sender, byte[] hash, String signature) {
         boolean res = false;
         try {
-            res = CryptoTools.checkHash(args);
-        } catch (NoSuchAlgorithmException | UnrecoverableEntryException | KeyStoreException
-                | CertificateException | IOException e) {
+            res = CryptoTools.verifySignature(sender, hash, signature);
+        } catch (InvalidKeyException | CertificateException | KeyStoreException | NoSuchAlgorithmException
+                | NoSuchPaddingException | IllegalBlockSizeException | BadPaddingException
+                | UnrecoverableEntryException | IOException e) {
             e.printStackTrace();
         }
         return res;
     }
 
-    private boolean verifySigns(List<AnnouncementMessage> posts) {
-        String hash = null;
-        List<String> toHash;
-        for (AnnouncementMessage post: posts) {
-            hash = decryptSignature(post.getWriter(), post.getSignature());
-            if (hash == null) {
-                System.out.println("Error decrypting");
-                return false;
-            }
+    /* The posts must chain from the signed prefix to the signed head */
+    private boolean verifyReadRet(ReadRet ret) {
+        if (ret.getPrefix() == null || ret.getHead() == null) return false;
 
-            toHash = new ArrayList<>();
-            toHash.addAll(AnnouncementTools.postToSign(post, false));
-            toHash.add(hash);
+        byte[] prefix = AnnouncementTools.stringToDigest(ret.getPrefix());
+        byte[] head = AnnouncementTools.chain(prefix, ret.getAnnouncements());
 
-            if (!checkHash(toHash.toArray(new String[0]))) {
-                System.out.println("Hash is wrong on post");
-                return false;
-            }
+        if (!MessageDigest.isEqual(head, AnnouncementTools.stringToDigest(ret.getHead()))) return false;
+
+        byte[] hash = AnnouncementTools.hashReadRet(ret.getSender(), ret.getDestination(),
+            ret.getSeqNumber(), rid, prefix, head, ret.getCursor());
+
+        return verifyServer(hash, ret.getSignature());
+    }
+
+    private boolean verifySigns(List<AnnouncementMessage> posts) {
+        if (!parent.signatures.verifyAll(posts)) {
+            System.out.println("Hash is wrong on post");
+            return false;
         }
 
         return true;
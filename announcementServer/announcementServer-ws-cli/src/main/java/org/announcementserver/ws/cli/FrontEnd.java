@@ -2,19 +2,25 @@ package org.announcementserver.ws.cli;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.announcementserver.common.CryptoTools;
 import org.announcementserver.common.Constants;
+import org.announcementserver.utils.AnnouncementTools;
 import org.announcementserver.ws.AnnouncementMessage;
 import org.announcementserver.ws.AnnouncementServerPortType;
 import org.announcementserver.ws.AnnouncementServerService;
 
 import org.announcementserver.ws.RegisterRet;
 import org.announcementserver.ws.ReadRet;
-import org.announcementserver.ws.WriteRet;
-import org.announcementserver.ws.WriteBackRet;
 
 import java.io.IOException;
 import java.security.InvalidKeyException;
@@ -25,11 +31,18 @@ import java.security.cert.CertificateException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
 
 import javax.xml.ws.BindingProvider;
 import static javax.xml.ws.BindingProvider.ENDPOINT_ADDRESS_PROPERTY;
 
 public class FrontEnd {
+    public static final boolean ASYNC = Boolean.parseBoolean(System.getProperty("cli.async", "true"));
+    public static final int BATCH = Integer.getInteger("cli.batch", 200);
+    public static final boolean SESSION = Boolean.parseBoolean(System.getProperty("cli.session", "true"));
+    public static final boolean COMBINE = Boolean.parseBoolean(System.getProperty("cli.combine", "true"));
+    private static final String GENERAL = "general";
+
     List<AnnouncementServerPortType> ports = null;
     List<Integer> seqNums;
     List<String> wsUrls = null;
@@ -43,6 +56,13 @@ public class FrontEnd {
     Integer quorum;
     Integer wts = -1;
     Integer rid = -1;
+    SignatureCache signatures = new SignatureCache();
+    Map<Integer, SecretKey> sessions = new ConcurrentHashMap<>();
+    Map<String, BoardCache> boards = new HashMap<>();
+    QuorumCall calls;
+    RetryPolicy retries;
+    ReadStats stats = new ReadStats();
+    GeneralBatcher general = new GeneralBatcher(this::writeGeneral, BATCH);
 
     boolean verbose = false;
 
@@ -51,12 +71,9 @@ public class FrontEnd {
     }
 
     public FrontEnd(String host, String faults) throws AnnouncementServerClientException {
+        this(faults);
         wsUrls = new ArrayList<>();
         ports = new ArrayList<>();
-        f = Integer.valueOf(faults);
-        nServ = 3 * f + 1;
-        quorum = (nServ + f) / 2;
-        seqNums = Arrays.asList(new Integer[nServ]);
 
         for (Integer i = 1; i <= nServ; i++) {
             wsUrls.add(String.format(Constants.WS_NAME_FORMAT, host, Constants.PORT_START + i));
@@ -68,10 +85,35 @@ public class FrontEnd {
             client = ports.get(0);
     }
 
+    /* Over the given ports of server1 to server<3f + 1>, e.g. of servers in this JVM */
+    public FrontEnd(List<AnnouncementServerPortType> ports, String faults) {
+        this(faults);
+        if (ports.size() != nServ)
+            throw new RuntimeException(String.format("%s faults need %d servers, not %d", faults, nServ, ports.size()));
+
+        this.ports = new ArrayList<>(ports);
+
+        if (nServ == 1)
+            client = this.ports.get(0);
+    }
+
+    private FrontEnd(String faults) {
+        f = Integer.valueOf(faults);
+        nServ = 3 * f + 1;
+        quorum = (nServ + f) / 2;
+        seqNums = Arrays.asList(new Integer[nServ]);
+        calls = new QuorumCall(nServ, quorum + 1);
+        retries = new RetryPolicy(nServ);
+    }
+
     public void init(String username) throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException,
             CertificateException, IOException {
         this.username = username;
         this.publicKey = CryptoTools.publicKeyAsString(CryptoTools.getPublicKey(username));
+
+        for (Integer i = 1; i <= nServ; i++) {
+            CryptoTools.getKeyCache().preload(Constants.SERVER_NAME + i);
+        }
     }
 
     public void checkInit() {
@@ -84,22 +126,7 @@ public class FrontEnd {
             UnrecoverableEntryException, IOException {
 
         checkInit();
-        Client cli;
-        List<RegisterRet> responses = new ArrayList<>(nServ);
-
-        for (int i = 1; i <= nServ; i++) {
-            cli = new Client(this, Operation.REGISTER, i);
-            cli.regRets = responses;
-            cli.start();
-        }
-
-        while (responses.size() <= quorum) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+        List<RegisterRet> responses = quorumCall(Operation.REGISTER, cli -> {});
 
         wts = getWts(responses);
 
@@ -112,88 +139,82 @@ public class FrontEnd {
             IOException {
 
         checkInit();
-        Client cli;
 
         wts++;
-        List<WriteRet> ackList = new ArrayList<>(nServ);
+        AnnouncementMessage post = signedPosts("Personal", Collections.singletonList(message),
+            Collections.singletonList(announcementList), wts).get(0);
         
         this.response = null;
-        for (int i = 1; i <= nServ; i++) {
-            cli = new Client(this, Operation.POST, i);
-            cli.message = message;
-            cli.references = announcementList;
-            cli.seqNumber = seqNums.get(i-1);
-            cli.wts = wts;
-            cli.writeRets = ackList;
-            cli.start();
-        }
-        
-        while (ackList.size() <= quorum) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+        quorumCall(Operation.POST, cli -> {
+            cli.post = post;
+            cli.wts = post.getWts();
+        });
         
         return "Post was successfully posted to Personal Board!";
     }
 
-    public synchronized String postGeneral(String message, List<String> announcementList)
+    /*
+    * Concurrent calls are combined into one batch (see GeneralBatcher),
+    * unless -Dcli.combine=false
+    */
+    public String postGeneral(String message, List<String> announcementList)
             throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, CertificateException,
             IOException, InvalidKeyException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
 
         checkInit();
-        Client cli;
 
-        // READ PHASE: obtain highest wts
+        if (COMBINE) {
+            general.post(message, announcementList);
+        } else {
+            writeGeneral(Collections.singletonList(message), Collections.singletonList(announcementList));
+        }
 
-        List<ReadRet> readList = new ArrayList<>(nServ);
+        return "Post was successfully posted to General Board!";
+    }
 
-        rid++;
+    /*
+    * Posts the messages in order, BATCH posts per request: each post is
+    * signed once, and each request once per server
+    */
+    public synchronized String postBatch(List<String> messages, List<List<String>> announcementLists)
+            throws InvalidKeyException, CertificateException, KeyStoreException, NoSuchAlgorithmException,
+            NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException, UnrecoverableEntryException,
+            IOException {
 
-        for (int i = 1; i <= nServ; i++) {
-            cli = new Client(this, Operation.READGENERAL, i);
-            cli.number = 1;
-            cli.seqNumber = seqNums.get(i-1);
-            cli.rid = rid;
-            cli.readRets = readList;
-            cli.start();
-        }
+        checkInit();
+        checkBatch(messages, announcementLists);
 
-        while (readList.size() <= quorum) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+        for (int start = 0; start < messages.size(); start += BATCH) {
+            int end = Math.min(start + BATCH, messages.size());
+            List<AnnouncementMessage> posts = signedPosts("Personal", messages.subList(start, end),
+                announcementLists.subList(start, end), wts + 1);
 
-        Integer nwts = highestWts(readList);
+            wts += posts.size();
+            Integer last = wts;
 
-        // WRITE PHASE: write the wts with highest wts + 1
-        List<WriteRet> ackList = new ArrayList<>(nServ);
-        
-        response = null;
-        for (int i = 1; i <= nServ; i++) {
-            cli = new Client(this, Operation.POSTGENERAL, i);
-            cli.message = message;
-            cli.references = announcementList;
-            cli.seqNumber = seqNums.get(i-1);
-            cli.wts = nwts + 1;
-            cli.writeRets = ackList;
-            cli.start();
+            this.response = null;
+            quorumCall(Operation.POSTBATCH, cli -> {
+                cli.posts = posts;
+                cli.wts = last;
+            });
         }
-        
-        while (ackList.size() <= quorum) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+
+        return String.format("%d posts were successfully posted to Personal Board!", messages.size());
+    }
+
+    public synchronized String postGeneralBatch(List<String> messages, List<List<String>> announcementLists)
+            throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, CertificateException,
+            IOException, InvalidKeyException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
+
+        checkInit();
+        checkBatch(messages, announcementLists);
+
+        for (int start = 0; start < messages.size(); start += BATCH) {
+            int end = Math.min(start + BATCH, messages.size());
+            writeGeneral(messages.subList(start, end), announcementLists.subList(start, end));
         }
 
-        return "Post was successfully posted to General Board!";
+        return String.format("%d posts were successfully posted to General Board!", messages.size());
     }
 
     public synchronized String read(String clientID, Integer number) throws NoSuchAlgorithmException, UnrecoverableEntryException,
@@ -201,59 +222,19 @@ public class FrontEnd {
             NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
 
         checkInit();
-        Client cli;
-        List<ReadRet> readList = new ArrayList<>(nServ);
-        List<WriteBackRet> ackList = new ArrayList<>(nServ);
-        rid++;
-        
-        this.response = null;
-        for (int i = 1; i <= nServ; i++) {
-            cli = new Client(this, Operation.READ, i);
-            cli.seqNumber = seqNums.get(i-1);
-            cli.number = number;
-            cli.clientID = clientID;
-            cli.rid = rid;
-            cli.readRets = readList;
-            cli.start();
-        }
-        
-        while (readList.size() <= quorum) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
-        
-        ReadRet ret = highestVal(readList);
-                
-        // Write Back Phase
-        
-        if(!ret.getAnnouncements().isEmpty()) { //not sure if that is enough (the intention is: ret has no posts, no need to do write back)
-            for (int i = 1; i <= nServ; i++) {
-            	cli = new Client(this, Operation.WRITEBACK, i);
-            	cli.seqNumber = seqNums.get(i-1);
-            	cli.writeBack = ret;
-            	cli.writeBackRets = ackList;
-            	cli.start();
-            }
-            
-            while (ackList.size() <= quorum) {
-            	try {
-            		wait();
-            	} catch (InterruptedException e) {
-            		e.printStackTrace();
-            	}
-            }
+
+        BoardCache cached = boards.get(clientID);
+        try {
+            cached = readPages(Operation.READ, clientID, number, cached);
+        } catch (RuntimeException e) {
+            if (cached == null) throw e;
+            // Too few servers have the cached posts, read the whole board again
+            boards.remove(clientID);
+            cached = readPages(Operation.READ, clientID, number, null);
         }
+        boards.put(clientID, cached);
 
-        Integer end = ret.getAnnouncements().size();
-		Integer start = 
-            (number > end || number == 0) ? 0 : end - number;
-            
-        List<AnnouncementMessage> posts = ret.getAnnouncements().subList(start, end);
-        
-        return postsToString(posts);
+        return postsToString(cached.last(number));
     }
 
     public synchronized String readGeneral(Integer number) throws NoSuchAlgorithmException, UnrecoverableEntryException,
@@ -261,31 +242,37 @@ public class FrontEnd {
             IllegalBlockSizeException, BadPaddingException {
 
         checkInit();
-        Client cli;
-        List<ReadRet> readList = new ArrayList<>(nServ);
-        rid++;
-        
-        response = null;
-        for (int i = 1; i <= nServ; i++) {
-            cli = new Client(this, Operation.READGENERAL, i);
-            cli.seqNumber = seqNums.get(i - 1);
-            cli.number = number;
-            cli.rid = rid;
-            cli.readRets = readList;
-            cli.start();
-        }
-        
-        while (readList.size() <= quorum) {
+
+        BoardCache cached = boards.get(GENERAL);
+        if (cached != null) {
             try {
-                wait();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                cached = readPages(Operation.READGENERAL, null, number, cached);
+                boards.put(GENERAL, cached);
+                if (cached.covers(number)) return postsToString(cached.last(number));
+            } catch (RuntimeException e) {
+                // A late post changed the board before the cached ones
             }
         }
 
-        ReadRet ret = highestVal(readList);
+        cached = readPages(Operation.READGENERAL, null, number, null);
+        boards.put(GENERAL, cached);
         
-        return postsToString(ret.getAnnouncements());
+        return postsToString(cached.last(number));
+    }
+
+    public ReadStats getReadStats() {
+        return stats;
+    }
+
+    public GeneralBatcher getGeneralBatcher() {
+        return general;
+    }
+
+    /* Last sequence number agreed with server `id` */
+    Integer seqNum(Integer id) {
+        synchronized (seqNums) {
+            return seqNums.get(id - 1);
+        }
     }
 
     private void createStub() {
@@ -295,6 +282,7 @@ public class FrontEnd {
             if (verbose)
                 System.out.println("Creating stub ...");
             service = new AnnouncementServerService();
+            service.setExecutor(calls.executor()); // runs the asynchronous replies
             port = service.getAnnouncementServerPort();
 
             if (verbose)
@@ -313,6 +301,288 @@ public class FrontEnd {
 
     // AUXILIARY FUNCTIONS
 
+    /* Runs op on every server, returns the first quorum of valid responses */
+    private <T> List<T> quorumCall(Operation op, Consumer<Client> setup) {
+        List<Integer> ids = new ArrayList<>();
+        for (Integer id = 1; id <= nServ; id++) {
+            ids.add(id);
+        }
+        return quorumCall(op, setup, ids, quorum + 1);
+    }
+
+    /* Runs op on the servers `ids`, returns the first `needed` valid responses */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> quorumCall(Operation op, Consumer<Client> setup, List<Integer> ids, int needed) {
+        if (ASYNC) {
+            return calls.invokeAsync(id -> {
+                Client cli = new Client(this, op, id);
+                setup.accept(cli);
+                return (CompletableFuture<T>) (CompletableFuture<?>) cli.call();
+            }, ids, needed);
+        }
+
+        // One blocked thread per replica call
+        return calls.invoke(id -> {
+            Client cli = new Client(this, op, id);
+            setup.accept(cli);
+            return (T) cli.call().get();
+        }, ids, needed);
+    }
+
+    /* One read of the highest wts, then the posts take the wts after it */
+    private synchronized void writeGeneral(List<String> messages, List<List<String>> announcementLists)
+            throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException, CertificateException,
+            IOException, InvalidKeyException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
+
+        // READ PHASE: obtain highest wts
+
+        rid++;
+
+        List<ReadRet> readList = quorumCall(Operation.READGENERAL, cli -> {
+            cli.number = 1;
+            cli.rid = rid;
+        });
+
+        // WRITE PHASE: write the posts with highest wts + 1 onwards
+
+        List<AnnouncementMessage> posts = signedPosts("General", messages, announcementLists, highestWts(readList) + 1);
+
+        response = null;
+        if (posts.size() == 1) {
+            quorumCall(Operation.POSTGENERAL, cli -> {
+                cli.post = posts.get(0);
+                cli.wts = posts.get(0).getWts();
+            });
+        } else {
+            quorumCall(Operation.POSTGENERALBATCH, cli -> cli.posts = posts);
+        }
+    }
+
+    private void checkBatch(List<String> messages, List<List<String>> announcementLists) {
+        if (messages.isEmpty())
+            throw new RuntimeException("No posts to send");
+        if (announcementLists.size() != messages.size())
+            throw new RuntimeException("Each post needs its list of references");
+    }
+
+    /* Posts with consecutive wts from `first`, each signed by this client */
+    private List<AnnouncementMessage> signedPosts(String type, List<String> messages, List<List<String>> announcementLists,
+            Integer first) throws InvalidKeyException, CertificateException, KeyStoreException, NoSuchAlgorithmException,
+            NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException, UnrecoverableEntryException,
+            IOException {
+        List<AnnouncementMessage> posts = new ArrayList<>();
+
+        for (int i = 0; i < messages.size(); i++) {
+            AnnouncementMessage post = new AnnouncementMessage();
+            post.setWriter(username);
+            post.setMessage(messages.get(i));
+            post.getAnnouncementList().addAll(announcementLists.get(i));
+            post.setWts(first + i);
+            post.setType(type);
+            post.setSignature(CryptoTools.makeSignature(username,
+                AnnouncementTools.encodePost(CryptoTools.encoder(), post, false).digest()));
+            posts.add(post);
+        }
+
+        return posts;
+    }
+
+    /*
+    * Reads the posts after the cached ones, or the board if there are none.
+    * Every server first sends only the last of those posts; the posts are
+    * then read from one server whose last post is the highest, and only if
+    * none of them sends them, from every server.
+    */
+    private BoardCache readPages(Operation op, String clientID, Integer number, BoardCache cached) {
+        rid++;
+
+        response = null;
+        List<ReadRet> summaries = quorumCall(op, cli -> {
+            setupRead(cli, clientID, number, cached, new HashMap<>());
+            cli.summary = true;
+        });
+
+        ReadRet top = highestVal(summaries);
+        if (top.getAnnouncements().isEmpty()) {
+            stats.read(true);
+            return (cached == null) ? new BoardCache(top) : cached; // nothing new
+        }
+        AnnouncementMessage last = top.getAnnouncements().get(0);
+
+        // Servers sharing the last post may still differ before it, so the
+        // ones that show it are grouped by their signed head and the largest
+        // group is taken. The posts are written back to the other servers,
+        // until, with the ones that agreed, a quorum has them
+        Map<String, List<Integer>> heads = new HashMap<>();
+        for (ReadRet summary : summaries) {
+            if (!summary.getAnnouncements().isEmpty() && samePost(summary.getAnnouncements().get(0), last))
+                heads.computeIfAbsent(summary.getHead(), head -> new ArrayList<>()).add(serverId(summary));
+        }
+        String head = Collections.max(heads.entrySet(), (a, b) -> a.getValue().size() - b.getValue().size()).getKey();
+        List<Integer> agreed = heads.get(head);
+        stats.read(agreed.size() >= quorum + 1);
+
+        // The posts read must chain to the agreed head, or the next server is tried
+        for (Integer id : agreed) {
+            try {
+                BoardCache board = readPages(op, clientID, number, copy(cached), setup -> Arrays.asList(fetch(op, id, setup)));
+                if (head.equals(board.head())) {
+                    writeBack(op, board, summaries);
+                    return board;
+                }
+                System.out.println(String.format("Posts of %s%d do not end at the agreed head", Constants.SERVER_NAME, id));
+            } catch (RuntimeException e) {
+                System.out.println(String.format("Could not read the posts from %s%d: %s", Constants.SERVER_NAME, id, e.getMessage()));
+            }
+        }
+
+        // No server sent the posts it summarized
+        BoardCache board = readPages(op, clientID, number, copy(cached), setup -> quorumCall(op, setup));
+        writeBack(op, board, summaries);
+        return board;
+    }
+
+    /*
+    * Reads the posts page after page from `replicas`, for as long as one of
+    * them says more posts follow
+    */
+    private BoardCache readPages(Operation op, String clientID, Integer number, BoardCache cached,
+            Function<Consumer<Client>, List<ReadRet>> replicas) {
+        BoardCache board = cached;
+        Map<String, String> cursors = new HashMap<>();
+        ReadRet ret;
+
+        do {
+            BoardCache from = board;
+            Map<String, String> pageCursors = cursors;
+
+            rid++;
+
+            response = null;
+            List<ReadRet> readList = replicas.apply(cli -> setupRead(cli, clientID, number, from, pageCursors));
+
+            ret = highestVal(readList);
+
+            if (board == null) {
+                board = new BoardCache(ret);
+            } else {
+                board.append(ret);
+            }
+
+            cursors = new HashMap<>();
+            for (ReadRet reply : readList) {
+                if (reply.getCursor() != null) cursors.put(reply.getSender(), reply.getCursor());
+            }
+        } while (!cursors.isEmpty() && !ret.getAnnouncements().isEmpty());
+
+        return board;
+    }
+
+    /*
+    * Write Back Phase: the posts of a personal board are written back until
+    * a quorum has them, with the servers whose summary already ended at the
+    * board's head. Each other server is sent the posts after its own
+    * summary head, or the whole board when that head is not on it (or the
+    * server sent no summary), BATCH posts per request. A server that
+    * refuses them is not counted.
+    */
+    private void writeBack(Operation op, BoardCache board, List<ReadRet> summaries) {
+        if (op != Operation.READ || board.last(0).isEmpty()) return;
+
+        Map<Integer, String> heads = new HashMap<>();
+        for (ReadRet summary : summaries) {
+            heads.put(serverId(summary), summary.getHead());
+        }
+
+        List<Integer> stale = new ArrayList<>();
+        for (Integer id = 1; id <= nServ; id++) {
+            if (!board.head().equals(heads.get(id))) stale.add(id);
+        }
+        int needed = quorum + 1 - (nServ - stale.size());
+        if (needed <= 0) return;
+
+        Map<String, List<AnnouncementMessage>> missing = board.after(heads.values());
+        List<AnnouncementMessage> whole = new ArrayList<>(board.last(0));
+        Function<Integer, List<AnnouncementMessage>> posts = id -> missing.getOrDefault(heads.get(id), whole);
+
+        if (ASYNC) {
+            calls.invokeAsync(id -> writeBack(id, posts.apply(id), 0, new CompletableFuture<>()), stale, needed);
+        } else {
+            calls.invoke(id -> writeBack(id, posts.apply(id), 0, new CompletableFuture<>()).get(), stale, needed);
+        }
+        stats.writeBack(stale.size());
+    }
+
+    /*
+    * Sends posts[from..] to server `id`, one request after the other;
+    * completes with the last reply, or null once one is not valid
+    */
+    private CompletableFuture<Object> writeBack(Integer id, List<AnnouncementMessage> posts, int from,
+            CompletableFuture<Object> res) {
+        int end = Math.min(from + BATCH, posts.size());
+        Client cli = new Client(this, Operation.WRITEBACK, id);
+        cli.writeBack = posts.subList(from, end);
+
+        try {
+            cli.call().whenComplete((reply, e) -> {
+                if (e != null) {
+                    res.completeExceptionally(e);
+                } else if (reply == null || end == posts.size()) {
+                    res.complete(reply);
+                } else if (!res.isDone()) { // not cancelled once a quorum has the posts
+                    writeBack(id, posts, end, res);
+                }
+            });
+        } catch (RuntimeException e) {
+            res.completeExceptionally(e);
+        }
+
+        return res;
+    }
+
+    private Integer serverId(ReadRet ret) {
+        return Integer.valueOf(ret.getSender().substring(Constants.SERVER_NAME.length()));
+    }
+
+    private void setupRead(Client cli, String clientID, Integer number, BoardCache cached, Map<String, String> cursors) {
+        cli.number = number;
+        cli.clientID = clientID;
+        cli.rid = rid;
+        cli.since = (cached == null) ? 0 : cached.since();
+        cli.prefix = (cached == null) ? null : cached.head();
+        cli.cursors = cursors;
+    }
+
+    /* Valid reply of server `id` alone */
+    private ReadRet fetch(Operation op, Integer id, Consumer<Client> setup) {
+        Client cli = new Client(this, op, id);
+        setup.accept(cli);
+
+        Object reply;
+        try {
+            reply = cli.call().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for " + Constants.SERVER_NAME + id);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage());
+        }
+
+        if (reply == null) throw new RuntimeException("No valid reply");
+
+        return (ReadRet) reply;
+    }
+
+    private boolean samePost(AnnouncementMessage post, AnnouncementMessage other) {
+        return post.getWts() == other.getWts() && post.getWriter().equals(other.getWriter())
+            && post.getSignature().equals(other.getSignature());
+    }
+
+    /* Pages are appended to a copy, so a server whose posts are refused leaves the cache as it was */
+    private BoardCache copy(BoardCache cached) {
+        return (cached == null) ? null : new BoardCache(cached);
+    }
+
     /*
     * used for postGeneral decision on highest wts (which means, each ret only has one post)
     */
@@ -0,0 +1,123 @@
+package org.announcementserver.ws.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/*
+* Combines concurrent general board posts of a front end
+*
+* Posts are queued, and the caller that gets to write next takes every
+* post queued meanwhile (up to `max`) and writes them as one batch: one
+* read of the highest wts and one write for all of them, their wts
+* following in queue order. While a batch is being written the next one
+* fills up, so no caller waits for more posts than there already are.
+*/
+
+public class GeneralBatcher {
+
+    /* Writes the posts in order, as one batch */
+    public interface Writer {
+        void write(List<String> messages, List<List<String>> announcementLists) throws Exception;
+    }
+
+    private static class Pending {
+        final String message;
+        final List<String> announcementList;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(String message, List<String> announcementList) {
+            this.message = message;
+            this.announcementList = announcementList;
+        }
+    }
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Writer writer;
+    private final int max;
+    private boolean writing;
+    private long batches;
+    private long posts;
+
+    public GeneralBatcher(Writer writer, int max) {
+        this.writer = writer;
+        this.max = max;
+    }
+
+    /* Returns once the post is written, with the batch it went in */
+    public void post(String message, List<String> announcementList) {
+        Pending pending = new Pending(message, announcementList);
+        queue.add(pending);
+
+        try {
+            while (!pending.done.isDone()) {
+                synchronized (this) {
+                    // Wait for the batch being written, it may hold this post
+                    while (writing && !pending.done.isDone()) wait();
+                    if (pending.done.isDone()) break;
+                    writing = true;
+                }
+                try {
+                    writeBatch();
+                } finally {
+                    synchronized (this) {
+                        writing = false;
+                        notifyAll();
+                    }
+                }
+            }
+
+            pending.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while posting");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause.getMessage());
+        }
+    }
+
+    public synchronized long getBatches() {
+        return batches;
+    }
+
+    public synchronized long getPosts() {
+        return posts;
+    }
+
+    // --- Auxiliary functions -------------
+
+    /* Called by one caller at a time */
+    private void writeBatch() {
+        List<Pending> batch = new ArrayList<>();
+        queue.drainTo(batch, max);
+
+        List<String> messages = new ArrayList<>(batch.size());
+        List<List<String>> announcementLists = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            messages.add(pending.message);
+            announcementLists.add(pending.announcementList);
+        }
+
+        try {
+            writer.write(messages, announcementLists);
+        } catch (Exception e) {
+            for (Pending pending : batch) {
+                pending.done.completeExceptionally(e);
+            }
+            return;
+        }
+
+        synchronized (this) {
+            batches++;
+            posts += batch.size();
+        }
+        for (Pending pending : batch) {
+            pending.done.complete(null);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.announcementserver.ws.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+* Calls to every replica, answered by a quorum
+*
+* Each replica is called on a shared executor, or, with submitAsync,
+* through the asynchronous stubs. The call completes as soon as `needed`
+* replicas gave a valid (non null) reply, and the calls still running are
+* then cancelled. It fails once so many replicas failed that a
+* quorum can no longer be reached. A call can also go to some of the
+* replicas only, and need fewer replies.
+*
+* The executor is a bounded pool of cli.threads threads (default four per
+* replica); with cli.executor=virtual every call gets a virtual thread,
+* when the JVM has them.
+*/
+
+public class QuorumCall {
+    public static final String EXECUTOR = System.getProperty("cli.executor", "bounded");
+    public static final int THREADS = Integer.getInteger("cli.threads", 0);
+
+    /* Call to replica `id`, null if its reply is not valid */
+    public interface Replica<T> {
+        T call(int id) throws Exception;
+    }
+
+    /* Call to replica `id` that does not block, completes with null if its reply is not valid */
+    public interface AsyncReplica<T> {
+        CompletableFuture<T> call(int id);
+    }
+
+    /* Replies gathered until a quorum is reached or can no longer be */
+    private static final class Replies<T> {
+        final CompletableFuture<List<T>> result = new CompletableFuture<>();
+        final List<T> replies = new ArrayList<>();
+        final int targets;
+        final int needed;
+        int failures = 0;
+
+        Replies(int targets, int needed) {
+            this.targets = targets;
+            this.needed = needed;
+            if (needed <= 0) result.complete(new ArrayList<>());
+        }
+
+        synchronized void offer(int id, T reply, Throwable error) {
+            if (error != null && !result.isDone()) {
+                System.out.println(String.format("Replica %d failed: %s", id, error.getMessage()));
+            }
+
+            if (result.isDone()) return;
+
+            if (reply != null) {
+                replies.add(reply);
+                if (replies.size() == needed) result.complete(new ArrayList<>(replies));
+            } else if (++failures > targets - needed) {
+                result.completeExceptionally(new RuntimeException("No quorum of valid replies"));
+            }
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int replicas;
+    private final int needed;
+
+    public QuorumCall(int replicas, int needed) {
+        this(newExecutor(THREADS > 0 ? THREADS : 4 * replicas), replicas, needed);
+    }
+
+    public QuorumCall(ExecutorService executor, int replicas, int needed) {
+        this.executor = executor;
+        this.replicas = replicas;
+        this.needed = needed;
+    }
+
+    /* Runs each call on a thread of the executor */
+    public <T> CompletableFuture<List<T>> submit(Replica<T> replica) {
+        return submit(replica, all(), needed);
+    }
+
+    public <T> CompletableFuture<List<T>> submit(Replica<T> replica, List<Integer> ids, int needed) {
+        Replies<T> replies = new Replies<>(ids.size(), needed);
+        List<Future<?>> calls = new ArrayList<>(ids.size());
+
+        for (int id : ids) {
+            calls.add(executor.submit(() -> {
+                try {
+                    replies.offer(id, replica.call(id), null);
+                } catch (Exception e) {
+                    replies.offer(id, null, e);
+                }
+            }));
+        }
+
+        // Stragglers are not needed anymore
+        replies.result.whenComplete((res, e) -> calls.forEach(call -> call.cancel(true)));
+
+        return replies.result;
+    }
+
+    /* Starts every call from the calling thread, no thread waits for a reply */
+    public <T> CompletableFuture<List<T>> submitAsync(AsyncReplica<T> replica) {
+        return submitAsync(replica, all(), needed);
+    }
+
+    public <T> CompletableFuture<List<T>> submitAsync(AsyncReplica<T> replica, List<Integer> ids, int needed) {
+        Replies<T> replies = new Replies<>(ids.size(), needed);
+        List<CompletableFuture<T>> calls = new ArrayList<>(ids.size());
+
+        for (int id : ids) {
+            CompletableFuture<T> call;
+            try {
+                call = replica.call(id);
+            } catch (RuntimeException e) {
+                call = new CompletableFuture<>();
+                call.completeExceptionally(e);
+            }
+
+            calls.add(call);
+            call.whenComplete((reply, e) -> replies.offer(id, reply, e));
+        }
+
+        replies.result.whenComplete((res, e) -> calls.forEach(call -> call.cancel(true)));
+
+        return replies.result;
+    }
+
+    /* Blocks until a quorum replied */
+    public <T> List<T> invoke(Replica<T> replica) {
+        return await(submit(replica));
+    }
+
+    public <T> List<T> invokeAsync(AsyncReplica<T> replica) {
+        return await(submitAsync(replica));
+    }
+
+    /* Blocks until `needed` of the replicas `ids` replied */
+    public <T> List<T> invoke(Replica<T> replica, List<Integer> ids, int needed) {
+        return await(submit(replica, ids, needed));
+    }
+
+    public <T> List<T> invokeAsync(AsyncReplica<T> replica, List<Integer> ids, int needed) {
+        return await(submitAsync(replica, ids, needed));
+    }
+
+    /* Executor shared with the asynchronous stubs */
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // --- Auxiliary ---------
+
+    private List<Integer> all() {
+        List<Integer> ids = new ArrayList<>(replicas);
+        for (int id = 1; id <= replicas; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static <T> List<T> await(CompletableFuture<List<T>> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for a quorum");
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage());
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        if (EXECUTOR.equals("virtual")) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads are not available, using a bounded pool");
+            }
+        }
+
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "quorum-call");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package org.announcementserver.ws.cli;
+
+/*
+* How the reads of a front end ended
+*
+* A read is unanimous when every server of its quorum sent the same last
+* post: it then needs no write back. Otherwise the posts are written back
+* to the servers whose summary did not end at the board's head.
+*/
+
+public class ReadStats {
+    private long reads;
+    private long unanimous;
+    private long writeBacks;
+    private long servers;
+
+    public synchronized void read(boolean agreed) {
+        reads++;
+        if (agreed) unanimous++;
+    }
+
+    /* One write back round to `count` servers */
+    public synchronized void writeBack(int count) {
+        writeBacks++;
+        servers += count;
+    }
+
+    public synchronized long getReads() {
+        return reads;
+    }
+
+    public synchronized long getUnanimous() {
+        return unanimous;
+    }
+
+    public synchronized long getWriteBacks() {
+        return writeBacks;
+    }
+
+    public synchronized long getServers() {
+        return servers;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("reads %d, unanimous %d (%.0f%%), write backs %d to %d servers",
+            reads, unanimous, reads == 0 ? 0.0 : 100.0 * unanimous / reads, writeBacks, servers);
+    }
+}
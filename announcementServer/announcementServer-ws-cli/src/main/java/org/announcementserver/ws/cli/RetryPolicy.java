@@ -0,0 +1,65 @@
+package org.announcementserver.ws.cli;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+* When to send a failed request again
+*
+* The n-th retry to a replica waits a random time between 0 and
+* min(cli.retry.max, cli.retry.base * 2^n) milliseconds (full jitter), so
+* clients neither spin on a dead replica nor retry in lockstep. A replica
+* that failed cli.retry.suspect times in a row is suspected: it is only
+* probed every cli.retry.max milliseconds until it answers again. No
+* request is retried after cli.deadline milliseconds.
+*/
+
+public class RetryPolicy {
+    public static final long BASE = Long.getLong("cli.retry.base", 10);
+    public static final long MAX = Long.getLong("cli.retry.max", 2000);
+    public static final int SUSPECT = Integer.getInteger("cli.retry.suspect", 3);
+    public static final long DEADLINE = Long.getLong("cli.deadline", 40000);
+
+    private final long base;
+    private final long max;
+    private final int suspect;
+    private final long deadline;
+    private final AtomicIntegerArray failures;
+
+    public RetryPolicy(int replicas) {
+        this(replicas, BASE, MAX, SUSPECT, DEADLINE);
+    }
+
+    public RetryPolicy(int replicas, long base, long max, int suspect, long deadline) {
+        this.base = base;
+        this.max = max;
+        this.suspect = suspect;
+        this.deadline = deadline;
+        this.failures = new AtomicIntegerArray(replicas);
+    }
+
+    /* Milliseconds to wait before retry number `attempt` (from 0) to replica `id` */
+    public long delay(int id, int attempt) {
+        if (isSuspected(id)) return max;
+
+        long cap = attempt >= 30 ? max : Math.min(max, base << attempt);
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /* Milliseconds a request is retried for */
+    public long deadline() {
+        return deadline;
+    }
+
+    public void failure(int id) {
+        failures.incrementAndGet(id - 1);
+    }
+
+    public void success(int id) {
+        failures.set(id - 1, 0);
+    }
+
+    public boolean isSuspected(int id) {
+        return failures.get(id - 1) >= suspect;
+    }
+}
@@ -0,0 +1,159 @@
+package org.announcementserver.ws.cli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.ws.AnnouncementMessage;
+
+/*
+* Verified post signatures
+*
+* A post whose writer's signature was checked once is remembered by
+* (writer, wts, digest of the whole post), so the same post read again, or
+* read from the other replicas, is not verified again. Posts that are not
+* in the cache are verified in parallel, and a post being verified for one
+* replica is awaited, not verified again, by the others.
+*/
+
+public class SignatureCache {
+    public static final int CAPACITY = Integer.getInteger("cli.signatures.cache", 100000);
+
+    private static final class Key {
+        final String writer;
+        final Integer wts;
+        final byte[] digest;
+
+        Key(AnnouncementMessage post) {
+            this.writer = post.getWriter();
+            this.wts = post.getWts();
+            this.digest = AnnouncementTools.encodePost(CryptoTools.encoder(), post, true).digest();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return Objects.equals(writer, other.writer)
+                && Objects.equals(wts, other.wts)
+                && Arrays.equals(digest, other.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(digest);
+        }
+    }
+
+    private final Map<Key, Boolean> verified;
+    private final Map<Key, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong verifications = new AtomicLong();
+
+    public SignatureCache() {
+        this(CAPACITY, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SignatureCache(final int capacity, int threads) {
+        // Least recently used posts are forgotten first
+        this.verified = Collections.synchronizedMap(new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return size() > capacity;
+            }
+        });
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "signature-verifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /* True if every post carries a valid signature of its writer */
+    public boolean verifyAll(List<AnnouncementMessage> posts) {
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+
+        for (AnnouncementMessage post: posts) {
+            Key key = new Key(post);
+
+            if (verified.containsKey(key)) {
+                hits.incrementAndGet();
+                continue;
+            }
+
+            CompletableFuture<Boolean> check = new CompletableFuture<>();
+            CompletableFuture<Boolean> running = pending.putIfAbsent(key, check);
+
+            if (running != null) {
+                checks.add(running);
+                continue;
+            }
+
+            executor.execute(() -> {
+                boolean valid = false;
+                try {
+                    valid = verify(post);
+                    if (valid) verified.put(key, Boolean.TRUE);
+                } finally {
+                    pending.remove(key, check);
+                    check.complete(valid);
+                }
+            });
+            checks.add(check);
+        }
+
+        try {
+            for (CompletableFuture<Boolean> check: checks) {
+                if (!check.get()) return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    /* Signatures actually checked with the writer's key */
+    public long getVerifications() {
+        return verifications.get();
+    }
+
+    public void clear() {
+        verified.clear();
+    }
+
+    // --- Auxiliary ---------
+
+    private boolean verify(AnnouncementMessage post) {
+        verifications.incrementAndGet();
+
+        try {
+            byte[] hash = AnnouncementTools.encodePost(CryptoTools.encoder(), post, false).digest();
+            return CryptoTools.verifySignature(post.getWriter(), hash, post.getSignature());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.announcementServer.ws.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.ws.AnnouncementMessage;
+import org.announcementserver.ws.ReadRet;
+import org.announcementserver.ws.cli.BoardCache;
+import org.junit.Test;
+
+public class BoardCacheTest {
+
+    private static final String EMPTY = AnnouncementTools.digestToString(AnnouncementTools.EMPTY_DIGEST);
+
+    /**
+     * -- Test Description --
+     * Newer posts are appended and the next read
+     * asks for the posts after the last one
+     */
+
+    @Test
+    public void testAppendMovesCursor() {
+        BoardCache cache = new BoardCache(reply(EMPTY, "head3", 1, 3));
+        assertEquals(Integer.valueOf(3), cache.since());
+
+        cache.append(reply("head3", "head5", 4, 2));
+
+        assertEquals(Integer.valueOf(5), cache.since());
+        assertEquals("head5", cache.head());
+        assertEquals(5, cache.last(0).size());
+        assertEquals(4, cache.last(2).get(0).getWts());
+    }
+
+    /**
+     * -- Test Description --
+     * Only a cache from the start of the board answers
+     * reads of more posts than it holds
+     */
+
+    @Test
+    public void testCoversOnlyCachedPosts() {
+        BoardCache window = new BoardCache(reply("head10", "head13", 11, 3));
+        assertTrue(window.covers(3));
+        assertFalse(window.covers(4));
+        assertFalse(window.covers(0));
+
+        BoardCache whole = new BoardCache(reply(EMPTY, "head3", 1, 3));
+        assertTrue(whole.covers(10));
+        assertTrue(whole.covers(0));
+    }
+
+    /**
+     * -- Test Description --
+     * An empty board gives no cursor, the next read is whole
+     */
+
+    @Test
+    public void testEmptyBoardHasNoCursor() {
+        assertEquals(Integer.valueOf(0), new BoardCache(reply(EMPTY, EMPTY, 1, 0)).since());
+    }
+
+    /**
+     * -- Test Description --
+     * Posts appended to a copy, as a read from one server
+     * does, leave the cache it was made from unchanged
+     */
+
+    @Test
+    public void testCopyLeavesCacheUnchanged() {
+        BoardCache cache = new BoardCache(reply(EMPTY, "head3", 1, 3));
+        BoardCache copy = new BoardCache(cache);
+
+        copy.append(reply("head3", "head5", 4, 2));
+
+        assertEquals(Integer.valueOf(3), cache.since());
+        assertEquals("head3", cache.head());
+        assertEquals(3, cache.last(0).size());
+        assertEquals("head5", copy.head());
+    }
+
+    /**
+     * -- Test Description --
+     * A server is missing the posts after its own head,
+     * and a head off the board is not found
+     */
+
+    @Test
+    public void testAfterHead() {
+        ReadRet ret = reply(EMPTY, null, 1, 3);
+        List<AnnouncementMessage> posts = ret.getAnnouncements();
+        String first = head(posts.subList(0, 1));
+        ret.setHead(head(posts));
+        BoardCache cache = new BoardCache(ret);
+
+        Map<String, List<AnnouncementMessage>> missing = cache.after(Arrays.asList(EMPTY, first, cache.head(), "aGVhZA=="));
+
+        assertEquals(3, missing.get(EMPTY).size());
+        assertEquals(2, missing.get(first).get(0).getWts());
+        assertTrue(missing.get(cache.head()).isEmpty());
+        assertFalse(missing.containsKey("aGVhZA=="));
+    }
+
+    // --- Auxiliary functions -------------
+
+    private String head(List<AnnouncementMessage> posts) {
+        return AnnouncementTools.digestToString(AnnouncementTools.chain(AnnouncementTools.EMPTY_DIGEST, posts));
+    }
+
+
+    private ReadRet reply(String prefix, String head, int first, int count) {
+        ReadRet ret = new ReadRet();
+        ret.setPrefix(prefix);
+        ret.setHead(head);
+        for (int wts = first; wts < first + count; wts++) {
+            AnnouncementMessage post = new AnnouncementMessage();
+            post.setWriter("client1");
+            post.setMessage("post" + wts);
+            post.setWts(wts);
+            post.setType("Personal");
+            post.setSignature("signature" + wts);
+            ret.getAnnouncements().add(post);
+        }
+        return ret;
+    }
+}
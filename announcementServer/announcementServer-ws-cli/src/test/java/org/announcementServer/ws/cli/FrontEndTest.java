@@ -0,0 +1,439 @@
+package org.announcementServer.ws.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.soap.SOAPFault;
+import javax.xml.ws.AsyncHandler;
+import javax.xml.ws.Response;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import org.announcementserver.common.Constants;
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.utils.PersistenceUtils;
+import org.announcementserver.ws.AnnouncementMessage;
+import org.announcementserver.ws.AnnouncementServer;
+import org.announcementserver.ws.AnnouncementServerPortType;
+import org.announcementserver.ws.AnnouncementServerProxy;
+import org.announcementserver.ws.NonceReq;
+import org.announcementserver.ws.NonceResponse;
+import org.announcementserver.ws.PostResponse;
+import org.announcementserver.ws.ReadReq;
+import org.announcementserver.ws.ReadResponse;
+import org.announcementserver.ws.ReadRet;
+import org.announcementserver.ws.RegisterReq;
+import org.announcementserver.ws.RegisterResponse;
+import org.announcementserver.ws.WriteBackReq;
+import org.announcementserver.ws.WriteBackResponse;
+import org.announcementserver.ws.WriteBackRet;
+import org.announcementserver.ws.WriteReq;
+import org.announcementserver.ws.cli.FrontEnd;
+import org.announcementserver.ws.cli.ReadStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+* The reads and write backs of a front end against 3f + 1 servers in this
+* JVM, one of them faulty or behind (f = 1)
+*/
+
+public class FrontEndTest {
+    private static final int N = 4;
+    private static final String CLIENT = "client1";
+
+    private File directory;
+    private List<Replica> replicas;
+    private FrontEnd frontEnd;
+
+    @Before
+    public void start() throws Exception {
+        directory = Files.createTempDirectory("frontEndTest").toFile();
+        replicas = new ArrayList<>();
+        List<AnnouncementServerPortType> ports = new ArrayList<>();
+        for (int id = 1; id <= N; id++) {
+            Replica replica = new Replica(Constants.SERVER_NAME + id, directory);
+            replicas.add(replica);
+            ports.add(replica.port());
+        }
+
+        frontEnd = new FrontEnd(ports, "1");
+        frontEnd.init(CLIENT);
+        frontEnd.register();
+        frontEnd.post("post1", new ArrayList<>());
+        frontEnd.post("post2", new ArrayList<>());
+    }
+
+    /**
+     * -- Test Description --
+     * A summary ending at a higher post whose signature
+     * does not verify is not counted, the board is read
+     * from the servers that agree
+     */
+
+    @Test
+    public void testUnverifiableHeadIsIgnored() throws Exception {
+        AnnouncementMessage forged = post(3);
+        forged.setMessage("forged");
+        replicas.get(0).summaries = ret -> {
+            ret.setPrefix(ret.getHead());
+            ret.getAnnouncements().set(0, forged);
+            return sign(ret);
+        };
+
+        assertEquals(board(2), frontEnd.read(CLIENT, 0));
+        assertEquals(Arrays.asList(0, 1, 0, 0), pageReads());
+    }
+
+    /**
+     * -- Test Description --
+     * Posts that chain to another head than the agreed
+     * one, missing one before the last, are refused and
+     * read from the next server that agreed
+     */
+
+    @Test
+    public void testOmittedPostsAreReadElsewhere() throws Exception {
+        replicas.get(0).pages = ret -> {
+            ret.getAnnouncements().remove(0);
+            return sign(ret);
+        };
+
+        assertEquals(board(2), frontEnd.read(CLIENT, 0));
+        assertEquals(Arrays.asList(1, 1, 0, 0), pageReads());
+    }
+
+    /**
+     * -- Test Description --
+     * A server that agreed but sends no valid posts is
+     * skipped, the posts are read from the next one
+     */
+
+    @Test
+    public void testFailedFetchIsReadElsewhere() throws Exception {
+        replicas.get(0).pages = ret -> {
+            ret.getAnnouncements().get(0).setMessage("tampered");
+            return ret;
+        };
+
+        assertEquals(board(2), frontEnd.read(CLIENT, 0));
+        assertEquals(Arrays.asList(1, 1, 0, 0), pageReads());
+    }
+
+    /**
+     * -- Test Description --
+     * When every server that showed the highest post fails
+     * to send the posts, they are read from a quorum, which
+     * agrees on the board before that post
+     */
+
+    @Test
+    public void testQuorumReadWhenNoServerSendsPosts() throws Exception {
+        // The writer stopped after its third post reached server1
+        Replica faulty = replicas.get(0);
+        faulty.server.putPersonal(CLIENT, AnnouncementTools.transformAnnouncement(post(3)));
+        faulty.pages = ret -> {
+            ret.getAnnouncements().get(0).setMessage("tampered");
+            return ret;
+        };
+
+        assertEquals(board(2), frontEnd.read(CLIENT, 0));
+        assertEquals(Arrays.asList(1, 1, 1, 1), pageReads());
+    }
+
+    /**
+     * -- Test Description --
+     * When every server of the quorum sent the same head,
+     * nothing is written back
+     */
+
+    @Test
+    public void testUnanimousReadWritesNothingBack() throws Exception {
+        assertEquals(board(2), frontEnd.read(CLIENT, 0));
+
+        assertEquals(Arrays.asList(none(), none(), none(), none()), writeBacks());
+        assertStats(1, 1, 0, 0);
+    }
+
+    /**
+     * -- Test Description --
+     * Only the servers whose summary did not end at the
+     * board's head are written back to, each with the
+     * posts after its own head, or the whole board when
+     * it sent no summary
+     */
+
+    @Test
+    public void testStaleServersAreWrittenBack() throws Exception {
+        missThirdPost(replicas.get(1));
+
+        assertEquals(board(3), frontEnd.read(CLIENT, 0));
+
+        assertEquals(Arrays.asList(none(), Arrays.asList(Arrays.asList(3)), none(),
+            Arrays.asList(Arrays.asList(1, 2, 3))), writeBacks());
+        assertStats(1, 0, 1, 2);
+        assertTrue(awaitWts(replicas.get(1), 3));
+    }
+
+    /**
+     * -- Test Description --
+     * A server that refuses the posts for a gap is not
+     * counted, the read waits for another one to take them
+     */
+
+    @Test
+    public void testRefusedWriteBackIsNotCounted() throws Exception {
+        Replica refusing = replicas.get(1);
+        missThirdPost(refusing);
+        refusing.refusal = Constants.WRITEBACK_GAP;
+        replicas.get(3).delay = 200;
+
+        assertEquals(board(3), frontEnd.read(CLIENT, 0));
+
+        assertEquals(1, refusing.writeBacks.size());
+        assertEquals(1, replicas.get(3).writtenBack.get());
+        assertEquals(Integer.valueOf(2), refusing.server.wtss.get(CLIENT));
+        assertStats(1, 0, 1, 2);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        for (Replica replica : replicas) {
+            PersistenceUtils.close(replica.id);
+            PersistenceUtils.delete(replica.id);
+        }
+        directory.delete();
+    }
+
+    // --- Auxiliary functions -------------
+
+    /* A faulty server's change to a reply it sends */
+    private interface Tamper {
+        ReadRet apply(ReadRet ret) throws Exception;
+    }
+
+    /*
+    * A server behind a port that answers in the calling thread, as the
+    * servers are called in id order their replies arrive in that order.
+    * Only a write back with a delay is answered in another thread.
+    */
+    private static class Replica {
+        final String id;
+        final AnnouncementServer server;
+        final AnnouncementServerProxy proxy = new AnnouncementServerProxy();
+
+        Tamper summaries; // of a faulty server
+        Tamper pages;
+        final Set<String> down = ConcurrentHashMap.newKeySet(); // operations it does not answer
+        volatile String refusal; // fault it answers write backs with
+        volatile long delay; // milliseconds before it answers a write back
+
+        final AtomicInteger pageReads = new AtomicInteger();
+        final List<List<Integer>> writeBacks = new CopyOnWriteArrayList<>(); // wts of the posts of each one
+        final AtomicInteger writtenBack = new AtomicInteger();
+
+        Replica(String id, File directory) {
+            this.id = id;
+            server = AnnouncementServer.create(id);
+            PersistenceUtils.setDirectory(id, directory);
+            PersistenceUtils.start(server, id);
+            proxy.setId(id);
+            proxy.setServer(server);
+        }
+
+        /* Only the operations with a reply handler are called by the front end */
+        AnnouncementServerPortType port() {
+            return (AnnouncementServerPortType) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { AnnouncementServerPortType.class }, (port, method, args) -> {
+                if (method.getDeclaringClass() == Object.class) return method.invoke(this, args);
+
+                @SuppressWarnings("unchecked")
+                AsyncHandler<Object> handler = (AsyncHandler<Object>) args[1];
+                String operation = method.getName().replace("Async", "");
+                Reply<Object> reply = new Reply<>();
+
+                Runnable answer = () -> {
+                    try {
+                        reply.complete(answer(operation, args[0]));
+                    } catch (Exception e) {
+                        reply.completeExceptionally(fault(e.getMessage()));
+                    }
+                    handler.handleResponse(reply);
+                };
+
+                if (operation.equals("writeBack") && delay > 0) {
+                    CompletableFuture.runAsync(() -> {
+                        try {
+                            Thread.sleep(delay);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        answer.run();
+                    });
+                } else {
+                    answer.run();
+                }
+
+                return reply;
+            });
+        }
+
+        private Object answer(String operation, Object request) throws Exception {
+            if (down.contains(operation)) throw new RuntimeException("Unavailable");
+
+            switch (operation) {
+                case "nonce":
+                    NonceResponse nonce = new NonceResponse();
+                    nonce.setReturn(proxy.nonce((NonceReq) request));
+                    return nonce;
+                case "register":
+                    RegisterResponse register = new RegisterResponse();
+                    register.setReturn(proxy.register((RegisterReq) request));
+                    return register;
+                case "post":
+                    PostResponse post = new PostResponse();
+                    post.setReturn(proxy.post((WriteReq) request));
+                    return post;
+                case "read":
+                    ReadResponse read = new ReadResponse();
+                    read.setReturn(read((ReadReq) request));
+                    return read;
+                case "writeBack":
+                    WriteBackResponse writeBack = new WriteBackResponse();
+                    writeBack.setReturn(writeBack((WriteBackReq) request));
+                    return writeBack;
+                default:
+                    throw new UnsupportedOperationException(operation);
+            }
+        }
+
+        private ReadRet read(ReadReq request) throws Exception {
+            ReadRet ret = proxy.read(request);
+            if (!request.isSummary()) pageReads.incrementAndGet();
+
+            Tamper tamper = request.isSummary() ? summaries : pages;
+            return (tamper == null) ? ret : tamper.apply(ret);
+        }
+
+        private WriteBackRet writeBack(WriteBackReq request) {
+            List<Integer> posts = new ArrayList<>();
+            for (AnnouncementMessage post : request.getAnnouncements()) {
+                posts.add(post.getWts());
+            }
+            writeBacks.add(posts);
+
+            if (refusal != null) throw new RuntimeException(refusal);
+
+            WriteBackRet ret = proxy.writeBack(request);
+            writtenBack.incrementAndGet();
+            return ret;
+        }
+    }
+
+    /* What the front end's handler gets from a port */
+    private static class Reply<T> extends CompletableFuture<T> implements Response<T> {
+        @Override
+        public Map<String, Object> getContext() {
+            return Collections.emptyMap();
+        }
+    }
+
+    /* A server exception, as the client side of a web service sees it (only its fault string) */
+    private static SOAPFaultException fault(String message) {
+        return new SOAPFaultException((SOAPFault) Proxy.newProxyInstance(FrontEndTest.class.getClassLoader(),
+            new Class<?>[] { SOAPFault.class }, (fault, method, args) -> message));
+    }
+
+    /* Signed by its sender over the posts it holds now, as a faulty server can */
+    private static ReadRet sign(ReadRet ret) throws Exception {
+        byte[] prefix = AnnouncementTools.stringToDigest(ret.getPrefix());
+        byte[] head = AnnouncementTools.chain(prefix, ret.getAnnouncements());
+
+        ret.setHead(AnnouncementTools.digestToString(head));
+        ret.setSignature(CryptoTools.makeSignature(ret.getSender(), AnnouncementTools.hashReadRet(ret.getSender(),
+            ret.getDestination(), ret.getSeqNumber(), ret.getRid(), prefix, head, ret.getCursor())));
+
+        return ret;
+    }
+
+    /* Post `wts` of CLIENT, signed as the front end signs it */
+    private static AnnouncementMessage post(int wts) throws Exception {
+        AnnouncementMessage post = new AnnouncementMessage();
+        post.setWriter(CLIENT);
+        post.setMessage("post" + wts);
+        post.setWts(wts);
+        post.setType("Personal");
+        post.setSignature(CryptoTools.makeSignature(CLIENT,
+            AnnouncementTools.encodePost(CryptoTools.encoder(), post, false).digest()));
+
+        return post;
+    }
+
+    /* The posts "post1" to "post<last>" of CLIENT, as read returns them */
+    private static String board(int last) {
+        String res = "";
+        for (int wts = 1; wts <= last; wts++) {
+            res += String.format("Author: %s, Id: %d, Type: Personal\n\"post%d\"\nReferences: []\n", CLIENT, wts, wts);
+        }
+        return res;
+    }
+
+    /* The third post reaches every server but `replica` */
+    private void missThirdPost(Replica replica) throws Exception {
+        replica.down.add("post");
+        frontEnd.post("post3", new ArrayList<>());
+        replica.down.remove("post");
+    }
+
+    /* Write backs may still reach the servers once the read returned */
+    private boolean awaitWts(Replica replica, int wts) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            if (replica.server.wtss.get(CLIENT) == wts) return true;
+            Thread.sleep(100);
+        }
+        return false;
+    }
+
+    private void assertStats(long reads, long unanimous, long writeBacks, long servers) {
+        ReadStats stats = frontEnd.getReadStats();
+        assertEquals(reads, stats.getReads());
+        assertEquals(unanimous, stats.getUnanimous());
+        assertEquals(writeBacks, stats.getWriteBacks());
+        assertEquals(servers, stats.getServers());
+    }
+
+    private static List<List<Integer>> none() {
+        return Collections.emptyList();
+    }
+
+    private List<List<List<Integer>>> writeBacks() {
+        List<List<List<Integer>>> res = new ArrayList<>();
+        for (Replica replica : replicas) {
+            res.add(replica.writeBacks);
+        }
+        return res;
+    }
+
+    private List<Integer> pageReads() {
+        List<Integer> res = new ArrayList<>();
+        for (Replica replica : replicas) {
+            res.add(replica.pageReads.get());
+        }
+        return res;
+    }
+}
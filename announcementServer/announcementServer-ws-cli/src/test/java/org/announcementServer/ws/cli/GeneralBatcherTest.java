@@ -0,0 +1,86 @@
+package org.announcementServer.ws.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.announcementserver.ws.cli.GeneralBatcher;
+import org.junit.After;
+import org.junit.Test;
+
+public class GeneralBatcherTest {
+
+    private ExecutorService writers = Executors.newFixedThreadPool(50);
+
+    @After
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    /**
+     * -- Test Description --
+     * Posts of concurrent writers are all written once, in
+     * fewer batches than posts and none larger than the maximum
+     */
+
+    @Test
+    public void testConcurrentPostsAreCombined() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        GeneralBatcher batcher = new GeneralBatcher((messages, lists) -> {
+            batches.add(new ArrayList<>(messages));
+            Thread.sleep(5); // a write round
+        }, 20);
+
+        List<Future<?>> posts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String message = "post " + i;
+            posts.add(writers.submit(() -> batcher.post(message, Collections.emptyList())));
+        }
+        for (Future<?> post : posts) {
+            post.get();
+        }
+
+        List<String> written = new ArrayList<>();
+        for (List<String> batch : batches) {
+            assertTrue(batch.size() <= 20);
+            written.addAll(batch);
+        }
+        assertEquals(200, written.size());
+        assertEquals(200, written.stream().distinct().count());
+        assertTrue(batches.size() < 200);
+        assertEquals(batches.size(), batcher.getBatches());
+        assertEquals(200, batcher.getPosts());
+    }
+
+    /**
+     * -- Test Description --
+     * When a batch fails, every post in it fails with its error,
+     * and later posts are written
+     */
+
+    @Test
+    public void testFailedBatch() throws Exception {
+        GeneralBatcher batcher = new GeneralBatcher((messages, lists) -> {
+            if (messages.contains("bad")) throw new RuntimeException("Write failed");
+        }, 20);
+
+        try {
+            writers.submit(() -> batcher.post("bad", Collections.emptyList())).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("Write failed", e.getCause().getMessage());
+        }
+
+        batcher.post("good", Collections.emptyList());
+        assertEquals(1, batcher.getPosts());
+    }
+}
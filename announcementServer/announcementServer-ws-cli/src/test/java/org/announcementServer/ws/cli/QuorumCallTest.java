@@ -0,0 +1,133 @@
+package org.announcementServer.ws.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.announcementserver.ws.cli.QuorumCall;
+import org.junit.After;
+import org.junit.Test;
+
+public class QuorumCallTest {
+
+    private QuorumCall calls = new QuorumCall(4, 3);
+
+    @After
+    public void shutdown() {
+        calls.shutdown();
+    }
+
+    /**
+     * -- Test Description --
+     * The call returns once a quorum replied, without
+     * waiting for a replica that never does, and cancels it
+     */
+
+    @Test
+    public void testCompletesWithoutStraggler() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+
+        List<Integer> replies = calls.invoke(id -> {
+            if (id == 4) {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    cancelled.countDown();
+                }
+                return null;
+            }
+            started.await();
+            return id;
+        });
+
+        assertEquals(3, replies.size());
+        assertTrue(replies.containsAll(Arrays.asList(1, 2, 3)));
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * -- Test Description --
+     * Invalid replies and failures do not count for the quorum
+     */
+
+    @Test
+    public void testInvalidRepliesNotCounted() {
+        List<Integer> replies = calls.invoke(id -> {
+            if (id == 1) return null;
+            return id;
+        });
+
+        assertEquals(3, replies.size());
+        assertFalse(replies.contains(1));
+    }
+
+    /**
+     * -- Test Description --
+     * The call fails as soon as a quorum can no longer be reached
+     */
+
+    @Test
+    public void testFailsWithoutQuorum() {
+        try {
+            calls.invoke(id -> {
+                if (id <= 2) throw new RuntimeException("Replica down");
+                return id;
+            });
+            fail("A quorum can not be reached");
+        } catch (RuntimeException e) {
+            assertEquals("No quorum of valid replies", e.getMessage());
+        }
+    }
+
+    /**
+     * -- Test Description --
+     * A call to some of the replicas only calls those, and
+     * returns once the replies it needs arrived
+     */
+
+    @Test
+    public void testSubsetOfReplicas() {
+        List<Integer> called = new CopyOnWriteArrayList<>();
+
+        List<Integer> replies = calls.invoke(id -> {
+            called.add(id);
+            return id;
+        }, Arrays.asList(2, 4), 1);
+
+        assertEquals(1, replies.size());
+        assertTrue(Arrays.asList(2, 4).containsAll(replies));
+        assertFalse(called.contains(1) || called.contains(3));
+    }
+
+    /**
+     * -- Test Description --
+     * A call that needs no reply completes at once, and one
+     * to a subset fails once too few of it can reply
+     */
+
+    @Test
+    public void testNeededReplies() {
+        assertTrue(calls.invoke(id -> {
+            throw new RuntimeException("Replica down");
+        }, Arrays.asList(1, 2), 0).isEmpty());
+
+        try {
+            calls.invoke(id -> {
+                if (id == 3) throw new RuntimeException("Replica down");
+                return id;
+            }, Arrays.asList(1, 3), 2);
+            fail("Both replicas are needed");
+        } catch (RuntimeException e) {
+            assertEquals("No quorum of valid replies", e.getMessage());
+        }
+    }
+}
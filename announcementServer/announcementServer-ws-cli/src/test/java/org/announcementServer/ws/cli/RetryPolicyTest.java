@@ -0,0 +1,68 @@
+package org.announcementServer.ws.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.announcementserver.ws.cli.RetryPolicy;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    private RetryPolicy policy = new RetryPolicy(4, 10, 1000, 3, 40000);
+
+    /**
+     * -- Test Description --
+     * Delays stay under an exponentially growing cap,
+     * bounded by the maximum
+     */
+
+    @Test
+    public void testDelaysBackOffExponentially() {
+        for (int attempt = 0; attempt < 40; attempt++) {
+            long cap = Math.min(1000, attempt >= 30 ? 1000 : 10L << attempt);
+            for (int i = 0; i < 100; i++) {
+                long delay = policy.delay(1, attempt);
+                assertTrue(delay >= 0 && delay <= cap);
+            }
+        }
+    }
+
+    /**
+     * -- Test Description --
+     * Delays are jittered, not all equal
+     */
+
+    @Test
+    public void testDelaysAreJittered() {
+        long first = policy.delay(1, 6);
+        boolean different = false;
+
+        for (int i = 0; i < 100 && !different; i++) {
+            different = policy.delay(1, 6) != first;
+        }
+
+        assertTrue(different);
+    }
+
+    /**
+     * -- Test Description --
+     * A replica failing in a row is suspected and only
+     * probed at the maximum delay, until it answers again
+     */
+
+    @Test
+    public void testSuspectedUntilSuccess() {
+        policy.failure(2);
+        policy.failure(2);
+        assertFalse(policy.isSuspected(2));
+
+        policy.failure(2);
+        assertTrue(policy.isSuspected(2));
+        assertEquals(1000, policy.delay(2, 0));
+        assertFalse(policy.isSuspected(1));
+
+        policy.success(2);
+        assertFalse(policy.isSuspected(2));
+    }
+}
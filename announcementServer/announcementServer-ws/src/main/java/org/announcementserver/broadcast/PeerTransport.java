@@ -0,0 +1,364 @@
+package org.announcementserver.broadcast;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.announcementserver.common.Constants;
+import org.announcementserver.common.CryptoTools;
+
+/*
+* Server to server channels of the broadcast
+*
+* Every server keeps one TCP connection open to each peer, on port
+* ws.peer.port + id. Messages are queued and a single thread signs them
+* in frames of up to ws.peer.batch messages: the same frame, signed once
+* by the server, is queued for every peer, and is handed to the local
+* handler too. Each peer has a thread of its own writing its queue, so a
+* slow or unreachable peer holds up no other. Frames for a peer that
+* cannot be reached wait in its queue, at most ws.peer.backlog of them,
+* the oldest dropped first, and are sent again once it connects; the
+* protocol tolerates f peers that miss frames. A frame longer than
+* ws.peer.batch messages, or whose signature does not check, is dropped.
+*/
+
+public class PeerTransport {
+	public static final int PORT_START = Integer.getInteger("ws.peer.port", Constants.PORT_START + 1000);
+	public static final int BATCH = Integer.getInteger("ws.peer.batch", 256);
+	public static final int BACKLOG = Integer.getInteger("ws.peer.backlog", 1024);
+	/* Milliseconds to connect to a peer, and to wait before trying again */
+	public static final int CONNECT_TIMEOUT = Integer.getInteger("ws.peer.connect.timeout", 1000);
+	public static final int RETRY = Integer.getInteger("ws.peer.retry", 500);
+
+	/* Longest instance name, and the bytes a message takes in a frame */
+	static final int MAX_INSTANCE = 256;
+	private static final int MAX_MESSAGE = 1 + 2 + MAX_INSTANCE + 32;
+	private static final int MAX_BODY = 8 + BATCH * MAX_MESSAGE;
+
+	/* Receives the messages of server `from`, one at a time */
+	public interface Handler {
+		void receive(int from, byte type, String instance, byte[] digest);
+	}
+
+	private static final class Message {
+		final byte type;
+		final String instance;
+		final byte[] digest;
+
+		Message(byte type, String instance, byte[] digest) {
+			this.type = type;
+			this.instance = instance;
+			this.digest = digest;
+		}
+	}
+
+	/* Connection to one peer and the frames waiting for it */
+	private final class Peer {
+		final int id;
+		final BlockingDeque<byte[]> queue = new LinkedBlockingDeque<>(BACKLOG);
+		volatile Socket socket;
+		volatile boolean reachable = true;
+		Thread thread;
+
+		Peer(int id) {
+			this.id = id;
+		}
+
+		void queue(byte[] frame) {
+			while (!queue.offerLast(frame)) {
+				queue.pollFirst(); // full, drop the oldest
+			}
+		}
+
+		void sendLoop() {
+			DataOutputStream out = null;
+
+			while (running) {
+				byte[] frame;
+				try {
+					frame = queue.takeFirst();
+				} catch (InterruptedException e) {
+					break;
+				}
+
+				try {
+					if (out == null) out = connect();
+					out.write(frame);
+					out.flush();
+				} catch (IOException e) {
+					out = null;
+					close();
+					reachable = false;
+					queue.offerFirst(frame); // sent again once connected
+					try {
+						Thread.sleep(RETRY);
+					} catch (InterruptedException interrupted) {
+						break;
+					}
+				}
+			}
+
+			close();
+		}
+
+		DataOutputStream connect() throws IOException {
+			Socket socket = new Socket();
+			this.socket = socket;
+			socket.connect(new InetSocketAddress(host, PORT_START + id), CONNECT_TIMEOUT);
+			socket.setTcpNoDelay(true);
+			reachable = true;
+			return new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		void close() {
+			Socket socket = this.socket;
+			if (socket == null) return;
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already broken
+			}
+			this.socket = null;
+		}
+	}
+
+	private final String host;
+	private final int self;
+	private final int replicas;
+	private final Handler handler;
+	private final BlockingQueue<Message> outbox = new LinkedBlockingQueue<>();
+	private final List<Peer> peers = new ArrayList<>();
+	private final AtomicLong frames = new AtomicLong();
+	private final AtomicLong messages = new AtomicLong();
+
+	private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+
+	private ServerSocket server;
+	private Thread acceptor;
+	private Thread framer;
+	private volatile boolean running;
+
+	public PeerTransport(String host, int self, int replicas, Handler handler) {
+		this.host = host;
+		this.self = self;
+		this.replicas = replicas;
+		this.handler = handler;
+		for (int id = 1; id <= replicas; id++) {
+			if (id != self) peers.add(new Peer(id));
+		}
+	}
+
+	public void start() throws IOException {
+		server = new ServerSocket();
+		server.setReuseAddress(true);
+		server.bind(new InetSocketAddress(host, PORT_START + self));
+		running = true;
+
+		acceptor = daemon("peer-accept-" + self, this::accept);
+		acceptor.start();
+		framer = daemon("peer-frame-" + self, this::frameLoop);
+		framer.start();
+		for (Peer peer : peers) {
+			peer.thread = daemon("peer-send-" + self + "-" + peer.id, peer::sendLoop);
+			peer.thread.start();
+		}
+	}
+
+	public void send(byte type, String instance, byte[] digest) {
+		if (instance.getBytes(StandardCharsets.UTF_8).length > MAX_INSTANCE) throw new RuntimeException("Instance name too long: " + instance);
+		outbox.add(new Message(type, instance, digest));
+	}
+
+	public void stop() {
+		if (!running) return;
+		running = false;
+		framer.interrupt();
+		for (Peer peer : peers) {
+			peer.thread.interrupt();
+			peer.close();
+		}
+		try {
+			server.close();
+			for (Socket socket : accepted) {
+				socket.close();
+			}
+			acceptor.join(1000); // the port is only free once accept returns
+		} catch (IOException e) {
+			// closing anyway
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/* Frames sent and the messages in them */
+	public long getFrames() {
+		return frames.get();
+	}
+
+	public long getMessages() {
+		return messages.get();
+	}
+
+	/* Servers, this one included, whose last connection attempt did not fail */
+	public int getReachable() {
+		int reachable = 1;
+		for (Peer peer : peers) {
+			if (peer.reachable) reachable++;
+		}
+		return reachable;
+	}
+
+	// --- Sending -------------
+
+	private void frameLoop() {
+		List<Message> batch = new ArrayList<>(BATCH);
+
+		while (running) {
+			try {
+				batch.add(outbox.take());
+			} catch (InterruptedException e) {
+				break;
+			}
+			outbox.drainTo(batch, BATCH - 1);
+
+			byte[] frame = frame(batch);
+			for (Peer peer : peers) {
+				peer.queue(frame);
+			}
+			for (Message message : batch) {
+				handler.receive(self, message.type, message.instance, message.digest);
+			}
+
+			frames.incrementAndGet();
+			messages.addAndGet(batch.size());
+			batch.clear();
+		}
+	}
+
+	/* Length, body (sender, messages) and the sender's signature of the body */
+	private byte[] frame(List<Message> batch) {
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(body);
+			out.writeInt(self);
+			out.writeInt(batch.size());
+			for (Message message : batch) {
+				out.writeByte(message.type);
+				out.writeUTF(message.instance);
+				out.write(message.digest);
+			}
+			out.flush();
+
+			byte[] bytes = body.toByteArray();
+			String signature = CryptoTools.makeSignature(Constants.SERVER_NAME + self, hash(bytes));
+
+			ByteArrayOutputStream frame = new ByteArrayOutputStream(bytes.length + 512);
+			DataOutputStream framed = new DataOutputStream(frame);
+			framed.writeInt(bytes.length);
+			framed.write(bytes);
+			framed.writeUTF(signature);
+			framed.flush();
+
+			return frame.toByteArray();
+		} catch (Exception e) {
+			throw new RuntimeException("Could not sign the frame: " + e.getMessage());
+		}
+	}
+
+	// --- Receiving -------------
+
+	private void accept() {
+		while (running) {
+			try {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				accepted.add(socket);
+				daemon("peer-receive-" + self, () -> receiveLoop(socket)).start();
+			} catch (IOException e) {
+				if (running) System.out.println("Peer connection failed: " + e.getMessage());
+			}
+		}
+	}
+
+	private void receiveLoop(Socket socket) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+			while (running) {
+				int length = in.readInt();
+				if (length < 8 || length > MAX_BODY) {
+					System.out.println(String.format("Dropping a peer connection that sent a frame of %d bytes", length));
+					return;
+				}
+
+				byte[] body = new byte[length];
+				in.readFully(body);
+				String signature = in.readUTF();
+
+				dispatch(body, signature);
+			}
+		} catch (IOException e) {
+			// peer closed the connection, it opens a new one
+		} finally {
+			accepted.remove(socket);
+		}
+	}
+
+	private void dispatch(byte[] body, String signature) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+		int from = in.readInt();
+
+		if (from < 1 || from > replicas || from == self || !verify(from, body, signature)) {
+			System.out.println("Dropping a frame that is not from server" + from);
+			return;
+		}
+
+		int count = in.readInt();
+		if (count < 0 || count > BATCH) {
+			System.out.println(String.format("Dropping a frame of %d messages from server%d", count, from));
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			byte type = in.readByte();
+			String instance = in.readUTF();
+			byte[] digest = new byte[32];
+			in.readFully(digest);
+
+			handler.receive(from, type, instance, digest);
+		}
+	}
+
+	// --- Auxiliary functions -------------
+
+	private boolean verify(int from, byte[] body, String signature) {
+		try {
+			return CryptoTools.verifySignature(Constants.SERVER_NAME + from, hash(body), signature);
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static byte[] hash(byte[] bytes) {
+		return CryptoTools.encoder().bytes(bytes).digest();
+	}
+
+	private static Thread daemon(String name, Runnable task) {
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+}
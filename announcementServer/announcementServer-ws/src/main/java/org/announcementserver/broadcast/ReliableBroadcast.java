@@ -0,0 +1,255 @@
+package org.announcementserver.broadcast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+* Byzantine reliable broadcast (echo / ready) of general board writes
+*
+* An instance is a write of the general board, named by its writer and
+* wts, and what is broadcast is the digest of the posts. A server echoes
+* the digest the client sent it; more than (n + f) / 2 echoes, or more
+* than f readys, of one digest make it send a ready; more than 2f readys
+* deliver it. All correct servers then deliver the same digest for the
+* instance, or none. Only digests cross the peer channels, the posts come
+* with the client's request.
+*
+* Per instance the state is a bit per server and digest. An instance is
+* opened by a client's request and dropped once it delivers, fails or
+* times out. Votes for an instance this server has no request for yet
+* (its peers got theirs first) are kept in at most ws.broadcast.pending
+* unopened instances, the oldest dropped first, and the last
+* ws.broadcast.delivered delivered ids are kept to answer late requests
+* and ignore late votes. A request fails as soon as fewer than 2f + 1
+* servers are reachable, or no digest can get 2f + 1 readys anymore.
+*/
+
+public class ReliableBroadcast implements PeerTransport.Handler {
+	public static final boolean ENABLED = Boolean.getBoolean("ws.broadcast");
+	/* Milliseconds a write waits to be delivered */
+	public static final int TIMEOUT = Integer.getInteger("ws.broadcast.timeout", 10000);
+	public static final int PENDING = Integer.getInteger("ws.broadcast.pending", 1024);
+	public static final int DELIVERED = Integer.getInteger("ws.broadcast.delivered", 4096);
+
+	static final byte ECHO = 1;
+	static final byte READY = 2;
+
+	/* Milliseconds between checks of the reachable servers while waiting */
+	private static final int POLL = 100;
+
+	private static final class Instance {
+		final BitSet echoed = new BitSet();
+		final BitSet readied = new BitSet();
+		Map<ByteBuffer, BitSet> echoes = new HashMap<>();
+		Map<ByteBuffer, BitSet> readys = new HashMap<>();
+		boolean sentEcho;
+		boolean sentReady;
+		final CompletableFuture<byte[]> delivery = new CompletableFuture<>();
+	}
+
+	private final int replicas;
+	private final int faults;
+	private final PeerTransport transport;
+	private final Map<String, Instance> instances = new ConcurrentHashMap<>();
+	private final Map<String, Instance> pending = bounded(PENDING);
+	private final Map<String, byte[]> delivered = bounded(DELIVERED);
+	private final AtomicLong deliveries = new AtomicLong();
+
+	public ReliableBroadcast(String host, int self, int replicas, int faults) {
+		if (replicas <= 3 * faults) throw new RuntimeException("Broadcast needs more than 3f servers");
+
+		this.replicas = replicas;
+		this.faults = faults;
+		this.transport = new PeerTransport(host, self, replicas, this);
+	}
+
+	public void start() throws IOException {
+		transport.start();
+	}
+
+	public void stop() {
+		transport.stop();
+	}
+
+	/* Echoes the digest of the write and waits for the servers to deliver it */
+	public void deliver(String writer, int wts, byte[] digest) {
+		String id = writer + ":" + wts;
+		Instance instance;
+
+		synchronized (pending) {
+			byte[] agreed = delivered.get(id);
+			if (agreed != null) {
+				check(id, agreed, digest);
+				return;
+			}
+			instance = instances.computeIfAbsent(id, key -> {
+				Instance early = pending.remove(key);
+				return (early != null) ? early : new Instance();
+			});
+		}
+
+		try {
+			synchronized (instance) {
+				if (!instance.sentEcho) {
+					instance.sentEcho = true;
+					transport.send(ECHO, id, digest);
+				}
+			}
+			check(id, await(id, instance), digest);
+		} finally {
+			drop(id, instance);
+		}
+	}
+
+	@Override
+	public void receive(int from, byte type, String id, byte[] digest) {
+		Instance instance = instances.get(id);
+		if (instance == null) instance = unopened(id);
+		if (instance == null) return;
+
+		synchronized (instance) {
+			if (instance.delivery.isDone()) return;
+
+			if (type == ECHO) {
+				if (instance.echoed.get(from)) return; // one echo per server
+				instance.echoed.set(from);
+
+				int echoes = count(instance.echoes, from, digest);
+				if (2 * echoes > replicas + faults) ready(instance, id, digest);
+			} else if (type == READY) {
+				if (instance.readied.get(from)) return;
+				instance.readied.set(from);
+
+				int readys = count(instance.readys, from, digest);
+				if (readys > faults) ready(instance, id, digest);
+				if (readys > 2 * faults) {
+					instance.echoes = null;
+					instance.readys = null;
+					synchronized (pending) {
+						delivered.put(id, digest);
+					}
+					drop(id, instance);
+					deliveries.incrementAndGet();
+					instance.delivery.complete(digest);
+				} else if (hopeless(instance)) {
+					drop(id, instance);
+					instance.delivery.completeExceptionally(new RuntimeException("no post can get enough readys"));
+				}
+			}
+		}
+	}
+
+	/* Instances delivered, and the frames and messages sent for them */
+	public long getDelivered() {
+		return deliveries.get();
+	}
+
+	public long getFrames() {
+		return transport.getFrames();
+	}
+
+	public long getMessages() {
+		return transport.getMessages();
+	}
+
+	/* Instances held, opened by a request or not */
+	public int getInstances() {
+		synchronized (pending) {
+			return instances.size() + pending.size();
+		}
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* Waits for the instance, failing once fewer than 2f + 1 servers are reachable */
+	private byte[] await(String id, Instance instance) {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+
+		while (true) {
+			int reachable = transport.getReachable();
+			if (reachable <= 2 * faults) {
+				throw new RuntimeException(String.format("Broadcast of %s cannot be delivered, %d servers reachable", id, reachable));
+			}
+
+			long left = deadline - System.currentTimeMillis();
+			if (left <= 0) throw new RuntimeException("Broadcast of " + id + " timed out");
+
+			try {
+				return instance.delivery.get(Math.min(left, POLL), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// check the servers again
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Broadcast of " + id + " failed: " + e.getMessage());
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Broadcast of " + id + " failed: " + e.getCause().getMessage());
+			}
+		}
+	}
+
+	private static void check(String id, byte[] agreed, byte[] digest) {
+		if (!Arrays.equals(agreed, digest)) throw new RuntimeException("Broadcast of " + id + " delivered another post");
+	}
+
+	/* Instance collecting the votes of an id with no request yet, none once delivered */
+	private Instance unopened(String id) {
+		synchronized (pending) {
+			Instance instance = instances.get(id);
+			if (instance != null) return instance;
+			if (delivered.containsKey(id)) return null;
+
+			return pending.computeIfAbsent(id, key -> new Instance());
+		}
+	}
+
+	private void drop(String id, Instance instance) {
+		synchronized (pending) {
+			instances.remove(id, instance);
+			pending.remove(id, instance);
+		}
+	}
+
+	/* No digest can get more than 2f readys, with the servers yet to send one */
+	private boolean hopeless(Instance instance) {
+		int missing = replicas - instance.readied.cardinality();
+		for (BitSet servers : instance.readys.values()) {
+			if (servers.cardinality() + missing > 2 * faults) return false;
+		}
+		return missing <= 2 * faults;
+	}
+
+	private void ready(Instance instance, String id, byte[] digest) {
+		if (instance.sentReady) return;
+		instance.sentReady = true;
+		transport.send(READY, id, digest);
+	}
+
+	private static int count(Map<ByteBuffer, BitSet> votes, int from, byte[] digest) {
+		BitSet servers = votes.computeIfAbsent(ByteBuffer.wrap(digest), key -> new BitSet());
+		servers.set(from);
+		return servers.cardinality();
+	}
+
+	/* Insertion ordered, the oldest entry dropped past `capacity` */
+	private static <V> Map<String, V> bounded(int capacity) {
+		return new LinkedHashMap<String, V>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+}
@@ -0,0 +1,687 @@
+package org.announcementserver.transfer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.announcementserver.common.Constants;
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.utils.LogRecord;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementBoard;
+import org.announcementserver.ws.AnnouncementServer;
+
+/*
+* State transfer between servers
+*
+* Every server serves its state to its peers on port ws.transfer.port + id,
+* and a server that is behind (e.g. restarted without recovery) catches up
+* with catchUp():
+*
+* 1. Every peer sends a signed summary: the clients registered, with their
+*    sequence number and expected wts, and for every board its size, its
+*    last wts and the digest of its hash chain up to this server's last wts.
+* 2. For each board the target is a wts f + 1 peers reach, and the wts in
+*    between are split in ranges of about CHUNK posts. The peers sign the
+*    digests of their chains up to each bound; a digest counts once f + 1
+*    peers sent it.
+* 3. The ranges are streamed from one peer. A range is added once its posts
+*    link the agreed digests around it, so a faulty peer can only waste a
+*    range, and the transfer goes on from another peer.
+*
+* Correct servers may miss different posts (a write only needs a quorum),
+* and then their chains differ from the first missing post on. The peers
+* are then asked for the digest of the posts of each range alone, and a
+* range whose digest f + 1 of them do not share either is read from all of
+* them, taking the posts f + 1 of them hold. Clients this server does not
+* know are registered with the sequence number f + 1 peers reached.
+*/
+
+public class StateTransfer {
+	public static final boolean ENABLED = Boolean.getBoolean("ws.transfer");
+	public static final int PORT_START = Integer.getInteger("ws.transfer.port", Constants.PORT_START + 2000);
+	public static final int CHUNK = Integer.getInteger("ws.transfer.chunk", 4096);
+	/* Milliseconds between catch ups after the first one, 0 for none */
+	public static final int INTERVAL = Integer.getInteger("ws.transfer.interval", 0);
+	private static final int TIMEOUT = 10000;
+	private static final int MAX_ANSWER = 1 << 28;
+
+	private static final byte SUMMARY = 1;
+	private static final byte DIGESTS = 2;
+	private static final byte POSTS = 3;
+	private static final String GENERAL = "general";
+	private static final int NONE = -1; // below every wts
+
+	/* What a peer said of one of its boards */
+	private static class BoardState {
+		int size;
+		int last;
+		byte[] digest; // up to the wts asked for
+	}
+
+	/* What a peer said of its state */
+	private static class Summary {
+		final Map<String, int[]> clients = new HashMap<>(); // sn, expected wts
+		final Map<String, BoardState> boards = new HashMap<>();
+	}
+
+	private final String host;
+	private final int self;
+	private final int replicas;
+	private final int faults;
+	private final AnnouncementServer server;
+	private final SecureRandom random = new SecureRandom();
+	private final ExecutorService calls;
+
+	private ServerSocket socket;
+	private Thread acceptor;
+	private volatile boolean running;
+
+	public StateTransfer(String host, int self, int replicas, int faults, AnnouncementServer server) {
+		this.host = host;
+		this.self = self;
+		this.replicas = replicas;
+		this.faults = faults;
+		this.server = server;
+		this.calls = Executors.newFixedThreadPool(replicas, task -> daemon("transfer-call-" + self, task));
+	}
+
+	public void start() throws IOException {
+		socket = new ServerSocket();
+		socket.setReuseAddress(true);
+		socket.bind(new InetSocketAddress(host, PORT_START + self));
+		running = true;
+
+		acceptor = daemon("transfer-accept-" + self, this::accept);
+		acceptor.start();
+	}
+
+	public void stop() {
+		calls.shutdownNow();
+		if (!running) return;
+		running = false;
+		try {
+			socket.close();
+			acceptor.join(1000); // the port is only free once accept returns
+		} catch (IOException e) {
+			// closing anyway
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// --- Catching up -------------
+
+	/* Brings this server up to what f + 1 peers have, returns the posts added */
+	public int catchUp() {
+		Map<String, Integer> lasts = new HashMap<>();
+		lasts.put(GENERAL, last(server.board(null)));
+		for (String client : server.registered()) {
+			lasts.put(client, last(server.board(client)));
+		}
+
+		Map<Integer, Summary> summaries = askPeers(peer -> summary(peer, lasts));
+		if (summaries.size() < faults + 1) throw new RuntimeException("Too few peers for state transfer");
+
+		// Clients first, their boards must exist before posts are added to them
+		TreeSet<String> clients = new TreeSet<>();
+		summaries.values().forEach(summary -> clients.addAll(summary.clients.keySet()));
+		for (String client : clients) {
+			List<Integer> sns = new ArrayList<>();
+			List<Integer> expected = new ArrayList<>();
+			for (Summary summary : summaries.values()) {
+				int[] state = summary.clients.get(client);
+				if (state == null) continue;
+				sns.add(state[0]);
+				expected.add(state[1]);
+			}
+			if (sns.size() > faults) server.transferClient(client, vouched(sns), vouched(expected));
+		}
+
+		int added = transferBoard(GENERAL, summaries);
+		for (String client : server.registered()) {
+			added += transferBoard(client, summaries);
+		}
+		return added;
+	}
+
+	private int transferBoard(String board, Map<Integer, Summary> summaries) {
+		String owner = owner(board);
+		AnnouncementBoard.Snapshot mine = server.board(owner);
+
+		List<Integer> sizes = new ArrayList<>();
+		List<Integer> lasts = new ArrayList<>();
+		int sharing = 0;
+		for (Summary summary : summaries.values()) {
+			BoardState state = summary.boards.get(board);
+			if (state == null) continue;
+			sizes.add(state.size);
+			lasts.add(state.last);
+			if (Arrays.equals(mine.head(), state.digest)) sharing++;
+		}
+		if (sizes.size() <= faults) return 0;
+
+		// Start after this board's posts if f + 1 peers have the same ones
+		int base = (sharing > faults) ? last(mine) : NONE;
+		int target = vouched(lasts);
+		if (target <= base) return 0;
+
+		// Ranges of about CHUNK posts, as if the posts were spread evenly over the wts
+		int expected = Math.max(1, vouched(sizes) - ((base == NONE) ? 0 : mine.size()));
+		long step = Math.max(1, ((long) target - base) * CHUNK / expected);
+		List<Integer> bounds = new ArrayList<>();
+		for (long bound = base; bound < target; bound += step) {
+			bounds.add((int) bound);
+		}
+		bounds.add(target);
+		int count = bounds.size() - 1;
+
+		// Digests up to each bound, and of the ranges that these do not link
+		byte[][] prefixes = agreed(askPeers(peer -> digests(peer, board, bounds, Collections.emptyList())), 0, bounds.size());
+		if (prefixes[0] == null) prefixes[0] = (base == NONE) ? AnnouncementTools.EMPTY_DIGEST : mine.head();
+
+		List<Integer> unlinked = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			if (prefixes[i] == null || prefixes[i + 1] == null) unlinked.add(i);
+		}
+		byte[][] ranges = new byte[count][];
+		if (!unlinked.isEmpty()) {
+			byte[][] digests = agreed(askPeers(peer -> digests(peer, board, bounds, unlinked)), bounds.size(), unlinked.size());
+			for (int i = 0; i < unlinked.size(); i++) {
+				ranges[unlinked.get(i)] = digests[i];
+			}
+		}
+
+		// Stream from one peer, moving to the next when a range does not check
+		int added = 0;
+		int next = 0;
+		for (int peer : peers()) {
+			if (next >= count) break;
+			int[] result = stream(peer, owner, bounds, next, prefixes, ranges);
+			next = result[0];
+			added += result[1];
+		}
+
+		// The posts of the ranges the peers disagree on that f + 1 of them hold
+		for (int i = 0; i < count; i++) {
+			if (prefixes[i] == null || prefixes[i + 1] == null) {
+				if (ranges[i] == null) added += vote(owner, bounds.subList(i, i + 2));
+			}
+		}
+
+		return added;
+	}
+
+	/* Returns the range the stream stopped at and the posts added */
+	private int[] stream(int peer, String owner, List<Integer> bounds, int from, byte[][] prefixes, byte[][] ranges) {
+		int[] res = { from, 0 };
+
+		try {
+			posts(peer, owner, bounds.subList(from, bounds.size()), false, (index, posts) -> {
+				int range = from + index;
+				byte[] start = prefixes[range];
+				byte[] end = prefixes[range + 1];
+
+				if (start != null && end != null) {
+					// Appended when the board ends where the range starts, checked and merged otherwise
+					if (server.transferChunk(owner, posts, start, end)) {
+						res[1] += posts.size();
+					} else if (Arrays.equals(chain(start, posts), end)) {
+						res[1] += server.transferPosts(owner, posts);
+					} else {
+						throw new IOException("Range " + range + " does not match the agreed digests");
+					}
+				} else if (ranges[range] != null) {
+					if (!Arrays.equals(chain(AnnouncementTools.EMPTY_DIGEST, posts), ranges[range]))
+						throw new IOException("Range " + range + " does not match the agreed digest");
+					res[1] += server.transferPosts(owner, posts);
+				}
+				res[0] = range + 1;
+			});
+		} catch (IOException | RuntimeException e) {
+			System.out.println("State transfer of " + board(owner) + " from server" + peer + " stopped: " + e.getMessage());
+		}
+
+		return res;
+	}
+
+	/* Adds the posts of a range that f + 1 peers hold */
+	private int vote(String owner, List<Integer> bounds) {
+		Map<ByteBuffer, Integer> votes = new HashMap<>();
+		Map<ByteBuffer, Announcement> held = new LinkedHashMap<>();
+
+		for (List<Announcement> answer : askPeers(peer -> posts(peer, owner, bounds)).values()) {
+			for (Announcement post : answer) {
+				ByteBuffer key = ByteBuffer.wrap(AnnouncementTools.link(AnnouncementTools.EMPTY_DIGEST, post));
+				if (votes.merge(key, 1, Integer::sum) == 1) held.put(key, post);
+			}
+		}
+
+		List<Announcement> posts = new ArrayList<>();
+		held.forEach((key, post) -> {
+			if (votes.get(key) > faults) posts.add(post);
+		});
+		return posts.isEmpty() ? 0 : server.transferPosts(owner, posts);
+	}
+
+	/* Digests f + 1 answers share, of `count` of them from `offset` on */
+	private byte[][] agreed(Map<Integer, List<byte[]>> answers, int offset, int count) {
+		byte[][] res = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			res[i] = vote(answers.values(), offset + i);
+		}
+		return res;
+	}
+
+	private byte[] vote(Collection<List<byte[]>> answers, int index) {
+		Map<ByteBuffer, Integer> votes = new HashMap<>();
+		for (List<byte[]> digests : answers) {
+			if (digests.get(index) == null) continue;
+			ByteBuffer digest = ByteBuffer.wrap(digests.get(index));
+			if (votes.merge(digest, 1, Integer::sum) > faults) return digest.array();
+		}
+		return null;
+	}
+
+	// --- Requests to peers -------------
+
+	private interface PeerCall<T> {
+		T call(int peer) throws Exception;
+	}
+
+	/* Answers of the peers that answered in time */
+	private <T> Map<Integer, T> askPeers(PeerCall<T> request) {
+		Map<Integer, Future<T>> pending = new HashMap<>();
+		for (int peer : peers()) {
+			pending.put(peer, calls.submit(() -> request.call(peer)));
+		}
+
+		Map<Integer, T> answers = new HashMap<>();
+		for (Map.Entry<Integer, Future<T>> entry : pending.entrySet()) {
+			try {
+				answers.put(entry.getKey(), entry.getValue().get());
+			} catch (Exception e) {
+				System.out.println("No state from server" + entry.getKey() + ": " + e.getMessage());
+			}
+		}
+		return answers;
+	}
+
+	private Summary summary(int peer, Map<String, Integer> lasts) throws IOException {
+		long nonce = random.nextLong();
+
+		try (Socket connection = connect(peer)) {
+			DataOutputStream out = output(connection);
+			out.writeByte(SUMMARY);
+			out.writeLong(nonce);
+			out.writeInt(lasts.size());
+			for (Map.Entry<String, Integer> last : lasts.entrySet()) {
+				out.writeUTF(last.getKey());
+				out.writeInt(last.getValue());
+			}
+			out.flush();
+
+			DataInputStream in = signed(peer, nonce, input(connection));
+			Summary summary = new Summary();
+			int clients = in.readInt();
+			for (int i = 0; i < clients; i++) {
+				summary.clients.put(in.readUTF(), new int[] { in.readInt(), in.readInt() });
+			}
+			int boards = in.readInt();
+			for (int i = 0; i < boards; i++) {
+				String board = in.readUTF();
+				BoardState state = new BoardState();
+				state.size = in.readInt();
+				state.last = in.readInt();
+				state.digest = readDigest(in);
+				summary.boards.put(board, state);
+			}
+			return summary;
+		}
+	}
+
+	/* Digests up to each bound, then of the posts of each of the ranges asked for */
+	private List<byte[]> digests(int peer, String board, List<Integer> bounds, List<Integer> ranges) throws IOException {
+		long nonce = random.nextLong();
+
+		try (Socket connection = connect(peer)) {
+			DataOutputStream out = output(connection);
+			out.writeByte(DIGESTS);
+			out.writeLong(nonce);
+			out.writeUTF(board);
+			writeInts(out, bounds);
+			writeInts(out, ranges);
+			out.flush();
+
+			DataInputStream in = signed(peer, nonce, input(connection));
+			List<byte[]> digests = new ArrayList<>();
+			for (int i = 0; i < bounds.size() + ranges.size(); i++) {
+				digests.add(readDigest(in));
+			}
+			return digests;
+		}
+	}
+
+	private interface RangeHandler {
+		void handle(int index, List<Announcement> posts) throws IOException;
+	}
+
+	/* Posts of the single range between two bounds, signed by the peer */
+	private List<Announcement> posts(int peer, String owner, List<Integer> bounds) throws IOException {
+		List<Announcement> res = new ArrayList<>();
+		posts(peer, owner, bounds, true, (index, posts) -> res.addAll(posts));
+		return res;
+	}
+
+	/*
+	* Hands the posts of each range between the bounds over as they come. Ranges
+	* checked against agreed digests need no signature, the others are signed
+	* on their own.
+	*/
+	private void posts(int peer, String owner, List<Integer> bounds, boolean signed, RangeHandler handler) throws IOException {
+		long nonce = random.nextLong();
+
+		try (Socket connection = connect(peer)) {
+			DataOutputStream out = output(connection);
+			out.writeByte(POSTS);
+			out.writeLong(nonce);
+			out.writeUTF(board(owner));
+			writeInts(out, bounds);
+			out.writeBoolean(signed);
+			out.flush();
+
+			DataInputStream in = input(connection);
+			for (int i = 0; i < bounds.size() - 1; i++) {
+				DataInputStream range = signed ? signed(peer, nonce, in) : in;
+				if (range.readInt() != i) throw new IOException("Ranges out of order");
+
+				byte[] record = signed ? new byte[range.available()] : readBytes(range);
+				if (signed) range.readFully(record);
+				handler.handle(i, LogRecord.announcements(record));
+			}
+		}
+	}
+
+	/* Body of a signed answer, once its signature and nonce check */
+	private DataInputStream signed(int peer, long nonce, DataInputStream in) throws IOException {
+		byte[] body = readBytes(in);
+		String signature = in.readUTF();
+
+		try {
+			if (!CryptoTools.verifySignature(Constants.SERVER_NAME + peer, hash(body), signature))
+				throw new IOException("Invalid signature");
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Invalid signature");
+		}
+
+		DataInputStream res = new DataInputStream(new ByteArrayInputStream(body));
+		if (res.readLong() != nonce) throw new IOException("Answer to another request");
+		return res;
+	}
+
+	// --- Serving peers -------------
+
+	private void accept() {
+		while (running) {
+			try {
+				Socket connection = socket.accept();
+				daemon("transfer-serve-" + self, () -> serve(connection)).start();
+			} catch (IOException e) {
+				if (running) System.out.println("Transfer connection failed: " + e.getMessage());
+			}
+		}
+	}
+
+	private void serve(Socket connection) {
+		try (Socket closing = connection) {
+			connection.setSoTimeout(TIMEOUT);
+			DataInputStream in = input(connection);
+			DataOutputStream out = output(connection);
+
+			switch (in.readByte()) {
+			case SUMMARY:
+				sendSummary(in, out);
+				break;
+			case DIGESTS:
+				sendDigests(in, out);
+				break;
+			case POSTS:
+				sendPosts(in, out);
+				break;
+			default:
+				throw new IOException("Unknown transfer request");
+			}
+			out.flush();
+		} catch (IOException e) {
+			System.out.println("Transfer request failed: " + e.getMessage());
+		}
+	}
+
+	private void sendSummary(DataInputStream in, DataOutputStream out) throws IOException {
+		long nonce = in.readLong();
+		Map<String, Integer> lasts = new HashMap<>();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			lasts.put(in.readUTF(), in.readInt());
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream body = new DataOutputStream(bytes);
+		body.writeLong(nonce);
+
+		List<String> clients = server.registered();
+		body.writeInt(clients.size());
+		for (String client : clients) {
+			body.writeUTF(client);
+			body.writeInt(server.sns.getOrDefault(client, 0));
+			body.writeInt(server.expectedWts.getOrDefault(client, 0));
+		}
+
+		List<String> boards = new ArrayList<>(clients);
+		boards.add(0, GENERAL);
+		body.writeInt(boards.size());
+		for (String board : boards) {
+			AnnouncementBoard.Snapshot snapshot = server.board(owner(board));
+			body.writeUTF(board);
+			body.writeInt(snapshot.size());
+			body.writeInt(last(snapshot));
+			writeDigest(body, snapshot, lasts.getOrDefault(board, NONE));
+		}
+
+		sign(out, bytes.toByteArray());
+	}
+
+	private void sendDigests(DataInputStream in, DataOutputStream out) throws IOException {
+		long nonce = in.readLong();
+		AnnouncementBoard.Snapshot snapshot = server.board(owner(in.readUTF()));
+		List<Integer> bounds = readInts(in);
+		List<Integer> ranges = readInts(in);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream body = new DataOutputStream(bytes);
+		body.writeLong(nonce);
+
+		for (int bound : bounds) {
+			writeDigest(body, snapshot, bound);
+		}
+		for (int range : ranges) {
+			boolean present = snapshot != null && range >= 0 && range < bounds.size() - 1;
+			body.writeBoolean(present);
+			if (present) body.write(chain(AnnouncementTools.EMPTY_DIGEST, range(snapshot, bounds.get(range), bounds.get(range + 1))));
+		}
+
+		sign(out, bytes.toByteArray());
+	}
+
+	/* Each range as a log record of its posts, from one snapshot of the board */
+	private void sendPosts(DataInputStream in, DataOutputStream out) throws IOException {
+		long nonce = in.readLong();
+		String owner = owner(in.readUTF());
+		AnnouncementBoard.Snapshot snapshot = server.board(owner);
+		List<Integer> bounds = readInts(in);
+		boolean signed = in.readBoolean();
+
+		for (int i = 0; i < bounds.size() - 1; i++) {
+			List<Announcement> posts = (snapshot == null) ? Collections.emptyList() : range(snapshot, bounds.get(i), bounds.get(i + 1));
+			byte[] record = (owner == null) ? new LogRecord().general(posts).toBytes() : new LogRecord().personal(posts).toBytes();
+
+			if (signed) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream body = new DataOutputStream(bytes);
+				body.writeLong(nonce);
+				body.writeInt(i);
+				body.write(record);
+				sign(out, bytes.toByteArray());
+			} else {
+				out.writeInt(i);
+				out.writeInt(record.length);
+				out.write(record);
+			}
+		}
+	}
+
+	private void sign(DataOutputStream out, byte[] body) throws IOException {
+		String signature;
+		try {
+			signature = CryptoTools.makeSignature(Constants.SERVER_NAME + self, hash(body));
+		} catch (Exception e) {
+			throw new IOException("Could not sign the answer: " + e.getMessage());
+		}
+		out.writeInt(body.length);
+		out.write(body);
+		out.writeUTF(signature);
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* The (f + 1)th highest value: at least one correct peer reached it */
+	private int vouched(List<Integer> values) {
+		List<Integer> sorted = new ArrayList<>(values);
+		sorted.sort(Collections.reverseOrder());
+		return sorted.get(faults);
+	}
+
+	private List<Integer> peers() {
+		List<Integer> peers = new ArrayList<>();
+		for (int id = 1; id <= replicas; id++) {
+			if (id != self) peers.add(id);
+		}
+		return peers;
+	}
+
+	private Socket connect(int peer) throws IOException {
+		Socket connection = new Socket();
+		connection.connect(new InetSocketAddress(host, PORT_START + peer), TIMEOUT);
+		connection.setSoTimeout(TIMEOUT);
+		return connection;
+	}
+
+	private static String owner(String board) {
+		return GENERAL.equals(board) ? null : board;
+	}
+
+	private static String board(String owner) {
+		return (owner == null) ? GENERAL : owner;
+	}
+
+	private static int last(AnnouncementBoard.Snapshot snapshot) {
+		return snapshot.isEmpty() ? NONE : snapshot.get(snapshot.size() - 1).getId();
+	}
+
+	/* Posts with a wts in (after, upTo] */
+	private static List<Announcement> range(AnnouncementBoard.Snapshot snapshot, int after, int upTo) {
+		AnnouncementBoard.Snapshot from = snapshot.since(after);
+		return from.range(0, Math.max(0, from.size() - snapshot.since(upTo).size()));
+	}
+
+	private static DataInputStream input(Socket connection) throws IOException {
+		return new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+	}
+
+	private static DataOutputStream output(Socket connection) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 1 << 16));
+	}
+
+	private static void writeInts(DataOutputStream out, List<Integer> values) throws IOException {
+		out.writeInt(values.size());
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	private static List<Integer> readInts(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || count > 1 << 20) throw new IOException("Too many values");
+
+		List<Integer> res = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			res.add(in.readInt());
+		}
+		return res;
+	}
+
+	/* Digest of the board's chain up to wts `wts`, absent for a board this server does not have */
+	private static void writeDigest(DataOutputStream out, AnnouncementBoard.Snapshot snapshot, int wts) throws IOException {
+		out.writeBoolean(snapshot != null);
+		if (snapshot != null) out.write(snapshot.since(wts).prefix());
+	}
+
+	/* Length prefixed bytes, of at most MAX_ANSWER */
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > MAX_ANSWER) throw new IOException("Answer too long");
+
+		byte[] res = new byte[length];
+		in.readFully(res);
+		return res;
+	}
+
+	private static byte[] readDigest(DataInputStream in) throws IOException {
+		if (!in.readBoolean()) return null;
+		byte[] digest = new byte[32];
+		in.readFully(digest);
+		return digest;
+	}
+
+	private static byte[] chain(byte[] prefix, List<Announcement> posts) {
+		byte[] digest = prefix;
+		for (Announcement post : posts) {
+			digest = AnnouncementTools.link(digest, post);
+		}
+		return digest;
+	}
+
+	private static byte[] hash(byte[] bytes) {
+		return CryptoTools.encoder().bytes(bytes).digest();
+	}
+
+	private static Thread daemon(String name, Runnable task) {
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+}
@@ -1,7 +1,10 @@
 package org.announcementserver.utils;
 
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.common.MessageEncoder;
 import org.announcementserver.ws.AnnouncementMessage;
 import org.announcementserver.ws.Announcement;
 
@@ -24,29 +27,80 @@ public class AnnouncementTools {
 	    return res;
 	}
 	
-	// Was in AnnouncementServerProxy.java
-    public static List<String> listToSign(List<AnnouncementMessage> posts) {
-        List<String> res = new ArrayList<>();
+    public static MessageEncoder encodePosts(MessageEncoder encoder, List<AnnouncementMessage> posts) {
+        encoder.number(posts.size());
 
         for (AnnouncementMessage post: posts) {
-            res.addAll(postToSign(post, true));
+            encodePost(encoder, post, true);
         }
 
-        return res;
+        return encoder;
     }
     
-    // Was in AnnouncementServerProxy.java
-    public static List<String> postToSign(AnnouncementMessage post, boolean signature) {
-        List<String> res = new ArrayList<>();
+    public static MessageEncoder encodePost(MessageEncoder encoder, AnnouncementMessage post, boolean signature) {
+        encoder.string(post.getWriter())
+            .string(post.getMessage())
+            .strings(post.getAnnouncementList())
+            .number(post.getWts())
+            .string(post.getType());
+        if (signature) encoder.string(post.getSignature());
 
-        res.add(post.getWriter());
-        res.add(post.getMessage());
-        res.add(post.getAnnouncementList().toString());
-        res.add(String.valueOf(post.getWts()));
-        res.add(post.getType());
-        if (signature) res.add(post.getSignature());
+        return encoder;
+    }
+    
+    /* Same encoding as encodePost with the signature, for the server's own announcements */
+    public static MessageEncoder encodeAnnouncement(MessageEncoder encoder, Announcement announcement) {
+        return encoder.string(announcement.getAuthor())
+            .string(announcement.getContent())
+            .strings(announcement.getReferences())
+            .number(announcement.getId())
+            .string(announcement.getType())
+            .string(announcement.getSignature());
+    }
+    
+    // --- Board hash chain (see AnnouncementBoard) -------------
+    
+    public static final byte[] EMPTY_DIGEST = new byte[32];
+    
+    public static byte[] link(byte[] previous, Announcement announcement) {
+        return encodeAnnouncement(CryptoTools.encoder().bytes(previous), announcement).digest();
+    }
+    
+    public static byte[] link(byte[] previous, AnnouncementMessage post) {
+        return encodePost(CryptoTools.encoder().bytes(previous), post, true).digest();
+    }
+    
+    /* Digest of the board after the given posts, starting from the digest before them */
+    public static byte[] chain(byte[] prefix, List<AnnouncementMessage> posts) {
+        byte[] digest = prefix;
 
-        return res;
+        for (AnnouncementMessage post: posts) {
+            digest = link(digest, post);
+        }
+
+        return digest;
+    }
+    
+    /* Read responses are signed over the digests around their posts, not the posts */
+    public static byte[] hashReadRet(String sender, String destination, Integer seqNumber, Integer rid, byte[] prefix,
+            byte[] head, String cursor) {
+        return CryptoTools.encoder()
+            .string(sender)
+            .string(destination)
+            .number(seqNumber)
+            .number(rid)
+            .bytes(prefix)
+            .bytes(head)
+            .string(cursor)
+            .digest();
+    }
+    
+    public static String digestToString(byte[] digest) {
+        return Base64.getEncoder().encodeToString(digest);
+    }
+    
+    public static byte[] stringToDigest(String digest) {
+        return Base64.getDecoder().decode(digest);
     }
     
     // Was in AnnouncementServerProxy.java
@@ -0,0 +1,57 @@
+package org.announcementserver.utils;
+
+/*
+* Group commit metrics: batch sizes and the latency from the moment a
+* record is submitted until it is durable
+*/
+
+public class CommitStats {
+	private long batches;
+	private long records;
+	private int maxBatch;
+	private long totalLatency; // nanoseconds
+	private long maxLatency;
+
+	public synchronized void batch(int size) {
+		batches++;
+		records += size;
+		maxBatch = Math.max(maxBatch, size);
+	}
+
+	public synchronized void latency(long nanos) {
+		totalLatency += nanos;
+		maxLatency = Math.max(maxLatency, nanos);
+	}
+
+	public synchronized long getBatches() {
+		return batches;
+	}
+
+	public synchronized long getRecords() {
+		return records;
+	}
+
+	public synchronized int getMaxBatch() {
+		return maxBatch;
+	}
+
+	public synchronized double getAverageBatch() {
+		return batches == 0 ? 0 : (double) records / batches;
+	}
+
+	/* Average commit latency in milliseconds */
+	public synchronized double getAverageLatency() {
+		return records == 0 ? 0 : totalLatency / 1e6 / records;
+	}
+
+	/* Maximum commit latency in milliseconds */
+	public synchronized double getMaxLatency() {
+		return maxLatency / 1e6;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("commits: %d records in %d batches (avg %.1f, max %d), latency avg %.2f ms, max %.2f ms",
+			records, batches, getAverageBatch(), maxBatch, getAverageLatency(), getMaxLatency());
+	}
+}
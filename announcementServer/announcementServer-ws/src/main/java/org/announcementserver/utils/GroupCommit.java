@@ -0,0 +1,206 @@
+package org.announcementserver.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Group commit stage in front of the operation log
+*
+* Records submitted by concurrent operations are gathered by a single writer
+* thread, written together and forced to disk once per batch. Each caller
+* gets a future that completes when its record is durable.
+*
+* The first write or force that fails is fatal: what reached the file is
+* unknown, so that record, every queued one and every later one fails, and
+* nothing more is written until the log is opened again (recovery cuts a
+* torn tail). Records submitted after close fail at once.
+*/
+
+public class GroupCommit {
+
+	public static final int BATCH_SIZE = Integer.getInteger("ws.commit.batch", 128);
+	public static final long LINGER = Long.getLong("ws.commit.linger", 0L); // milliseconds
+
+	private static class Pending {
+		final long lsn;
+		final byte[] record;
+		final long start = System.nanoTime();
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		Pending(long lsn, byte[] record) {
+			this.lsn = lsn;
+			this.record = record;
+		}
+	}
+
+	private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+	private final Object writeLock = new Object();
+	private final CommitStats stats = new CommitStats();
+	private final Runnable afterBatch;
+	private final Thread writer;
+	private volatile boolean running = true;
+	private OperationLog log;
+	private long lastLsn;
+	private IOException failure; // guarded by this, like closed
+	private boolean closed;
+
+	public GroupCommit(String name, OperationLog log, long lastLsn, Runnable afterBatch) {
+		this.log = log;
+		this.lastLsn = lastLsn;
+		this.afterBatch = afterBatch;
+		this.writer = new Thread(this::run, name + "-commit");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/* Queues a record, numbering it in submission order */
+	public synchronized CompletableFuture<Void> submit(byte[] record) {
+		if (closed || failure != null) {
+			CompletableFuture<Void> refused = new CompletableFuture<>();
+			refused.completeExceptionally(closed ? new IOException("Log closed") : failure);
+			return refused;
+		}
+
+		Pending pending = new Pending(++lastLsn, record);
+		queue.add(pending);
+		return pending.done;
+	}
+
+	/* Lsn of the last submitted record, durable or not */
+	public synchronized long getLastLsn() {
+		return lastLsn;
+	}
+
+	/* Records written to the current log segment */
+	public int segmentSize() {
+		synchronized (writeLock) {
+			return log.size();
+		}
+	}
+
+	/* Bytes of the current log segment */
+	public long segmentLength() throws IOException {
+		synchronized (writeLock) {
+			return log.length();
+		}
+	}
+
+	/* Moves the current log segment aside and starts a new one; refused once a write failed */
+	public void rotate(File previous) throws IOException {
+		synchronized (writeLock) {
+			IOException failed = failure();
+			if (failed != null) throw failed;
+
+			log.close();
+			Files.move(log.getFile().toPath(), previous.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			log = new OperationLog(log.getFile());
+		}
+	}
+
+	public CommitStats getStats() {
+		return stats;
+	}
+
+	/* Commits every queued record and stops the writer; records it left behind fail */
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+		}
+		running = false;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		failQueued(new IOException("Log closed"));
+		synchronized (writeLock) {
+			log.close();
+		}
+	}
+
+	// --- Writer -------------
+
+	private void run() {
+		List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+
+		while (running || !queue.isEmpty()) {
+			try {
+				Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) continue;
+
+				batch.add(first);
+				queue.drainTo(batch, BATCH_SIZE - batch.size());
+
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER);
+				while (batch.size() < BATCH_SIZE && System.nanoTime() < deadline) {
+					Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (next == null) break;
+					batch.add(next);
+					queue.drainTo(batch, BATCH_SIZE - batch.size());
+				}
+
+				commit(batch);
+				batch.clear();
+
+				if (afterBatch != null) afterBatch.run();
+			} catch (InterruptedException e) {
+				running = false;
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void commit(List<Pending> batch) {
+		try {
+			synchronized (writeLock) {
+				IOException failed = failure();
+				if (failed != null) throw failed;
+
+				for (Pending pending : batch) {
+					log.write(pending.lsn, pending.record);
+				}
+				log.force();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			synchronized (this) {
+				if (failure == null) failure = e;
+			}
+			for (Pending pending : batch) {
+				pending.done.completeExceptionally(e);
+			}
+			failQueued(e);
+			return;
+		}
+
+		long now = System.nanoTime();
+		stats.batch(batch.size());
+
+		for (Pending pending : batch) {
+			stats.latency(now - pending.start);
+			pending.done.complete(null);
+		}
+	}
+
+	private synchronized IOException failure() {
+		return failure;
+	}
+
+	/* Fails the records no batch will write; submit adds none once failure or closed is set */
+	private void failQueued(IOException e) {
+		List<Pending> left = new ArrayList<>();
+		queue.drainTo(left);
+		for (Pending pending : left) {
+			pending.done.completeExceptionally(e);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package org.announcementserver.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementServer;
+
+/*
+* One entry of the operation log: the state changes made by a single
+* server operation, replayed together on recovery
+*/
+
+public class LogRecord {
+
+	private static final byte REGISTER = 1;
+	private static final byte PERSONAL = 2;
+	private static final byte GENERAL = 3;
+	private static final byte SEQ_NUMBER = 4;
+	private static final byte WTS = 5;
+	private static final byte EXPECTED_WTS = 6;
+
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+	private final DataOutputStream out = new DataOutputStream(bytes);
+
+	public LogRecord register(String client) {
+		try {
+			out.writeByte(REGISTER);
+			out.writeUTF(client);
+		} catch (IOException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+		return this;
+	}
+
+	public LogRecord personal(Announcement announcement) {
+		try {
+			out.writeByte(PERSONAL);
+			writeAnnouncement(announcement);
+		} catch (IOException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+		return this;
+	}
+
+	public LogRecord personal(List<Announcement> announcements) {
+		for (Announcement announcement : announcements) {
+			personal(announcement);
+		}
+		return this;
+	}
+
+	public LogRecord general(Announcement announcement) {
+		try {
+			out.writeByte(GENERAL);
+			writeAnnouncement(announcement);
+		} catch (IOException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+		return this;
+	}
+
+	public LogRecord general(List<Announcement> announcements) {
+		for (Announcement announcement : announcements) {
+			general(announcement);
+		}
+		return this;
+	}
+
+	public LogRecord seqNumber(String client, Integer sn) {
+		return value(SEQ_NUMBER, client, sn);
+	}
+
+	public LogRecord wts(String client, Integer wts) {
+		return value(WTS, client, wts);
+	}
+
+	public LogRecord expectedWts(String client, Integer wts) {
+		return value(EXPECTED_WTS, client, wts);
+	}
+
+	public byte[] toBytes() {
+		return bytes.toByteArray();
+	}
+
+	public boolean isEmpty() {
+		return bytes.size() == 0;
+	}
+
+	/* Announcements of a record holding only personal or general posts, as sent by state transfer */
+	public static List<Announcement> announcements(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		List<Announcement> res = new ArrayList<>();
+
+		while (in.available() > 0) {
+			byte type = in.readByte();
+			if (type != PERSONAL && type != GENERAL) throw new IOException("Not a record of posts: " + type);
+			res.add(readAnnouncement(in));
+		}
+
+		return res;
+	}
+
+	/* Applies a logged record on top of a recovered server state */
+	public static void replay(byte[] record, AnnouncementServer server) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+
+		while (in.available() > 0) {
+			byte type = in.readByte();
+
+			switch (type) {
+			case REGISTER:
+				server.addClient(in.readUTF());
+				break;
+			case PERSONAL:
+				Announcement personal = readAnnouncement(in);
+				server.putPersonal(personal.getAuthor(), personal);
+				break;
+			case GENERAL:
+				server.putGeneral(readAnnouncement(in));
+				break;
+			case SEQ_NUMBER:
+				server.sns.put(in.readUTF(), in.readInt());
+				break;
+			case WTS:
+				server.wtss.put(in.readUTF(), in.readInt());
+				break;
+			case EXPECTED_WTS:
+				server.expectedWts.put(in.readUTF(), in.readInt());
+				break;
+			default:
+				throw new IOException("Unknown log record type " + type);
+			}
+		}
+	}
+
+	// --- Auxiliary functions -------------
+
+	private LogRecord value(byte type, String client, Integer value) {
+		try {
+			out.writeByte(type);
+			out.writeUTF(client);
+			out.writeInt(value);
+		} catch (IOException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+		return this;
+	}
+
+	private void writeAnnouncement(Announcement announcement) throws IOException {
+		writeString(announcement.getAuthor());
+		writeString(announcement.getContent());
+		out.writeInt(announcement.getId());
+		writeString(announcement.getType());
+		writeString(announcement.getSignature());
+		out.writeShort(announcement.getReferences().size());
+		for (String reference : announcement.getReferences()) {
+			out.writeUTF(reference);
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) out.writeUTF(value);
+	}
+
+	private static Announcement readAnnouncement(DataInputStream in) throws IOException {
+		Announcement res = new Announcement();
+		res.setAuthor(readString(in));
+		res.setContent(readString(in));
+		res.setId(in.readInt());
+		res.setType(readString(in));
+		res.setSignature(readString(in));
+		int references = in.readShort();
+		for (int i = 0; i < references; i++) {
+			res.addReference(in.readUTF());
+		}
+		return res;
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
@@ -0,0 +1,162 @@
+package org.announcementserver.utils;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/*
+* Append-only operation log
+*
+* Each record is framed as [length][crc32][lsn][payload], where the checksum
+* covers the lsn and the payload. A torn tail, a last frame that runs to
+* the end of the file, is detected on read and cut off before new records
+* are appended. An invalid frame followed by more data is corruption of
+* records that may have been acknowledged, and the log is refused.
+*/
+
+public class OperationLog {
+
+	private static final int HEADER_SIZE = 8; // length + crc32
+	private static final int LSN_SIZE = 8;
+
+	public interface Replayer {
+		void apply(long lsn, byte[] record) throws IOException;
+	}
+
+	private final File file;
+	private final FileChannel channel;
+	private int records;
+
+	/* Opens the log for appending, dropping any invalid tail */
+	public OperationLog(File file) throws IOException {
+		this.file = file;
+		long validLength = read(file, null);
+
+		@SuppressWarnings("resource")
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		this.channel.truncate(validLength);
+		this.channel.position(validLength);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/* Records written since this log was opened */
+	public synchronized int size() {
+		return records;
+	}
+
+	/* Writes a record; it is only durable after the next force() */
+	public synchronized void write(long lsn, byte[] record) throws IOException {
+		ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + LSN_SIZE + record.length);
+
+		frame.putInt(LSN_SIZE + record.length);
+		frame.putInt(0);
+		frame.putLong(lsn);
+		frame.put(record);
+
+		CRC32 crc = new CRC32();
+		crc.update(frame.array(), HEADER_SIZE, LSN_SIZE + record.length);
+		frame.putInt(4, (int) crc.getValue());
+		frame.flip();
+
+		while (frame.hasRemaining()) {
+			channel.write(frame);
+		}
+		records++;
+	}
+
+	/* Bytes of this log file */
+	public synchronized long length() throws IOException {
+		return channel.position();
+	}
+
+	public synchronized void force() throws IOException {
+		channel.force(false);
+	}
+
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	/*
+	* Reads every valid record of a log file, in order, stopping at a torn
+	* tail. Returns the length of the valid prefix. Throws if an invalid
+	* frame does not run to the end of the file.
+	*/
+	public static long read(File file, Replayer replayer) throws IOException {
+		if (!file.exists()) return 0;
+
+		long fileLength = file.length();
+		long validLength = 0;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			while (true) {
+				int length;
+				int checksum;
+				byte[] body;
+
+				try {
+					length = in.readInt();
+					checksum = in.readInt();
+				} catch (EOFException e) {
+					break; // torn header
+				}
+
+				long remaining = fileLength - validLength - HEADER_SIZE;
+				if (length > remaining) break; // torn body
+				if (length < LSN_SIZE) {
+					if (length == 0 && checksum == 0 && zeros(in)) break; // space the crash left unwritten
+					throw corrupted(file, validLength);
+				}
+
+				body = new byte[length];
+				in.readFully(body);
+
+				CRC32 crc = new CRC32();
+				crc.update(body);
+				if ((int) crc.getValue() != checksum) {
+					if (length == remaining) break; // torn last frame
+					throw corrupted(file, validLength);
+				}
+
+				if (replayer != null) {
+					ByteBuffer buffer = ByteBuffer.wrap(body);
+					long lsn = buffer.getLong();
+					byte[] record = new byte[length - LSN_SIZE];
+					buffer.get(record);
+					replayer.apply(lsn, record);
+				}
+
+				validLength += HEADER_SIZE + length;
+			}
+		}
+
+		return validLength;
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* Thrown like a missing record, see PersistenceUtils.recover */
+	private static RuntimeException corrupted(File file, long offset) {
+		return new RuntimeException(String.format("Log %s is corrupted at offset %d", file.getName(), offset));
+	}
+
+	/* Whether the rest of the stream is zeros */
+	private static boolean zeros(DataInputStream in) throws IOException {
+		int b;
+		while ((b = in.read()) != -1) {
+			if (b != 0) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,84 @@
+package org.announcementserver.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.SecretKey;
+
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.ws.AnnouncementBoard;
+
+/*
+* Opaque cursor to the next page of a read
+*
+* Holds the board, the position of the next post on it and the board's
+* digest up to that position, authenticated with a key only this server
+* process knows. A cursor is only taken back while the board before the
+* position is unchanged; after a late post or a restart the client has to
+* read again from its own position.
+*/
+
+public class PageCursor {
+	private static final SecretKey KEY = CryptoTools.newSessionKey();
+
+	/* Cursor to the posts of `board` after the given page */
+	public static String make(String board, AnnouncementBoard.Snapshot page) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeUTF(board);
+			out.writeInt(page.end());
+			out.write(page.head());
+			out.write(mac(bytes.toByteArray()));
+			return Base64.getUrlEncoder().encodeToString(bytes.toByteArray());
+		} catch (IOException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+	}
+
+	/* Posts of `posts`' board from the position of the cursor on */
+	public static AnnouncementBoard.Snapshot resume(String cursor, String board, AnnouncementBoard.Snapshot posts) {
+		try {
+			byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+			int length = bytes.length - 32;
+			if (length <= 0 || !MessageDigest.isEqual(mac(Arrays.copyOf(bytes, length)),
+					Arrays.copyOfRange(bytes, length, bytes.length)))
+				throw new RuntimeException("Invalid cursor");
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+			String cursorBoard = in.readUTF();
+			int index = in.readInt();
+			byte[] digest = new byte[32];
+			in.readFully(digest);
+
+			if (!board.equals(cursorBoard) || index < 0 || index > posts.end())
+				throw new RuntimeException("Invalid cursor");
+
+			AnnouncementBoard.Snapshot rest = posts.from(index);
+			if (!MessageDigest.isEqual(digest, rest.prefix()))
+				throw new RuntimeException("The board changed before the cursor");
+
+			return rest;
+		} catch (IOException | IllegalArgumentException e) {
+			throw new RuntimeException("Invalid cursor");
+		}
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* With the thread's engine, reads ask for no provider */
+	private static byte[] mac(byte[] data) {
+		try {
+			return CryptoTools.mac(KEY, data);
+		} catch (InvalidKeyException e) {
+			throw new RuntimeException(e.getMessage());
+		}
+	}
+}
@@ -3,56 +3,313 @@ package org.announcementserver.utils;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.announcementserver.ws.AnnouncementServer;
 
+/*
+* Persistence of the server state
+*
+* Every operation appends its state changes to <id>Log.wal through a group
+* commit stage. Every SNAPSHOT_INTERVAL records the whole state is written
+* to <id>State.ser (the previous snapshot is kept as <id>StateBackup.ser)
+* and the log is rotated to a numbered segment, <id>Log-<n>.wal, so
+* recovery only replays a bounded tail. Older segments are only deleted
+* once the new snapshot is in place, so the backup can always be replayed
+* forward, and recovery refuses a log with records missing after the
+* snapshot it starts from. A large state is only written again once the log has grown
+* to half its size. The files are under FILEPATH (-Dws.state.dir), or in
+* a directory of their own for servers sharing a JVM (setDirectory).
+* A server's log must be opened, by recover or start, before it serves
+* any request; only start deletes the files of a previous run.
+*
+* Records must be submitted while holding the locks of the state they
+* change, so that their order in the log matches the order in which they
+* were applied. A snapshot only holds the server's snapshotLock to copy the
+* state (the boards are shared, see AnnouncementBoard.copy) and rotate the
+* log; the copy is written by a thread of its own while commits go on.
+*/
+
 public class PersistenceUtils {
-	
-	public static final String FILEPATH = "src/main/resources/";
-	
-	public static void recover(String serverId) {
-		FileInputStream fis = null;
-		ObjectInputStream ois = null;
-		
+
+	public static final String FILEPATH = System.getProperty("ws.state.dir", "src/main/resources/");
+	public static final int SNAPSHOT_INTERVAL = Integer.getInteger("ws.snapshot.interval", 1000);
+	private static final String SEGMENT = "Log-";
+
+	// Keyed by String.valueOf(serverId), a server without an id persists as "null"
+	private static final Map<String, GroupCommit> logs = new ConcurrentHashMap<>();
+	private static final Set<String> snapshotting = ConcurrentHashMap.newKeySet(); // queued or being written
+	private static final Map<String, Object> monitors = new ConcurrentHashMap<>(); // held to snapshot or close a log
+	private static final Map<String, File> directories = new ConcurrentHashMap<>(); // of servers not under FILEPATH
+	private static final ExecutorService snapshots = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "snapshot");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/*
+	* Recovers the server's state and makes it the singleton; null if its
+	* snapshots could not be read. Throws if records after the snapshot are missing.
+	*/
+	public static AnnouncementServer recover(String serverId) {
+		AnnouncementServer recovered = null;
+		long snapshotLsn = 0;
+
+		close(serverId);
+
+		for (String name : new String[] { "State.ser", "StateBackup.ser" }) {
+			if (!file(serverId, name).exists()) continue;
+
+			try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file(serverId, name)))) {
+				snapshotLsn = ois.readLong();
+				recovered = (AnnouncementServer) ois.readObject();
+				break;
+			} catch(Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		// Without any snapshot the whole log is replayed from a fresh state
+		if (recovered == null && !file(serverId, "State.ser").exists() && !file(serverId, "StateBackup.ser").exists()) {
+			AnnouncementServer.setInstance(null);
+			recovered = AnnouncementServer.getInstance();
+			recovered.setId(serverId);
+		}
+
+		if (recovered == null) return null;
+
+		final AnnouncementServer announcementServer = recovered;
+		final long fromLsn = snapshotLsn;
+		final long[] lastLsn = { snapshotLsn };
+
+		OperationLog.Replayer replayer = (lsn, record) -> {
+			if (lsn <= fromLsn) return; // already in the snapshot
+			if (lsn != lastLsn[0] + 1) {
+				throw new RuntimeException(String.format("Log of %s is missing the records after lsn %d", serverId, lastLsn[0]));
+			}
+			LogRecord.replay(record, announcementServer);
+			lastLsn[0] = lsn;
+		};
+
 		try {
-			fis = new FileInputStream(new File(FILEPATH+serverId+"State.ser"));
-			ois = new ObjectInputStream(fis);
-			AnnouncementServer announcementServer = (AnnouncementServer) ois.readObject();
-			AnnouncementServer.setInstance(announcementServer);
-			ois.close();
-			fis.close();
-		} catch(Exception i) {
-			try {
-				fis = new FileInputStream(new File(FILEPATH+serverId+"StateBackup.ser"));
-				ois = new ObjectInputStream(fis);
-				AnnouncementServer announcementServer = (AnnouncementServer) ois.readObject();
-				AnnouncementServer.setInstance(announcementServer);
-			} catch(Exception j) {
-				j.printStackTrace();
+			for (int segment : segments(serverId)) {
+				OperationLog.read(segment(serverId, segment), replayer);
 			}
+			OperationLog.read(file(serverId, "Log.wal"), replayer);
+
+			open(announcementServer, serverId, lastLsn[0]);
+		} catch(IOException e) {
+			e.printStackTrace();
 		}
+
+		AnnouncementServer.setInstance(announcementServer);
+		return announcementServer;
 	}
-	
+
+	/* Starts the server from a fresh state: deletes its snapshots and log segments and opens a new log */
+	public static void start(AnnouncementServer announcementServer, String serverId) {
+		close(serverId);
+
+		try {
+			delete(serverId);
+			open(announcementServer, serverId, 0);
+		} catch(IOException e) {
+			e.printStackTrace();
+			throw new RuntimeException("Could not start a new log");
+		}
+	}
+
+	/* Submits the state changes of one operation; the future completes once they are durable */
+	public static CompletableFuture<Void> log(AnnouncementServer announcementServer, String serverId, LogRecord record) {
+		return getLog(announcementServer, serverId).submit(record.toBytes());
+	}
+
+	/* Waits until a submitted record is durable */
+	public static void await(CompletableFuture<Void> commit) {
+		if (commit == null) return;
+
+		try {
+			commit.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Could not persist operation");
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Could not persist operation");
+		}
+	}
+
+	/* Writes a snapshot of the whole state and starts a new log segment */
 	public static void serialize(AnnouncementServer announcementServer, String serverId) {
-		FileOutputStream fos = null;
-		FileOutputStream fosb = null;
-		ObjectOutputStream oos = null;
-		ObjectOutputStream oosb = null;
-		
 		try {
-			fos = new FileOutputStream(new File(FILEPATH+serverId+"State.ser"));
-			oos = new ObjectOutputStream(fos);
-			oos.writeObject(announcementServer);
-			oos.close();
-			fos.close();
-			fosb = new FileOutputStream(new File(FILEPATH+serverId+"StateBackup.ser"));
-			oosb = new ObjectOutputStream(fosb);
-			oosb.writeObject(announcementServer);
-			oosb.close();
-			fosb.close();
-		} catch(Exception i) {
-			i.printStackTrace();
-		}
-	}
-}
\ No newline at end of file
+			snapshot(announcementServer, serverId, getLog(announcementServer, serverId));
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/* Commits pending records and releases the log of a server that is shutting down */
+	public static void close(String serverId) {
+		GroupCommit log;
+
+		synchronized (PersistenceUtils.class) {
+			log = logs.remove(String.valueOf(serverId));
+		}
+
+		if (log == null) return;
+
+		synchronized (monitor(serverId)) { // after the snapshot being written
+			try {
+				log.close();
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/* Deletes the snapshots and log segments of a server, whose log must be closed */
+	public static void delete(String serverId) throws IOException {
+		for (String name : new String[] { "State.ser", "StateBackup.ser", "State.ser.tmp", "Log.wal" }) {
+			Files.deleteIfExists(file(serverId, name).toPath());
+		}
+		for (int segment : segments(serverId)) {
+			Files.deleteIfExists(segment(serverId, segment).toPath());
+		}
+	}
+
+	/* Keeps the files of a server in a directory of its own, instead of FILEPATH */
+	public static void setDirectory(String serverId, File directory) {
+		directories.put(String.valueOf(serverId), directory);
+	}
+
+	public static synchronized CommitStats getStats(String serverId) {
+		GroupCommit log = logs.get(String.valueOf(serverId));
+		return log == null ? new CommitStats() : log.getStats();
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* Opened by recover or start, never implicitly: the files on disk may still have to be recovered */
+	private static synchronized GroupCommit getLog(AnnouncementServer announcementServer, String serverId) {
+		GroupCommit log = logs.get(String.valueOf(serverId));
+
+		if (log == null) throw new RuntimeException(String.format("No log opened for %s", serverId));
+
+		return log;
+	}
+
+	private static synchronized GroupCommit open(AnnouncementServer announcementServer, String serverId, long lastLsn) throws IOException {
+		String key = String.valueOf(serverId);
+		GroupCommit log = new GroupCommit(serverId, new OperationLog(file(serverId, "Log.wal")), lastLsn, () -> {
+			GroupCommit current = logs.get(key);
+			try {
+				if (current != null && current.segmentSize() >= SNAPSHOT_INTERVAL
+						&& current.segmentLength() >= file(serverId, "State.ser").length() / 2 && snapshotting.add(key)) {
+					snapshots.execute(() -> {
+						try {
+							snapshot(announcementServer, serverId, current);
+						} catch(IOException e) {
+							e.printStackTrace();
+						} finally {
+							snapshotting.remove(key);
+						}
+					});
+				}
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+		});
+		logs.put(String.valueOf(serverId), log);
+		return log;
+	}
+
+	private static void snapshot(AnnouncementServer announcementServer, String serverId, GroupCommit log) throws IOException {
+		synchronized (monitor(serverId)) {
+			if (logs.get(String.valueOf(serverId)) != log) return; // closed meanwhile
+
+			AnnouncementServer state;
+			long lsn;
+			List<Integer> older = segments(serverId);
+			int segment = older.isEmpty() ? 1 : older.get(older.size() - 1) + 1;
+
+			// Records after lsn go to the new segment or are replayed from the previous ones
+			announcementServer.snapshotLock().lock();
+			try {
+				lsn = log.getLastLsn();
+				state = announcementServer.copy();
+				log.rotate(segment(serverId, segment));
+			} finally {
+				announcementServer.snapshotLock().unlock();
+			}
+
+			File current = file(serverId, "State.ser");
+			File tmp = file(serverId, "State.ser.tmp");
+
+			try (FileOutputStream fos = new FileOutputStream(tmp);
+					ObjectOutputStream oos = new ObjectOutputStream(fos)) {
+				oos.writeLong(lsn);
+				oos.writeObject(state);
+				oos.flush();
+				fos.getFD().sync();
+			}
+
+			boolean backedUp = current.exists();
+			if (backedUp) {
+				Files.move(current.toPath(), file(serverId, "StateBackup.ser").toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+			Files.move(tmp.toPath(), current.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+			// The backup is now the previous snapshot, whose records all came before this segment
+			if (backedUp) {
+				for (int old : older) {
+					Files.deleteIfExists(segment(serverId, old).toPath());
+				}
+			}
+		}
+	}
+
+	/* Numbers of the rotated log segments of a server, oldest first */
+	private static List<Integer> segments(String serverId) {
+		String prefix = serverId + SEGMENT;
+		File[] files = file(serverId, SEGMENT).getAbsoluteFile().getParentFile().listFiles();
+		List<Integer> segments = new ArrayList<>();
+
+		if (files == null) return segments;
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.startsWith(prefix) || !name.endsWith(".wal")) continue;
+			try {
+				segments.add(Integer.valueOf(name.substring(prefix.length(), name.length() - ".wal".length())));
+			} catch (NumberFormatException e) {
+				// not a segment
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private static File segment(String serverId, int segment) {
+		return file(serverId, SEGMENT + segment + ".wal");
+	}
+
+	private static Object monitor(String serverId) {
+		return monitors.computeIfAbsent(String.valueOf(serverId), key -> new Object());
+	}
+
+	private static File file(String serverId, String name) {
+		File directory = directories.get(String.valueOf(serverId));
+		return (directory == null) ? new File(FILEPATH + serverId + name) : new File(directory, serverId + name);
+	}
+}
@@ -52,6 +52,30 @@ public class Announcement implements Serializable, Comparable {
 		this.type = type;
 	}
 	
+	public String getAuthor() {
+		return author;
+	}
+	
+	public String getContent() {
+		return content;
+	}
+	
+	public Integer getId() {
+		return id;
+	}
+	
+	public List<String> getReferences() {
+		return references;
+	}
+	
+	public String getSignature() {
+		return signature;
+	}
+	
+	public String getType() {
+		return type;
+	}
+	
 	@Override
 	public String toString() {
 		return String.format("auth: %s, id: %s, type: %s\n  text: \"%s\"\n  references: %s",
@@ -63,10 +87,10 @@ public class Announcement implements Serializable, Comparable {
 	public int compareTo(Object o) {
 		Announcement other = (Announcement) o;
 
-		if (this.id == other.id && this.author.equals(other.author)) return 0;
-
-		if (this.id > other.id) return 1;
+		// By wts, ties between authors broken in reverse name order
+		int res = this.id.compareTo(other.id);
+		if (res != 0) return res;
 
-		return (this.author.compareTo(other.author) < 0) ? 1 : -1;
+		return other.author.compareTo(this.author);
 	}
 }
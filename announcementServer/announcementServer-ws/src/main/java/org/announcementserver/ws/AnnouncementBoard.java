@@ -0,0 +1,294 @@
+package org.announcementserver.ws;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.announcementserver.utils.AnnouncementTools;
+
+/*
+* Board of announcements kept in Announcement.compareTo order
+*
+* Announcements arrive almost always in order, so they are appended to the
+* end of an array in amortized O(1). A late arrival is placed by binary
+* search in a copy of the array. Published slots are never written again,
+* so readers take a consistent view of the board without locking.
+*
+* The board also keeps a hash chain over its announcements: digest i is
+* the hash of digest i - 1 and announcement i (see AnnouncementTools.link),
+* digest 0 is all zeros. A range of the board is then authenticated by the
+* digests before and after it, without hashing the rest of the board.
+*/
+
+public class AnnouncementBoard implements Serializable {
+
+	private static final long serialVersionUID = 2795466417312958373L;
+	private static final int INITIAL_CAPACITY = 16;
+
+	/* Immutable view of a range of the board and the digests around it */
+	public static class Snapshot extends AbstractList<Announcement> implements RandomAccess {
+		final Announcement[] items;
+		final byte[][] chain;
+		final int from;
+		final int to;
+
+		Snapshot(Announcement[] items, byte[][] chain, int from, int to) {
+			this.items = items;
+			this.chain = chain;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Announcement get(int index) {
+			if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException("Index: " + index);
+			return items[from + index];
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+
+		/* Announcements [start, end) of this snapshot */
+		public Snapshot range(int start, int end) {
+			if (start < 0 || end > to - from || start > end) throw new IndexOutOfBoundsException("Range: " + start + ", " + end);
+			return new Snapshot(items, chain, from + start, from + end);
+		}
+
+		/* Announcements of the board from position `index` to the end of this snapshot */
+		public Snapshot from(int index) {
+			if (index < 0 || index > to) throw new IndexOutOfBoundsException("Index: " + index);
+			return new Snapshot(items, chain, index, to);
+		}
+
+		/* Position on the board after the last announcement of this snapshot */
+		public int end() {
+			return to;
+		}
+
+		/* Announcements of this snapshot with a wts greater than `wts` */
+		public Snapshot since(int wts) {
+			int low = from;
+			int high = to;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (items[middle].id <= wts) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return new Snapshot(items, chain, low, to);
+		}
+
+		/* Digest of the board up to the first announcement of this snapshot */
+		public byte[] prefix() {
+			return chain[from].clone();
+		}
+
+		/* Digest of the board up to the last announcement of this snapshot */
+		public byte[] head() {
+			return chain[to].clone();
+		}
+	}
+
+	private transient volatile Snapshot view;
+
+	public AnnouncementBoard() {
+		this.view = empty();
+	}
+
+	/* Writers are serialized, readers never wait for them */
+	public synchronized void add(Announcement announcement) {
+		view = insert(view, announcement);
+	}
+
+	/* Readers see either none or all of the announcements */
+	public synchronized void addAll(List<Announcement> announcements) {
+		if (announcements.isEmpty()) return;
+
+		List<Announcement> sorted = new ArrayList<>(announcements);
+		sorted.sort(null);
+
+		Snapshot next = view;
+		if (next.to > 0 && next.items[next.to - 1].compareTo(sorted.get(0)) > 0) {
+			next = merge(next, sorted); // late ones, placed in a single pass
+		} else {
+			for (Announcement announcement : sorted) {
+				next = insert(next, announcement);
+			}
+		}
+		view = next;
+	}
+
+	/*
+	* Appends announcements, in order, to a board whose chain ends at `prefix`,
+	* if their chain ends at `head`. Returns false if the board ends elsewhere.
+	*/
+	public boolean append(List<Announcement> announcements, byte[] prefix, byte[] head) {
+		return append(announcements, prefix, head, () -> {});
+	}
+
+	/* As above, running `accepted` once they are known to fit and before readers see them */
+	public synchronized boolean append(List<Announcement> announcements, byte[] prefix, byte[] head, Runnable accepted) {
+		Snapshot next = view;
+		if (!Arrays.equals(next.chain[next.to], prefix)) return false;
+
+		for (Announcement announcement : announcements) {
+			if (next.to > 0 && next.items[next.to - 1].compareTo(announcement) > 0)
+				throw new RuntimeException("Appended announcements out of order");
+			next = insert(next, announcement); // into slots readers do not see yet
+		}
+
+		if (!Arrays.equals(next.chain[next.to], head))
+			throw new RuntimeException("Appended announcements do not match the head");
+		accepted.run();
+		view = next;
+		return true;
+	}
+
+	/* Board with the current announcements, later ones are not shared */
+	public AnnouncementBoard copy() {
+		AnnouncementBoard res = new AnnouncementBoard();
+		res.view = view;
+		return res;
+	}
+
+	public synchronized void clear() {
+		view = empty();
+	}
+
+	/* Consistent, unmodifiable view of the whole board */
+	public Snapshot snapshot() {
+		return view;
+	}
+
+	public int size() {
+		return view.to;
+	}
+
+	/* Whether an announcement of the same author and wts is on the board */
+	public boolean contains(Announcement announcement) {
+		Snapshot current = view;
+		int index = insertionPoint(current.items, current.to, announcement);
+		return index > 0 && current.items[index - 1].compareTo(announcement) == 0;
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* Board after the announcement; the slots `current` shows are never written */
+	private static Snapshot insert(Snapshot current, Announcement announcement) {
+		Announcement[] items = current.items;
+		byte[][] chain = current.chain;
+		int size = current.to;
+
+		if (size == 0 || items[size - 1].compareTo(announcement) <= 0) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+				chain = Arrays.copyOf(chain, size * 2 + 1);
+			}
+			items[size] = announcement;
+			chain[size + 1] = AnnouncementTools.link(chain[size], announcement);
+		} else {
+			int index = insertionPoint(items, size, announcement);
+			Announcement[] copy = new Announcement[Math.max(items.length, size + 1)];
+			System.arraycopy(items, 0, copy, 0, index);
+			copy[index] = announcement;
+			System.arraycopy(items, index, copy, index + 1, size - index);
+			items = copy;
+
+			// Every digest after the late announcement changes
+			byte[][] chainCopy = new byte[items.length + 1][];
+			System.arraycopy(chain, 0, chainCopy, 0, index + 1);
+			for (int i = index; i <= size; i++) {
+				chainCopy[i + 1] = AnnouncementTools.link(chainCopy[i], items[i]);
+			}
+			chain = chainCopy;
+		}
+
+		return new Snapshot(items, chain, 0, size + 1);
+	}
+
+	/* Board with the sorted announcements merged in; digests change from the first of them on */
+	private static Snapshot merge(Snapshot current, List<Announcement> sorted) {
+		Announcement[] items = current.items;
+		int size = current.to;
+		int first = insertionPoint(items, size, sorted.get(0));
+		int total = size + sorted.size();
+
+		Announcement[] merged = new Announcement[Math.max(items.length, total)];
+		System.arraycopy(items, 0, merged, 0, first);
+
+		int i = first;
+		int j = 0;
+		for (int k = first; k < total; k++) {
+			// As in insert, a new announcement goes after the equal ones already there
+			if (j == sorted.size() || (i < size && items[i].compareTo(sorted.get(j)) <= 0)) {
+				merged[k] = items[i++];
+			} else {
+				merged[k] = sorted.get(j++);
+			}
+		}
+
+		byte[][] chain = new byte[merged.length + 1][];
+		System.arraycopy(current.chain, 0, chain, 0, first + 1);
+		for (int k = first; k < total; k++) {
+			chain[k + 1] = AnnouncementTools.link(chain[k], merged[k]);
+		}
+
+		return new Snapshot(merged, chain, 0, total);
+	}
+
+	private static Snapshot empty() {
+		byte[][] chain = new byte[INITIAL_CAPACITY + 1][];
+		chain[0] = AnnouncementTools.EMPTY_DIGEST;
+		return new Snapshot(new Announcement[INITIAL_CAPACITY], chain, 0, 0);
+	}
+
+	/* First index holding an announcement greater than the given one */
+	private static int insertionPoint(Announcement[] items, int size, Announcement announcement) {
+		int low = 0;
+		int high = size;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (items[mid].compareTo(announcement) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		Snapshot current = view;
+		out.defaultWriteObject();
+		out.writeInt(current.to);
+		for (int i = 0; i < current.to; i++) {
+			out.writeObject(current.items[i]);
+		}
+	}
+
+	/* The chain is not stored, it is rebuilt from the announcements */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int size = in.readInt();
+		Announcement[] items = new Announcement[Math.max(INITIAL_CAPACITY, size)];
+		byte[][] chain = new byte[items.length + 1][];
+		chain[0] = AnnouncementTools.EMPTY_DIGEST;
+		for (int i = 0; i < size; i++) {
+			items[i] = (Announcement) in.readObject();
+			chain[i + 1] = AnnouncementTools.link(chain[i], items[i]);
+		}
+		view = new Snapshot(items, chain, 0, size);
+	}
+}
@@ -1,51 +1,85 @@
 package org.announcementserver.ws;
 
+import org.announcementserver.common.Constants;
 import org.announcementserver.utils.*;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+* Locking: each client has its own lock, guarding writes to its personal
+* board and its sns/wtss/expectedWts entries. Client locks are always taken
+* in name order. Boards are read without locking (see AnnouncementBoard).
+* Every operation also holds the shared side of stateLock, whose exclusive
+* side is only taken to snapshot the whole state.
+*
+* Durability: a post's log record is submitted before the post is on its
+* board, and a read takes its snapshot before submitting its own record.
+* Records are durable in submission order, so once a read's record is,
+* so is every post the read returns.
+*/
 
 public class AnnouncementServer implements Serializable {
-	
+
 	private static final long serialVersionUID = 8208757326477388685L;
-	private ArrayList<Announcement> generalBoard;
-	private HashMap<String, ArrayList<Announcement>> personalBoards;
+	public static final int MAX_BATCH = Integer.getInteger("ws.batch.max", 1000);
+
+	private AnnouncementBoard generalBoard;
+	private ConcurrentHashMap<String, AnnouncementBoard> personalBoards;
 	private static AnnouncementServer instance = null; //Singleton
 	private List<String> clients;
 	private String id;
-	
-	public HashMap<String, Integer> sns; // sequence numbers
-	public HashMap<String, Integer> wtss; // clients wts's; personal boards
-	public HashMap<String, Integer> expectedWts; // (N,N) register, expected wts from a specific client
-	
-	public static AnnouncementServer getInstance() {
+
+	public ConcurrentHashMap<String, Integer> sns; // sequence numbers
+	public ConcurrentHashMap<String, Integer> wtss; // clients wts's; personal boards
+	public ConcurrentHashMap<String, Integer> expectedWts; // (N,N) register, expected wts from a specific client
+
+	private transient ReentrantReadWriteLock stateLock;
+	private transient Map<String, ReentrantLock> clientLocks;
+
+	public static synchronized AnnouncementServer getInstance() {
 		if (instance == null) {
 			instance = new AnnouncementServer();
 		}
 		return instance;
 	}
-	
-	public static void setInstance(AnnouncementServer announcementServer) {
+
+	public static synchronized void setInstance(AnnouncementServer announcementServer) {
 		instance = announcementServer;
 	}
-	
+
+	/* A server besides the singleton, for testing purposes */
+	public static AnnouncementServer create(String serverId) {
+		AnnouncementServer server = new AnnouncementServer();
+		server.setId(serverId);
+		return server;
+	}
+
 	public void setId(String serverId) {
 		this.id = serverId;
 	}
-	
+
 	private AnnouncementServer () {
-		this.generalBoard = new ArrayList<>();
-		this.personalBoards = new HashMap<>();
-		this.sns = new HashMap<>();
-		this.wtss = new HashMap<>();
+		this.generalBoard = new AnnouncementBoard();
+		this.personalBoards = new ConcurrentHashMap<>();
+		this.sns = new ConcurrentHashMap<>();
+		this.wtss = new ConcurrentHashMap<>();
 		this.clients = new ArrayList<>();
-		this.expectedWts = new HashMap<>();
-		
+		this.expectedWts = new ConcurrentHashMap<>();
+		initLocks();
+
 		try {
 			Scanner reader = new Scanner(new File("src/main/resources/clients.txt"));
 			while (reader.hasNextLine()) {
@@ -57,193 +91,562 @@ public class AnnouncementServer implements Serializable {
 			e.printStackTrace();
 		}
 	}
-	
+
+	private AnnouncementServer(AnnouncementServer state) {
+		this.generalBoard = state.generalBoard.copy();
+		this.personalBoards = new ConcurrentHashMap<>();
+		state.personalBoards.forEach((client, board) -> personalBoards.put(client, board.copy()));
+		this.sns = new ConcurrentHashMap<>(state.sns);
+		this.wtss = new ConcurrentHashMap<>(state.wtss);
+		this.clients = new ArrayList<>(state.clients);
+		this.expectedWts = new ConcurrentHashMap<>(state.expectedWts);
+		this.id = state.id;
+		initLocks();
+	}
+
 	/* Register */
-	public synchronized List<Integer> register(String client) {
-		if (!clients.contains(client)) 
+	public List<Integer> register(String client) {
+		CompletableFuture<Void> commit = null;
+		List<Integer> ret;
+
+		if (!clients.contains(client))
 			throw new RuntimeException("Unknown user registering");
 
-		if (!personalBoards.containsKey(client)) {
-			personalBoards.put(client, new ArrayList<>());
-			sns.put(client, 0);
-			wtss.put(client,0);
-			expectedWts.put(client, 0);
-			PersistenceUtils.serialize(instance, id);
+		lock(client);
+		try {
+			if (!personalBoards.containsKey(client)) {
+				commit = PersistenceUtils.log(this, id, new LogRecord().register(client));
+				addClient(client);
+			}
+
+			ret = new ArrayList<>();
+			ret.add(sns.get(client));
+			ret.add(wtss.get(client));
+		} finally {
+			unlock(client);
 		}
 
-		List<Integer> ret = new ArrayList<>();
-		ret.add(sns.get(client));
-		ret.add(wtss.get(client));
-		
+		PersistenceUtils.await(commit);
+
 		return ret;
 	}
-	
+
 	/* Post */
-	public synchronized List<Integer> post(Announcement announcement, Integer seqNumber) {
-		if (sns.get(announcement.author) != seqNumber) 
+	public List<Integer> post(Announcement announcement, Integer seqNumber) {
+		CompletableFuture<Void> commit = null;
+		List<Integer> ret;
+
+		if (!seqNumber.equals(sns.get(announcement.author)))
 			throw new RuntimeException("Sequence numbers don't match");
 
-		if (!personalBoards.containsKey(announcement.author)) 
-			throw new RuntimeException("The user who wants to post doesn't exist");
-			
-		if (announcement.content.length() > 255)
-			throw new RuntimeException("The message is too long");
+		checkPost(announcement);
 
-		for (String reference : announcement.references) {			
-			String[] parts = reference.split("a|c"); // [<p|g>, author_id, ctr_id]
-			String owner = String.format("client%s", parts[1]);
-			
-			if (!personalBoards.containsKey(owner)) {
-				throw new RuntimeException("Referred user doesn't exist");
-			}
-			
-			if (parts[0].equals("p")) {								
-				if (personalBoards.get(owner).size() < Integer.parseInt(parts[2])) {
-					throw new RuntimeException("The referred announcement doesn’t exist");
-				}
-				
-			} else if (parts[0].equals("g")) {
-				if (generalBoard.size() < Integer.parseInt(parts[2])) {
-					throw new RuntimeException("The referred announcement doesn’t exist");
-				}
-			} else {
-				throw new RuntimeException("The type of post in reference is incorrect");
+		lock(announcement.author);
+		try {
+			if (!seqNumber.equals(sns.get(announcement.author)))
+				throw new RuntimeException("Sequence numbers don't match");
+
+			if (wtss.get(announcement.author) < announcement.id) {
+				commit = PersistenceUtils.log(this, id, new LogRecord()
+					.personal(announcement)
+					.seqNumber(announcement.author, seqNumber + 1)
+					.wts(announcement.author, announcement.id));
+				putPersonal(announcement.author, announcement);
+				sns.put(announcement.author, seqNumber + 1);
+				wtss.put(announcement.author, announcement.id);
 			}
-		}
 
-		if (wtss.get(announcement.author) < announcement.id) {
-			putPersonal(announcement.author, announcement);
-			sns.put(announcement.author, seqNumber + 1);
-			wtss.put(announcement.author, announcement.id);
-			PersistenceUtils.serialize(instance, id);
+			ret = new ArrayList<>();
+			ret.add(seqNumber);
+			ret.add(announcement.id);
+		} finally {
+			unlock(announcement.author);
 		}
 
-		List<Integer> ret = new ArrayList<>();
-		ret.add(seqNumber);
-		ret.add(announcement.id);
+		PersistenceUtils.await(commit);
 
 		return ret;
 	}
-	
+
 	/* Post General */
-	public synchronized Integer postGeneral(Announcement announcement, Integer seqNumber) {
-		if (sns.get(announcement.author) != seqNumber)
+	public Integer postGeneral(Announcement announcement, Integer seqNumber) {
+		CompletableFuture<Void> commit = null;
+
+		if (!seqNumber.equals(sns.get(announcement.author)))
 			throw new RuntimeException("Non matching sequence numbers");
 
-		if (!personalBoards.containsKey(announcement.author)) 
-			throw new RuntimeException("The user who wants to post doesn't exist");
-		
-		if (announcement.content.length() > 255)
-			throw new RuntimeException("The message is too long");
-		
-		for (String reference : announcement.references) {
-			String[] parts = reference.split("a|c"); // [<p|g>, author_id, ctr_id]
-			String owner = String.format("client%s", parts[1]);
-			
-			if (!personalBoards.containsKey(owner)) {
-				throw new RuntimeException("Referred user doesn't exist");
+		checkPost(announcement);
+
+		lock(announcement.author);
+		try {
+			if (!seqNumber.equals(sns.get(announcement.author)))
+				throw new RuntimeException("Non matching sequence numbers");
+
+			if (announcement.id >= expectedWts.get(announcement.author)) {
+				commit = PersistenceUtils.log(this, id, new LogRecord()
+					.general(announcement)
+					.seqNumber(announcement.author, seqNumber + 1));
+				putGeneral(announcement);
+				sns.put(announcement.author, seqNumber + 1);
 			}
-			
-			if (parts[0].equals("p")) {								
-				if (personalBoards.get(owner).size() < Integer.parseInt(parts[2])) {
-					throw new RuntimeException("The referred announcement doesn’t exist");
-				}
-				
-			} else if (parts[0].equals("g")) {
-				if (generalBoard.size() < Integer.parseInt(parts[2])) {
-					throw new RuntimeException("The referred announcement doesn’t exist");
-				}
-			} else {
-				throw new RuntimeException("The type of post in reference is incorrect");
+		} finally {
+			unlock(announcement.author);
+		}
+
+		PersistenceUtils.await(commit);
+
+		return seqNumber;
+	}
+
+	/*
+	* Post Batch: the posts are checked in order, each one seeing the ones
+	* before it, and then all added under one sequence number and one log
+	* record, or none of them is. Posts already on the board (a retry) are
+	* skipped, as in post.
+	*/
+	public List<Integer> postBatch(String author, List<Announcement> announcements, Integer seqNumber) {
+		CompletableFuture<Void> commit = null;
+		List<Integer> ret;
+
+		if (!seqNumber.equals(sns.get(author)))
+			throw new RuntimeException("Sequence numbers don't match");
+
+		checkBatch(author, announcements, true);
+
+		lock(author);
+		try {
+			if (!seqNumber.equals(sns.get(author)))
+				throw new RuntimeException("Sequence numbers don't match");
+
+			Integer wts = wtss.get(author);
+			List<Announcement> added = new ArrayList<>();
+			for (Announcement announcement : announcements) {
+				if (wts < announcement.id) added.add(announcement);
 			}
+
+			if (!added.isEmpty()) {
+				Integer last = added.get(added.size() - 1).id;
+				commit = PersistenceUtils.log(this, id, new LogRecord()
+					.personal(added)
+					.seqNumber(author, seqNumber + 1)
+					.wts(author, last));
+				personalBoards.get(author).addAll(added);
+				sns.put(author, seqNumber + 1);
+				wtss.put(author, last);
+			}
+
+			ret = new ArrayList<>();
+			ret.add(seqNumber);
+			ret.add(announcements.get(announcements.size() - 1).id);
+		} finally {
+			unlock(author);
 		}
-		
-		if (announcement.id >= expectedWts.get(announcement.author)) {
-			putGeneral(announcement);
-			sns.put(announcement.author, seqNumber + 1);
-			PersistenceUtils.serialize(instance, id);
+
+		PersistenceUtils.await(commit);
+
+		return ret;
+	}
+
+	/* Post General Batch: all or none of the posts are added, see postBatch */
+	public Integer postGeneralBatch(String author, List<Announcement> announcements, Integer seqNumber) {
+		CompletableFuture<Void> commit = null;
+
+		if (!seqNumber.equals(sns.get(author)))
+			throw new RuntimeException("Non matching sequence numbers");
+
+		checkBatch(author, announcements, false);
+
+		lock(author);
+		try {
+			if (!seqNumber.equals(sns.get(author)))
+				throw new RuntimeException("Non matching sequence numbers");
+
+			// Ids only grow within a batch, so the first one decides
+			if (announcements.get(0).id >= expectedWts.get(author)) {
+				commit = PersistenceUtils.log(this, id, new LogRecord()
+					.general(announcements)
+					.seqNumber(author, seqNumber + 1));
+				generalBoard.addAll(announcements);
+				sns.put(author, seqNumber + 1);
+			}
+		} finally {
+			unlock(author);
 		}
-		
+
+		PersistenceUtils.await(commit);
+
 		return seqNumber;
 	}
-	
+
 	/* Read */
-	public synchronized List<Announcement> read(String reader, String owner, Integer number, Integer sn) {
+	public AnnouncementBoard.Snapshot read(String reader, String owner, Integer number, Integer sn) {
+		return read(reader, owner, number, sn, 0);
+	}
+
+	/* Only the posts after wts `since`, the snapshot's prefix links them to the ones before */
+	public AnnouncementBoard.Snapshot read(String reader, String owner, Integer number, Integer sn, Integer since) {
+		CompletableFuture<Void> commit = null;
+		AnnouncementBoard.Snapshot ret;
+
 		if (!personalBoards.containsKey(owner))
-			return new ArrayList<>();
+			return new AnnouncementBoard().snapshot();
 
-		List<Announcement> board = personalBoards.get(owner);
+		lock(reader);
+		try {
+			if (!sn.equals(sns.get(reader))) throw new RuntimeException("Sequence numbers not in synch");
 
-		if (sn != sns.get(reader)) throw new RuntimeException("Sequence numbers not in synch");
+			ret = personalBoards.get(owner).snapshot().since(since);
 
-		sns.put(reader, sn + 1);
-		PersistenceUtils.serialize(instance, id);
+			sns.put(reader, sn + 1);
+			commit = PersistenceUtils.log(this, id, new LogRecord().seqNumber(reader, sn + 1));
+		} finally {
+			unlock(reader);
+		}
+
+		PersistenceUtils.await(commit);
 
-		return board.subList(0, board.size());
+		return ret;
 	}
 
-	
+
 	/* Read General */
-	public synchronized List<Announcement> readGeneral(String reader, Integer number, Integer sn) {		
-		if (sn != sns.get(reader)) 
-			throw new RuntimeException("Sequence numbers not in synch");
+	public AnnouncementBoard.Snapshot readGeneral(String reader, Integer number, Integer sn) {
+		return readGeneral(reader, number, sn, 0);
+	}
 
-		Integer end = generalBoard.size();
-		Integer start = 
-			(number > generalBoard.size() || number == 0) ? 0 : end - number;
+	/* The last `number` posts, or, if `since` is not 0, every post after wts `since` */
+	public AnnouncementBoard.Snapshot readGeneral(String reader, Integer number, Integer sn, Integer since) {
+		CompletableFuture<Void> commit = null;
+		AnnouncementBoard.Snapshot ret;
 
-		Integer wts = (end == 0) ? 1 : generalBoard.get(end - 1).id + 1;
+		lock(reader);
+		try {
+			if (!sn.equals(sns.get(reader)))
+				throw new RuntimeException("Sequence numbers not in synch");
 
-		sns.put(reader, sn + 1);
-		expectedWts.put(reader, wts);
-		PersistenceUtils.serialize(instance, id);
-		
-		return generalBoard.subList(start, end);
-	}
-	
-	/* Write Back */
-	public synchronized Integer writeBack(String sender, List<AnnouncementMessage> announcements, Integer seqNumber) {
-		if (sns.get(sender) != seqNumber) {
-			throw new RuntimeException("Wrong sequence number");
+			AnnouncementBoard.Snapshot board = generalBoard.snapshot();
+			Integer end = board.size();
+			Integer start = (number > end || number == 0) ? 0 : end - number;
+
+			Integer wts = (end == 0) ? 1 : board.get(end - 1).id + 1;
+			ret = (since > 0) ? board.since(since) : board.range(start, end);
+
+			sns.put(reader, sn + 1);
+			expectedWts.put(reader, wts);
+			commit = PersistenceUtils.log(this, id, new LogRecord()
+				.seqNumber(reader, sn + 1)
+				.expectedWts(reader, wts));
+		} finally {
+			unlock(reader);
 		}
 
-		// Convert all to Announcements
-		List<Announcement> announcementsList = new ArrayList<>();
+		PersistenceUtils.await(commit);
+
+		return ret;
+	}
+
+	/*
+	* Write Back: posts the server already has are skipped, the others must
+	* follow its last post, or the write back is refused and changes nothing
+	*/
+	public Integer writeBack(String sender, List<AnnouncementMessage> announcements, Integer seqNumber) {
+		CompletableFuture<Void> commit = null;
 		String writer = announcements.get(0).getWriter();
-		int wts = wtss.get(writer);
 
-		for (AnnouncementMessage am : announcements) {
-			if (!writer.equals(am.writer)) 
-				throw new RuntimeException("Writer in one of the writeback posts not okay");
-			if (wts < am.wts) {
+		lock(sender, writer);
+		try {
+			if (!seqNumber.equals(sns.get(sender))) {
+				throw new RuntimeException("Wrong sequence number");
+			}
+
+			// Convert all to Announcements
+			List<Announcement> announcementsList = new ArrayList<>();
+			int wts = wtss.get(writer);
+
+			for (AnnouncementMessage am : announcements) {
+				if (!writer.equals(am.writer))
+					throw new RuntimeException("Writer in one of the writeback posts not okay");
+				if (am.wts <= wts) continue;
+				// Of no use to a server missing the posts before them, the
+				// client must not count it as holding them
+				if (am.wts != wts + 1)
+					throw new RuntimeException(Constants.WRITEBACK_GAP);
+
 				wts++;
 				announcementsList.add(AnnouncementTools.transformAnnouncement(am));
 			}
+
+			commit = PersistenceUtils.log(this, id, new LogRecord()
+				.personal(announcementsList)
+				.wts(writer, wts)
+				.seqNumber(sender, seqNumber + 1));
+			personalBoards.get(writer).addAll(announcementsList);
+			wtss.put(writer, wts);
+			sns.put(sender, seqNumber + 1);
+		} finally {
+			unlock(sender, writer);
 		}
 
-		personalBoards.get(writer).addAll(announcementsList);
-		wtss.put(writer, wts);
-		sns.put(sender, seqNumber + 1);
-		PersistenceUtils.serialize(instance, id);
-		
+		PersistenceUtils.await(commit);
+
 		return seqNumber;
 	}
-	
+
+	// --- State transfer -------------
+
+	/* Clients registered on this server, in name order */
+	public List<String> registered() {
+		List<String> res = new ArrayList<>(personalBoards.keySet());
+		res.sort(null);
+		return res;
+	}
+
+	/* Board of `owner`, the general one for null; null if the owner is not registered */
+	public AnnouncementBoard.Snapshot board(String owner) {
+		if (owner == null) return generalBoard.snapshot();
+
+		AnnouncementBoard board = personalBoards.get(owner);
+		return (board == null) ? null : board.snapshot();
+	}
+
+	/*
+	* A client the peers know: registered here with their sequence number if
+	* it was not, and its expected wts raised to theirs
+	*/
+	public void transferClient(String client, Integer sn, Integer wts) {
+		CompletableFuture<Void> commit = null;
+
+		if (!clients.contains(client))
+			throw new RuntimeException("Unknown user transferred");
+
+		lock(client);
+		try {
+			LogRecord record = new LogRecord();
+
+			if (!personalBoards.containsKey(client)) {
+				addClient(client);
+				sns.put(client, sn);
+				record.register(client).seqNumber(client, sn);
+			}
+			if (wts > expectedWts.get(client)) {
+				expectedWts.put(client, wts);
+				record.expectedWts(client, wts);
+			}
+
+			if (!record.isEmpty()) commit = PersistenceUtils.log(this, id, record);
+		} finally {
+			unlock(client);
+		}
+
+		PersistenceUtils.await(commit);
+	}
+
+	/* Adds the posts that are not on the board of `owner` (general for null) yet, returns how many */
+	public int transferPosts(String owner, List<Announcement> announcements) {
+		CompletableFuture<Void> commit = null;
+		List<Announcement> added = new ArrayList<>();
+		String[] locked = transferLocks(owner, announcements);
+
+		lock(locked);
+		try {
+			AnnouncementBoard board = transferBoard(owner, announcements);
+
+			for (Announcement announcement : announcements) {
+				if (!board.contains(announcement)) added.add(announcement);
+			}
+
+			if (!added.isEmpty()) {
+				commit = logTransfer(owner, added);
+				board.addAll(added);
+			}
+		} finally {
+			unlock(locked);
+		}
+
+		PersistenceUtils.await(commit);
+
+		return added.size();
+	}
+
+	/*
+	* Appends posts to the board of `owner` (general for null) if its chain ends
+	* at `prefix`, failing if theirs does not end at `head`; false if the board
+	* ends elsewhere
+	*/
+	public boolean transferChunk(String owner, List<Announcement> announcements, byte[] prefix, byte[] head) {
+		List<CompletableFuture<Void>> commit = new ArrayList<>(1);
+		String[] locked = transferLocks(owner, announcements);
+
+		lock(locked);
+		try {
+			AnnouncementBoard board = transferBoard(owner, announcements);
+			Runnable logged = () -> commit.add(logTransfer(owner, announcements));
+			if (!board.append(announcements, prefix, head, logged)) return false;
+		} finally {
+			unlock(locked);
+		}
+
+		PersistenceUtils.await(commit.get(0));
+
+		return true;
+	}
+
+	/* Held exclusively while the whole state is copied */
+	public Lock snapshotLock() {
+		return stateLock.writeLock();
+	}
+
+	/* Held while the client's board and counters are written */
+	public Lock clientLock(String client) {
+		return clientLocks.computeIfAbsent(client, c -> new ReentrantLock());
+	}
+
+	/* Copy of the whole state, to be taken under the snapshotLock; the boards' contents are shared, not copied */
+	public AnnouncementServer copy() {
+		return new AnnouncementServer(this);
+	}
+
+	/* For recovery purposes */
+	public void addClient(String client) {
+		personalBoards.put(client, new AnnouncementBoard());
+		sns.put(client, 0);
+		wtss.put(client, 0);
+		expectedWts.put(client, 0);
+	}
+
 	/* For testing purposes */
 	public void putGeneral(Announcement ann) {
 		generalBoard.add(ann);
-		generalBoard.sort(null);
 	}
-	
+
 	public void putPersonal(String author, Announcement ann) {
 		personalBoards.get(author).add(ann);
-		personalBoards.get(author).sort(null);
 	}
-	
+
 	public void clean() {
-		personalBoards.clear();
-		generalBoard.clear();
-		sns.clear();
+		stateLock.writeLock().lock();
+		try {
+			personalBoards.clear();
+			generalBoard.clear();
+			sns.clear();
+		} finally {
+			stateLock.writeLock().unlock();
+		}
+	}
+
+	// --- Auxiliary functions -------------
+
+	private void checkPost(Announcement announcement) {
+		checkPost(announcement, 0, 0);
 	}
-	
+
+	/*
+	* Checks that do not depend on the author's state; referred posts are never removed.
+	* `personal` and `general` posts of the same batch come before this one on the
+	* author's board and on the general board.
+	*/
+	private void checkPost(Announcement announcement, int personal, int general) {
+		if (!personalBoards.containsKey(announcement.author))
+			throw new RuntimeException("The user who wants to post doesn't exist");
+
+		if (announcement.content.length() > 255)
+			throw new RuntimeException("The message is too long");
+
+		for (String reference : announcement.references) {
+			String[] parts = reference.split("a|c"); // [<p|g>, author_id, ctr_id]
+			String owner = String.format("client%s", parts[1]);
+
+			if (!personalBoards.containsKey(owner)) {
+				throw new RuntimeException("Referred user doesn't exist");
+			}
+
+			if (parts[0].equals("p")) {
+				int pending = owner.equals(announcement.author) ? personal : 0;
+				if (personalBoards.get(owner).size() + pending < Integer.parseInt(parts[2])) {
+					throw new RuntimeException("The referred announcement doesn’t exist");
+				}
+
+			} else if (parts[0].equals("g")) {
+				if (generalBoard.size() + general < Integer.parseInt(parts[2])) {
+					throw new RuntimeException("The referred announcement doesn’t exist");
+				}
+			} else {
+				throw new RuntimeException("The type of post in reference is incorrect");
+			}
+		}
+	}
+
+	private void checkBatch(String author, List<Announcement> announcements, boolean personal) {
+		if (announcements.isEmpty() || announcements.size() > MAX_BATCH)
+			throw new RuntimeException("A batch has between 1 and " + MAX_BATCH + " posts");
+
+		for (int i = 0; i < announcements.size(); i++) {
+			Announcement announcement = announcements.get(i);
+
+			if (!author.equals(announcement.author))
+				throw new RuntimeException("Posts of a batch must have the same writer");
+			if (i > 0 && announcements.get(i - 1).id >= announcement.id)
+				throw new RuntimeException("Posts of a batch must be in order");
+
+			checkPost(announcement, personal ? i : 0, personal ? 0 : i);
+		}
+	}
+
+	/* The authors' locks keep their own posts from being added twice meanwhile */
+	private String[] transferLocks(String owner, List<Announcement> announcements) {
+		if (owner != null) return new String[] { owner };
+		return announcements.stream().map(announcement -> announcement.author).toArray(String[]::new);
+	}
+
+	private AnnouncementBoard transferBoard(String owner, List<Announcement> announcements) {
+		AnnouncementBoard board = (owner == null) ? generalBoard : personalBoards.get(owner);
+		if (board == null) throw new RuntimeException("The owner of the transferred posts doesn't exist");
+
+		for (Announcement announcement : announcements) {
+			if (owner != null && !owner.equals(announcement.author))
+				throw new RuntimeException("Transferred post of another writer");
+		}
+		return board;
+	}
+
+	/* Before the posts are on the board, see Durability */
+	private CompletableFuture<Void> logTransfer(String owner, List<Announcement> added) {
+		if (owner == null) return PersistenceUtils.log(this, id, new LogRecord().general(added));
+
+		Integer wts = wtss.get(owner);
+		for (Announcement announcement : added) {
+			wts = Math.max(wts, announcement.id);
+		}
+		wtss.put(owner, wts);
+		return PersistenceUtils.log(this, id, new LogRecord().personal(added).wts(owner, wts));
+	}
+
+	private void lock(String... clients) {
+		stateLock.readLock().lock();
+		for (String client : ordered(clients)) {
+			clientLock(client).lock();
+		}
+	}
+
+	private void unlock(String... clients) {
+		for (String client : ordered(clients)) {
+			clientLock(client).unlock();
+		}
+		stateLock.readLock().unlock();
+	}
+
+	private String[] ordered(String... clients) {
+		return Arrays.stream(clients).distinct().sorted().toArray(String[]::new);
+	}
+
+	private void initLocks() {
+		this.stateLock = new ReentrantReadWriteLock();
+		this.clientLocks = new ConcurrentHashMap<>();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		initLocks();
+	}
+
 }
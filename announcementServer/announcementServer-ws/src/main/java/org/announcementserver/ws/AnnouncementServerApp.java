@@ -2,8 +2,11 @@ package org.announcementserver.ws;
 
 import java.util.Scanner;
 import javax.xml.ws.Endpoint;
+import org.announcementserver.broadcast.ReliableBroadcast;
+import org.announcementserver.transfer.StateTransfer;
 import org.announcementserver.utils.*;
 import org.announcementserver.common.Constants;
+import org.announcementserver.common.CryptoTools;
 
 /**
  * Server Side Application
@@ -29,14 +32,25 @@ public class AnnouncementServerApp {
 		
 		endpoint.portImpl.proxy.myId = Constants.SERVER_NAME + id;
 		AnnouncementServer.getInstance().setId(Constants.SERVER_NAME + id);
+		CryptoTools.getKeyCache().preload(Constants.SERVER_NAME + id);
+
+		int f = (args.length > 2) ? Integer.valueOf(args[2]) : 1;
+
+		// General board writes are reliably broadcast among the 3f + 1 servers
+		ReliableBroadcast broadcast = null;
+		if (ReliableBroadcast.ENABLED) {
+			broadcast = new ReliableBroadcast(host, Integer.valueOf(id), 3 * f + 1, f);
+			endpoint.portImpl.proxy.setBroadcast(broadcast);
+		}
 		
     	String answer = "";
+		StateTransfer transfer = null;
 
     	try {
-			endpoint.start();
-
-    		// Verifies if needed to recover announcement server state
-    		boolean incorrectAnswer = true;
+    		// Verifies if needed to recover announcement server state, unless given with -Dws.recover=y|n.
+    		// Before the endpoint starts, so no request is logged over a state not yet recovered
+    		answer = System.getProperty("ws.recover", "");
+    		boolean incorrectAnswer = !(answer.equals("y") || answer.equals("n"));
     		while (incorrectAnswer) {
     			System.out.print("Want to recover server state? (Use 'y' for Yes and 'n' for No): ");
     			answer = userStringInput();
@@ -48,15 +62,56 @@ public class AnnouncementServerApp {
     		}
 
     		if (answer.equals("y")) {
-    			PersistenceUtils.recover(Constants.SERVER_NAME + id);
+    			if (PersistenceUtils.recover(Constants.SERVER_NAME + id) == null)
+    				throw new RuntimeException("Could not recover " + Constants.SERVER_NAME + id);
+    		} else {
+    			PersistenceUtils.start(AnnouncementServer.getInstance(), Constants.SERVER_NAME + id);
+    		}
+
+			if (broadcast != null) broadcast.start();
+			endpoint.start();
+
+			// Serves its state to the other servers, and catches up with them meanwhile
+			if (StateTransfer.ENABLED) {
+				transfer = new StateTransfer(host, Integer.valueOf(id), 3 * f + 1, f, AnnouncementServer.getInstance());
+				transfer.start();
+				catchUp(transfer);
 			}
     		
     		endpoint.awaitConnections();
     	} finally {
     		endpoint.stop();
+    		if (broadcast != null) broadcast.stop();
+    		if (transfer != null) transfer.stop();
+    		System.out.println(PersistenceUtils.getStats(Constants.SERVER_NAME + id));
+    		PersistenceUtils.close(Constants.SERVER_NAME + id);
     	}
     }
     
+    /* Catches up in the background, once or every StateTransfer.INTERVAL ms */
+	private static void catchUp(StateTransfer transfer) {
+		Thread thread = new Thread(() -> {
+			while (true) {
+				try {
+					long start = System.currentTimeMillis();
+					int added = transfer.catchUp();
+					System.out.println(String.format("Caught up %d posts in %d ms", added, System.currentTimeMillis() - start));
+				} catch (RuntimeException e) {
+					System.out.println("State transfer failed: " + e.getMessage());
+				}
+
+				if (StateTransfer.INTERVAL <= 0) return;
+				try {
+					Thread.sleep(StateTransfer.INTERVAL);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}, "catch-up");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
     // --- Checkings -------------------------------------
 
 	@SuppressWarnings("resource")
@@ -20,6 +20,9 @@ public class AnnouncementServerEndpointManager {
 	/** Web Service Endpoint */
 	private Endpoint endpoint = null;
 	
+	/** Executor of the requests */
+	private ServerExecutor executor = null;
+	
 	/** Verbose output? */
 	private boolean verbose = true;
 	
@@ -57,6 +60,8 @@ public class AnnouncementServerEndpointManager {
 	public void start() throws Exception {
 		try {
 			endpoint = Endpoint.create(this.portImpl);
+			executor = new ServerExecutor();
+			endpoint.setExecutor(executor);
 			if (verbose) {
 				System.out.printf("Starting %s%n", wsURL);
 			}
@@ -95,6 +100,13 @@ public class AnnouncementServerEndpointManager {
 					System.out.printf("Stopped %s%n", wsURL);
 				}
 			}
+			if (executor != null) {
+				executor.shutdown();
+				if (verbose) {
+					System.out.printf("Requests answered busy: %d%n", executor.getShed());
+					System.out.printf("Requests dropped: %d%n", executor.getDropped());
+				}
+			}
 		} catch (Exception e) {
 			if (verbose) {
 				System.out.printf("Exception caught when stopping: %s%n", e);
@@ -28,8 +28,26 @@ public class AnnouncementServerPortImpl implements AnnouncementServerPortType {
 
 	// Main operations -----------------------------------------------
 
+	/* Nonce */
+	public NonceRet nonce(NonceReq request) throws ServerBusy {
+		if (ServerExecutor.shedding()) throw proxy.busy(request.getSender(), 0);
+
+		NonceRet res = null;
+
+		try {
+			res = proxy.nonce(request);
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new RuntimeException(e.getMessage());
+		}
+
+		return res;
+	}
+
 	/* Register */
-	public RegisterRet register(RegisterReq request) {
+	public RegisterRet register(RegisterReq request) throws ServerBusy {
+		if (ServerExecutor.shedding()) throw proxy.busy(request.getSender(), 0);
+
 		RegisterRet res = null;
 
 		try {
@@ -43,7 +61,9 @@ public class AnnouncementServerPortImpl implements AnnouncementServerPortType {
 	}
 
 	/* Post */
-	public WriteRet post(WriteReq request) {
+	public WriteRet post(WriteReq request) throws ServerBusy {
+		if (ServerExecutor.shedding()) throw proxy.busy(request.getSender(), request.getSeqNumber());
+
 		WriteRet res = null;
 
 		try {
@@ -57,7 +77,8 @@ public class AnnouncementServerPortImpl implements AnnouncementServerPortType {
 	}
 
 	/* Post General */
-	public WriteRet postGeneral(WriteReq request) {
+	public WriteRet postGeneral(WriteReq request) throws ServerBusy {
+		if (ServerExecutor.shedding()) throw proxy.busy(request.getSender(), request.getSeqNumber());
 
 		WriteRet res = null;
 
@@ -71,8 +92,42 @@ public class AnnouncementServerPortImpl implements AnnouncementServerPortType {
 		return res;
 	}
 
+	/* Post Batch */
+	public WriteRet postBatch(WriteBatchReq request) throws ServerBusy {
+		if (ServerExecutor.shedding()) throw proxy.busy(request.getSender(), request.getSeqNumber());
+
+		WriteRet res = null;
+
+		try {
+			res = proxy.postBatch(request);
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new RuntimeException(e.getMessage());
+		}
+
+		return res;
+	}
+
+	/* Post General Batch */
+	public WriteRet postGeneralBatch(WriteBatchReq request) throws ServerBusy {
+		if (ServerExecutor.shedding()) throw proxy.busy(request.getSender(), request.getSeqNumber());
+
+		WriteRet res = null;
+
+		try {
+			res = proxy.postGeneralBatch(request);
+		} catch (Exception e) {
+			e.printStackTrace();
+			throw new RuntimeException(e.getMessage());
+		}
+
+		return res;
+	}
+
 	/* Read */
-	public ReadRet read(ReadReq request) {
+	public ReadRet read(ReadReq request) throws ServerBusy {
+		if (ServerExecutor.shedding()) throw proxy.busy(request.getSender(), request.getSeqNumber());
+
 		ReadRet res = null;
 
 		try {
@@ -86,7 +141,9 @@ public class AnnouncementServerPortImpl implements AnnouncementServerPortType {
 	}
 
 	/* Read General */
-	public ReadRet readGeneral(ReadGeneralReq request){
+	public ReadRet readGeneral(ReadGeneralReq request) throws ServerBusy {
+		if (ServerExecutor.shedding()) throw proxy.busy(request.getSender(), request.getSeqNumber());
+
 		ReadRet res = null;
 
 		try {
@@ -100,7 +157,9 @@ public class AnnouncementServerPortImpl implements AnnouncementServerPortType {
 	}
 
 	/* Write Back */
-	public WriteBackRet writeBack(WriteBackReq request) {
+	public WriteBackRet writeBack(WriteBackReq request) throws ServerBusy {
+		if (ServerExecutor.shedding()) throw proxy.busy(request.getSender(), request.getSeqNumber());
+
 		WriteBackRet res = null;
 
 		try {
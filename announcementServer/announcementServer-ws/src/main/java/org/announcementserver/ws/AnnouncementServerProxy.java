@@ -1,12 +1,39 @@
 package org.announcementserver.ws;
 
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.SecretKey;
+import org.announcementserver.broadcast.ReliableBroadcast;
 import org.announcementserver.common.*;
 import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.utils.PageCursor;
 
 public class AnnouncementServerProxy {
+    /* Milliseconds a client is asked to wait when the server is overloaded */
+    public static final int RETRY_AFTER = Integer.getInteger("ws.busy.retry", 50);
+    /* Most posts in one read response */
+    public static final int PAGE = Integer.getInteger("ws.page", 500);
+    /* Milliseconds a register nonce is accepted for after it is handed out */
+    public static final int NONCE_WINDOW = Integer.getInteger("ws.nonce.window", 60000);
+    private static final String GENERAL = "general";
+
     protected String myId;
+    /* Session key of each client, set up when it registers */
+    private final Map<String, SecretKey> sessions = new ConcurrentHashMap<>();
+    /* Authenticates the nonces handed out, new on every start so older ones are refused */
+    private final SecretKey nonceKey = CryptoTools.newSessionKey();
+    /* Time of the nonce each client last registered with, a nonce is only taken once */
+    private final Map<String, Long> registered = new ConcurrentHashMap<>();
+    /* Time of the last nonce handed out, no two nonces share one */
+    private final AtomicLong issued = new AtomicLong();
+    /* General board writes go through it first when set */
+    private ReliableBroadcast broadcast;
+    /* State it serves, the singleton unless set (several servers in one JVM) */
+    private AnnouncementServer server;
     private static AnnouncementServerProxy instance = null; //Singleton
 
     public AnnouncementServerProxy() {
@@ -16,6 +43,18 @@ public class AnnouncementServerProxy {
     public void setId (String id) {
     	this.myId = id;
     }
+
+    public void setBroadcast(ReliableBroadcast broadcast) {
+        this.broadcast = broadcast;
+    }
+
+    public void setServer(AnnouncementServer server) {
+        this.server = server;
+    }
+
+    private AnnouncementServer server() {
+        return (server != null) ? server : AnnouncementServer.getInstance();
+    }
     
 	public static AnnouncementServerProxy getInstance() {
 		if (instance == null) {
@@ -24,22 +63,48 @@ public class AnnouncementServerProxy {
 		return instance;
 	}
 
+    // --- Nonce ---------
+    /*
+    * Not signed: the register signs the nonce it carries, a forged one
+    * only makes that register fail
+    */
+    public NonceRet nonce(NonceReq request) {
+        if (!request.getDestination().equals(myId)) throw new RuntimeException(myId);
+
+        NonceRet response = new NonceRet();
+        response.setSender(myId);
+        response.setDestination(request.getSender());
+        long time = issued.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+        response.setNonce(makeNonce(request.getSender(), time));
+
+        return response;
+    }
+
     // --- Register ---------
+    /* The signed nonce makes an old register request useless when replayed */
     public RegisterRet register(RegisterReq request) {
-        String hash = null;
         if (!request.getDestination().equals(myId)) throw new RuntimeException(myId);
 
-        hash = decryptSignature(request.getSender(), request.getSignature());
+        MessageEncoder inEncoder = CryptoTools.encoder()
+            .string(request.getSender())
+            .string(request.getDestination())
+            .string(request.getNonce());
+        if (request.getSessionKey() != null) inEncoder.string(request.getSessionKey());
+        byte[] inHash = inEncoder.digest();
+
+        verifySignature(request.getSender(), inHash, request.getSignature(), "Error: Possible tampering detected on Hash");
+        takeNonce(request.getSender(), request.getNonce());
+
+        SecretKey session = (request.getSessionKey() == null) ? null : unwrapKey(request.getSessionKey());
 
-		List<String> inHash = new ArrayList<>();
-		inHash.add(request.getSender());
-		inHash.add(request.getDestination());
-		inHash.add(hash);
-		
-        if (!checkHash(inHash.toArray(new String[0]))) 
-            throw new RuntimeException("Error: Possible tampering detected on Hash");
+        List<Integer> nums = server().register(request.getSender());
 
-        List<Integer> nums = AnnouncementServer.getInstance().register(request.getSender());
+        // Later requests of the client are authenticated with this key, or signed without one
+        if (session != null) {
+            sessions.put(request.getSender(), session);
+        } else {
+            sessions.remove(request.getSender());
+        }
 
         RegisterRet response = new RegisterRet();
         response.setSender(myId);
@@ -48,40 +113,37 @@ public class AnnouncementServerProxy {
         response.setWts(nums.get(1));
         response.setRid(0);
 
-        List<String> outHash = new ArrayList<>();
-        outHash.add(response.getSender());
-        outHash.add(response.getDestination());
-        outHash.add(String.valueOf(response.getSeqNumber()));
-        outHash.add(String.valueOf(response.getWts()));
-        outHash.add(String.valueOf(response.getRid()));
+        MessageEncoder outEncoder = CryptoTools.encoder()
+            .string(response.getSender())
+            .string(response.getDestination())
+            .number(response.getSeqNumber())
+            .number(response.getWts())
+            .number(response.getRid());
+        if (request.getSessionKey() != null) outEncoder.string(request.getSessionKey()); // the key taken
+        byte[] outHash = outEncoder.digest();
 
-        response.setSignature(makeSignature(outHash.toArray(new String[0])));
+        response.setSignature(makeSignature(outHash));
 
         return response;
     }
     
     // --- POST ---------
     public WriteRet post(WriteReq request) {
-        String hash = null;
         if (!request.getDestination().equals(myId)) throw new RuntimeException("Not me");
 
-        hash = decryptSignature(request.getSender(), request.getSignature());
-
-        List<String> inHash = new ArrayList<>();
-		inHash.add(request.getSender());
-        inHash.add(request.getDestination());
-        inHash.add(String.valueOf(request.getSeqNumber()));
-        inHash.addAll(AnnouncementTools.postToSign(request.getAnnouncement(), true));
-        inHash.add(hash);
+        MessageEncoder inEncoder = CryptoTools.encoder()
+            .string(request.getSender())
+            .string(request.getDestination())
+            .number(request.getSeqNumber());
+        byte[] inHash = AnnouncementTools.encodePost(inEncoder, request.getAnnouncement(), true).digest();
 
-        if (!checkHash(inHash.toArray(new String[0]))) 
-            throw new RuntimeException("Possible Tampering in transport of post message");
+        SecretKey session = verifyRequest(request.getSender(), inHash, request.getSignature(), "Possible Tampering in transport of post message");
 
         if (!request.getSender().equals(request.getAnnouncement().getWriter()))
             throw new RuntimeException("The poster is different than the writer");
 
         Announcement new_post = AnnouncementTools.transformAnnouncement(request.getAnnouncement());
-        List<Integer> numsPost = AnnouncementServer.getInstance().post(new_post, request.getSeqNumber());
+        List<Integer> numsPost = server().post(new_post, request.getSeqNumber());
 
         WriteRet response = new WriteRet();
         response.setSender(request.getDestination());
@@ -89,167 +151,206 @@ public class AnnouncementServerProxy {
         response.setSeqNumber(numsPost.get(0));
         response.setWts(numsPost.get(1));
         
-        List<String> outHash = new ArrayList<>();
+        byte[] outHash = CryptoTools.encoder()
+            .string(response.getSender())
+            .string(response.getDestination())
+            .number(response.getSeqNumber())
+            .digest();
 
-		outHash.add(response.getSender());
-        outHash.add(response.getDestination());
-        outHash.add(String.valueOf(response.getSeqNumber()));
-        
-        response.setSignature(makeSignature(outHash.toArray(new String[0])));
+        response.setSignature(authenticate(session, outHash));
 
         return response;
     }
     
     // --- POST GENERAL ---------
     public WriteRet postGeneral(WriteReq request) {
-    	String hash = null;
     	if (!request.getDestination().equals(myId)) throw new RuntimeException("Not me");
 
-        hash = decryptSignature(request.getSender(), request.getSignature());
-        
-        List<String> inHash = new ArrayList<>();
-		inHash.add(request.getSender());
-        inHash.add(request.getDestination());
-        inHash.add(String.valueOf(request.getSeqNumber()));
-        inHash.addAll(AnnouncementTools.postToSign(request.getAnnouncement(), true));
-        inHash.add(hash);
-        
-        if (!checkHash(inHash.toArray(new String[0]))) 
-            throw new RuntimeException("Possible Tampering in transport of post message");
+        MessageEncoder inEncoder = CryptoTools.encoder()
+            .string(request.getSender())
+            .string(request.getDestination())
+            .number(request.getSeqNumber());
+        byte[] inHash = AnnouncementTools.encodePost(inEncoder, request.getAnnouncement(), true).digest();
+
+        SecretKey session = verifyRequest(request.getSender(), inHash, request.getSignature(), "Possible Tampering in transport of post message");
+
+        if (broadcast != null) {
+            AnnouncementMessage post = request.getAnnouncement();
+            broadcast.deliver(post.getWriter(), post.getWts(), AnnouncementTools.encodePost(CryptoTools.encoder(), post, true).digest());
+        }
         
         Announcement new_post = AnnouncementTools.transformAnnouncement(request.getAnnouncement());
-        Integer sn = AnnouncementServer.getInstance().postGeneral(new_post, request.getSeqNumber());
+        Integer sn = server().postGeneral(new_post, request.getSeqNumber());
         
         WriteRet response = new WriteRet();
         response.setSender(request.getDestination());
         response.setDestination(request.getSender());
         response.setSeqNumber(sn);
         
-        List<String> outHash = new ArrayList<>();
+        byte[] outHash = CryptoTools.encoder()
+            .string(response.getSender())
+            .string(response.getDestination())
+            .number(response.getSeqNumber())
+            .digest();
 
-		outHash.add(response.getSender());
-        outHash.add(response.getDestination());
-        outHash.add(String.valueOf(response.getSeqNumber()));
-        
-        response.setSignature(makeSignature(outHash.toArray(new String[0])));
+        response.setSignature(authenticate(session, outHash));
     	
     	return response;
     }
     
+    // --- POST BATCH ---------
+    public WriteRet postBatch(WriteBatchReq request) {
+        if (!request.getDestination().equals(myId)) throw new RuntimeException("Not me");
+
+        SecretKey session = verifyBatch(request);
+
+        List<Integer> numsPost = server().postBatch(request.getSender(),
+            transformMessageList(request.getAnnouncements()), request.getSeqNumber());
+
+        WriteRet response = new WriteRet();
+        response.setSender(request.getDestination());
+        response.setDestination(request.getSender());
+        response.setSeqNumber(numsPost.get(0));
+        response.setWts(numsPost.get(1));
+
+        byte[] outHash = CryptoTools.encoder()
+            .string(response.getSender())
+            .string(response.getDestination())
+            .number(response.getSeqNumber())
+            .digest();
+
+        response.setSignature(authenticate(session, outHash));
+
+        return response;
+    }
+
+    // --- POST GENERAL BATCH ---------
+    public WriteRet postGeneralBatch(WriteBatchReq request) {
+        if (!request.getDestination().equals(myId)) throw new RuntimeException("Not me");
+
+        SecretKey session = verifyBatch(request);
+
+        if (broadcast != null && !request.getAnnouncements().isEmpty()) {
+            broadcast.deliver(request.getSender(), request.getAnnouncements().get(0).getWts(),
+                AnnouncementTools.encodePosts(CryptoTools.encoder(), request.getAnnouncements()).digest());
+        }
+
+        Integer sn = server().postGeneralBatch(request.getSender(),
+            transformMessageList(request.getAnnouncements()), request.getSeqNumber());
+
+        WriteRet response = new WriteRet();
+        response.setSender(request.getDestination());
+        response.setDestination(request.getSender());
+        response.setSeqNumber(sn);
+
+        byte[] outHash = CryptoTools.encoder()
+            .string(response.getSender())
+            .string(response.getDestination())
+            .number(response.getSeqNumber())
+            .digest();
+
+        response.setSignature(authenticate(session, outHash));
+
+        return response;
+    }
+    
     // --- READ ---------
     public ReadRet read(ReadReq request) {
-        String hash = null;
         if(!request.getDestination().equals(myId)) throw new RuntimeException("Not me");
 
-        hash = decryptSignature(request.getSender(), request.getSignature());
+        byte[] inHash = CryptoTools.encoder()
+            .string(request.getSender())
+            .string(request.getDestination())
+            .number(request.getSeqNumber())
+            .string(request.getOwner())
+            .number(request.getRid())
+            .number(request.getNumber())
+            .number(request.getSince())
+            .string(request.getCursor())
+            .number(request.isSummary() ? 1 : 0)
+            .digest();
 
-        List<String> inHash = new ArrayList<>();
-		inHash.add(request.getSender());
-        inHash.add(request.getDestination());
-        inHash.add(String.valueOf(request.getSeqNumber()));
-        inHash.add(request.getOwner());
-        inHash.add(String.valueOf(request.getRid()));
-        inHash.add(String.valueOf(request.getNumber()));
-        inHash.add(hash);
+        SecretKey session = verifyRequest(request.getSender(), inHash, request.getSignature(), "Possible Tampering in transport of post message");
 
-        if (!checkHash(inHash.toArray(new String[0]))) 
-            throw new RuntimeException("Possible Tampering in transport of post message");
-
-        List<Announcement> posts = AnnouncementServer.getInstance().read(
-            request.getSender(), request.getOwner(), request.getNumber(), request.getSeqNumber());
+        AnnouncementBoard.Snapshot posts = server().read(
+            request.getSender(), request.getOwner(), request.getNumber(), request.getSeqNumber(), request.getSince());
 
         ReadRet response = new ReadRet();
         response.setSender(request.getDestination());
         response.setDestination(request.getSender());
         response.setSeqNumber(request.getSeqNumber());
         response.setRid(request.getRid());
-        response.getAnnouncements().addAll(transformAnnouncementList(posts));
 
-        List<String> outHash = new ArrayList<>();
-		outHash.add(response.getSender());
-        outHash.add(response.getDestination());
-        outHash.add(String.valueOf(response.getSeqNumber()));
-        outHash.add(String.valueOf(response.getRid()));
-        outHash.addAll(AnnouncementTools.listToSign(response.getAnnouncements()));
+        posts = request.isSummary() ? summary(posts) : page(request.getOwner(), request.getCursor(), posts, response);
+        response.getAnnouncements().addAll(transformAnnouncementList(posts));
 
-        response.setSignature(makeSignature(outHash.toArray(new String[0])));
+        signReadRet(response, posts, session);
 
         return response;
     }
     
     // --- READ GENERAL ---------
     public ReadRet readGeneral(ReadGeneralReq request) {
-    	String hash = null;
     	if(!request.getDestination().equals(myId)) throw new RuntimeException("Not me");
-    	
-    	hash = decryptSignature(request.getSender(), request.getSignature());
-    	
-        List<String> inHash = new ArrayList<>();
-		inHash.add(request.getSender());
-        inHash.add(request.getDestination());
-        inHash.add(String.valueOf(request.getSeqNumber()));
-        inHash.add(String.valueOf(request.getRid()));
-        inHash.add(String.valueOf(request.getNumber()));
-        inHash.add(hash);
 
-        if (!checkHash(inHash.toArray(new String[0]))) 
-            throw new RuntimeException("Possible Tampering in transport of post message");
+        byte[] inHash = CryptoTools.encoder()
+            .string(request.getSender())
+            .string(request.getDestination())
+            .number(request.getSeqNumber())
+            .number(request.getRid())
+            .number(request.getNumber())
+            .number(request.getSince())
+            .string(request.getCursor())
+            .number(request.isSummary() ? 1 : 0)
+            .digest();
 
+        SecretKey session = verifyRequest(request.getSender(), inHash, request.getSignature(), "Possible Tampering in transport of post message");
 
-        List<Announcement> posts = AnnouncementServer.getInstance().readGeneral(request.getSender(), request.getNumber(), request.getSeqNumber());
+        AnnouncementBoard.Snapshot posts = server().readGeneral(request.getSender(),
+            request.getNumber(), request.getSeqNumber(), request.getSince());
 
         ReadRet response = new ReadRet();
         response.setSender(request.getDestination());
         response.setDestination(request.getSender());
         response.setSeqNumber(request.getSeqNumber());
         response.setRid(request.getRid());
-        response.getAnnouncements().addAll(transformAnnouncementList(posts));
 
-        List<String> outHash = new ArrayList<>();
-		outHash.add(response.getSender());
-        outHash.add(response.getDestination());
-        outHash.add(String.valueOf(response.getSeqNumber()));
-        outHash.add(String.valueOf(response.getRid()));
-        outHash.addAll(AnnouncementTools.listToSign(response.getAnnouncements()));
+        posts = request.isSummary() ? summary(posts) : page(GENERAL, request.getCursor(), posts, response);
+        response.getAnnouncements().addAll(transformAnnouncementList(posts));
 
-        response.setSignature(makeSignature(outHash.toArray(new String[0])));
+        signReadRet(response, posts, session);
     	
     	return response;
     }
     
     // --- WRITE BACK --------
     public WriteBackRet writeBack(WriteBackReq request) {
-    	String hash = null;
     	if (!request.getDestination().equals(myId)) throw new RuntimeException("Not me");
     	
-    	hash = decryptSignature(request.getSender(), request.getSignature());
-    	
-    	List<String> inHash = new ArrayList<>();
-    	inHash.add(request.getSender());
-    	inHash.add(request.getDestination());
-    	inHash.add(String.valueOf(request.getSeqNumber()));
-    	inHash.addAll(AnnouncementTools.listToSign(request.getAnnouncements()));
-        inHash.add(hash);
+    	MessageEncoder inEncoder = CryptoTools.encoder()
+    	    .string(request.getSender())
+    	    .string(request.getDestination())
+    	    .number(request.getSeqNumber());
+    	byte[] inHash = AnnouncementTools.encodePosts(inEncoder, request.getAnnouncements()).digest();
         
         // verifySigs (make sure the messages are valid in the context of the system)
     	
-        if (!checkHash(inHash.toArray(new String[0]))) 
-            throw new RuntimeException("Possible Tampering in transport of post message");
+        SecretKey session = verifyRequest(request.getSender(), inHash, request.getSignature(), "Possible Tampering in transport of post message");
     	
-        Integer ts = AnnouncementServer.getInstance().writeBack(request.getSender(), request.getAnnouncements(), request.getSeqNumber());
+        Integer ts = server().writeBack(request.getSender(), request.getAnnouncements(), request.getSeqNumber());
         
     	WriteBackRet response = new WriteBackRet();
     	response.setSender(request.getDestination());
     	response.setDestination(request.getSender());
     	response.setSeqNumber(ts);
     			
-    	List<String> outHash = new ArrayList<>();
+    	byte[] outHash = CryptoTools.encoder()
+    	    .string(response.getSender())
+    	    .string(response.getDestination())
+    	    .number(response.getSeqNumber())
+    	    .digest();
     	
-    	outHash.add(response.getSender());
-    	outHash.add(response.getDestination());
-    	outHash.add(String.valueOf(response.getSeqNumber()));
-    	
-    	response.setSignature(makeSignature(outHash.toArray(new String[0])));
+    	response.setSignature(authenticate(session, outHash));
     	
     	return response;
     }
@@ -257,31 +358,197 @@ public class AnnouncementServerProxy {
     
     // -- Auxiliary Functions -------------------
 
-    private String decryptSignature(String author, String signature) {
+    private void verifySignature(String author, byte[] hash, String signature, String tampered) {
+        boolean valid;
+
         try {
-			return CryptoTools.decryptSignature(author, signature);
+			valid = CryptoTools.verifySignature(author, hash, signature);
 		} catch (Exception e) {
 			throw new RuntimeException("Error: Possible tampering detected on Signature");
         }
+
+        if (!valid) throw new RuntimeException(tampered);
     }
 
-    private boolean checkHash(String[] args) {
+    /*
+    * Checks a request authenticated with the sender's session key, or
+    * signed by it, and returns the key the response is authenticated with
+    */
+    private SecretKey verifyRequest(String sender, byte[] hash, String authenticator, String tampered) {
+        if (!CryptoTools.isMac(authenticator)) {
+            verifySignature(sender, hash, authenticator, tampered);
+            return null;
+        }
+
+        SecretKey session = sessions.get(sender);
+        boolean valid;
+
         try {
-			return CryptoTools.checkHash(args);
-	    } catch (Exception e) {
-			throw new RuntimeException(e.getMessage());
-		}
+            valid = session != null && CryptoTools.verifyMac(session, hash, authenticator);
+        } catch (Exception e) {
+            valid = false;
+        }
+
+        // The client then signs its requests until it registers again
+        if (!valid) throw new RuntimeException(Constants.SESSION_INVALID);
+
+        return session;
     }
 
-    private String makeSignature(String[] args) {
+    /* One signature covers the whole batch */
+    private SecretKey verifyBatch(WriteBatchReq request) {
+        MessageEncoder inEncoder = CryptoTools.encoder()
+            .string(request.getSender())
+            .string(request.getDestination())
+            .number(request.getSeqNumber());
+        byte[] inHash = AnnouncementTools.encodePosts(inEncoder, request.getAnnouncements()).digest();
+
+        SecretKey session = verifyRequest(request.getSender(), inHash, request.getSignature(), "Possible Tampering in transport of post message");
+
+        for (AnnouncementMessage post: request.getAnnouncements()) {
+            if (!request.getSender().equals(post.getWriter()))
+                throw new RuntimeException("The poster is different than the writer");
+        }
+
+        return session;
+    }
+
+    // --- Overload ---------
+    public ServerBusy busy(String destination, Integer seqNumber) {
+        BusyRet busy = new BusyRet();
+        busy.setSender(myId);
+        busy.setDestination(destination);
+        busy.setSeqNumber(seqNumber);
+        busy.setRetryAfter(RETRY_AFTER);
+
+        byte[] outHash = CryptoTools.encoder()
+            .string(busy.getSender())
+            .string(busy.getDestination())
+            .number(busy.getSeqNumber())
+            .number(busy.getRetryAfter())
+            .digest();
+
+        busy.setSignature(authenticate(sessions.get(destination), outHash));
+
+        return new ServerBusy("Server busy", busy);
+    }
+
+    private String makeSignature(byte[] hash) {
         try {
-            return CryptoTools.makeSignature(args);
+            return CryptoTools.makeSignature(myId, hash);
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException(e.getMessage());
         }
     }
+
+    /* Session key of the request when it had one, signature otherwise */
+    private String authenticate(SecretKey session, byte[] hash) {
+        if (session == null) return makeSignature(hash);
+
+        try {
+            return CryptoTools.makeMac(session, hash);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /* The time it was handed out, authenticated for the client and this server */
+    private String makeNonce(String client, long time) {
+        byte[] hash = CryptoTools.encoder()
+            .string(client)
+            .string(myId)
+            .string(Long.toString(time))
+            .digest();
+
+        try {
+            return time + ":" + CryptoTools.makeMac(nonceKey, hash);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /* A nonce handed out to the client by this run, recent and later than the one it last registered with */
+    private void takeNonce(String client, String nonce) {
+        long time;
+
+        try {
+            time = Long.parseLong(nonce.substring(0, nonce.indexOf(':')));
+        } catch (RuntimeException e) {
+            throw new RuntimeException(Constants.NONCE_INVALID);
+        }
+
+        if (!MessageDigest.isEqual(makeNonce(client, time).getBytes(), nonce.getBytes())
+                || System.currentTimeMillis() - time > NONCE_WINDOW)
+            throw new RuntimeException(Constants.NONCE_INVALID);
+
+        boolean[] taken = { false };
+        registered.compute(client, (c, last) -> {
+            if (last != null && last >= time) return last;
+            taken[0] = true;
+            return time;
+        });
+
+        if (!taken[0]) throw new RuntimeException(Constants.NONCE_INVALID);
+    }
+
+    private SecretKey unwrapKey(String wrapped) {
+        try {
+            return CryptoTools.unwrapKey(myId, wrapped);
+        } catch (Exception e) {
+            throw new RuntimeException("Error: Could not read the session key");
+        }
+    }
     
+    /*
+    * At most PAGE of the posts, starting at the cursor while it is valid; a
+    * stale cursor is ignored, the posts then start where the request said
+    */
+    private AnnouncementBoard.Snapshot page(String board, String cursor, AnnouncementBoard.Snapshot posts, ReadRet response) {
+        if (cursor != null) {
+            try {
+                posts = PageCursor.resume(cursor, board, posts);
+            } catch (RuntimeException e) {
+                // stale or forged, the posts start where the request said
+            }
+        }
+
+        if (posts.size() > PAGE) {
+            posts = posts.range(0, PAGE);
+            response.setCursor(PageCursor.make(board, posts));
+        }
+
+        return posts;
+    }
+
+    /* The last of the posts, enough for a client to choose which server to read them from */
+    private AnnouncementBoard.Snapshot summary(AnnouncementBoard.Snapshot posts) {
+        return posts.isEmpty() ? posts : posts.range(posts.size() - 1, posts.size());
+    }
+
+    private void signReadRet(ReadRet response, AnnouncementBoard.Snapshot posts, SecretKey session) {
+        byte[] prefix = posts.prefix();
+        byte[] head = posts.head();
+
+        response.setPrefix(AnnouncementTools.digestToString(prefix));
+        response.setHead(AnnouncementTools.digestToString(head));
+
+        byte[] outHash = AnnouncementTools.hashReadRet(response.getSender(), response.getDestination(),
+            response.getSeqNumber(), response.getRid(), prefix, head, response.getCursor());
+
+        response.setSignature(authenticate(session, outHash));
+    }
+
+    private List<Announcement> transformMessageList(List<AnnouncementMessage> posts) {
+        List<Announcement> res = new ArrayList<>();
+
+        for (AnnouncementMessage post: posts) {
+            res.add(AnnouncementTools.transformAnnouncement(post));
+        }
+
+        return res;
+    }
+
     private List<AnnouncementMessage> transformAnnouncementList(List<Announcement> posts) {
         List<AnnouncementMessage> res = new ArrayList<>();
         AnnouncementMessage mess;
@@ -0,0 +1,229 @@
+package org.announcementserver.ws;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.announcementserver.broadcast.ReliableBroadcast;
+import org.announcementserver.common.Constants;
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.transfer.StateTransfer;
+import org.announcementserver.utils.PersistenceUtils;
+
+/*
+* The 3f + 1 servers of a deployment on local ports, for end-to-end and
+* load tests
+*
+* Server i keeps its state in <directory>/server<i>/ and recovers it when
+* started, so a new directory gives a new cluster. The servers either run
+* in this JVM, each with an AnnouncementServer of its own, or as child
+* AnnouncementServerApp processes on this JVM's classpath, which are passed
+* its ws.* and keystore.dir properties and log to server.out in their
+* directory. The keystores and clients.txt are read from the working
+* directory, so this is run from /announcementServer-ws.
+*/
+
+public class LocalCluster {
+	/* Milliseconds a child process has to publish its endpoint, or to stop */
+	private static final int TIMEOUT = 30000;
+
+	private final String host;
+	private final int faults;
+	private final File directory;
+	private final boolean processes;
+	private final List<Replica> replicas = new ArrayList<>();
+
+	private static class Replica {
+		String id;
+		AnnouncementServer server;
+		AnnouncementServerEndpointManager endpoint;
+		ReliableBroadcast broadcast;
+		StateTransfer transfer;
+		Process process;
+	}
+
+	public LocalCluster(String host, int faults, File directory, boolean processes) {
+		this.host = host;
+		this.faults = faults;
+		this.directory = directory;
+		this.processes = processes;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("Usage: java " + LocalCluster.class.getName() + " host faults directory [processes]");
+			return;
+		}
+
+		boolean processes = args.length > 3 && args[3].equals("processes");
+		LocalCluster cluster = new LocalCluster(args[0], Integer.valueOf(args[1]), new File(args[2]), processes);
+		Runtime.getRuntime().addShutdownHook(new Thread(cluster::stop));
+
+		cluster.start();
+		System.out.println(String.format("%d servers %s: %s to %s, state in %s", cluster.size(),
+			processes ? "in child processes" : "in this JVM", cluster.url(1), cluster.url(cluster.size()), args[2]));
+		System.out.println("Press enter to shutdown");
+		System.in.read();
+		cluster.stop();
+	}
+
+	public synchronized void start() throws Exception {
+		if (!replicas.isEmpty()) throw new RuntimeException("Cluster already started");
+
+		try {
+			for (int id = 1; id <= size(); id++) {
+				File state = new File(directory, Constants.SERVER_NAME + id);
+				if (!state.isDirectory() && !state.mkdirs()) throw new IOException("Could not create " + state);
+
+				replicas.add(processes ? launch(id, state) : run(id, state));
+			}
+
+			if (processes) {
+				for (int id = 1; id <= size(); id++) awaitEndpoint(id);
+			} else if (StateTransfer.ENABLED) {
+				for (Replica replica : replicas) replica.transfer.catchUp();
+			}
+		} catch (Exception e) {
+			stop();
+			throw e;
+		}
+	}
+
+	public synchronized void stop() {
+		for (Replica replica : replicas) {
+			try {
+				if (replica.process != null) {
+					shutdown(replica.process);
+				} else {
+					replica.endpoint.stop();
+					if (replica.broadcast != null) replica.broadcast.stop();
+					if (replica.transfer != null) replica.transfer.stop();
+					PersistenceUtils.close(replica.id);
+				}
+			} catch (Exception e) {
+				System.out.println(String.format("Could not stop %s: %s", replica.id, e.getMessage()));
+			}
+		}
+		replicas.clear();
+	}
+
+	public int size() {
+		return 3 * faults + 1;
+	}
+
+	public String url(int id) {
+		return String.format(Constants.WS_NAME_FORMAT, host, Constants.PORT_START + id);
+	}
+
+	/* State of server `id`, when it runs in this JVM */
+	public synchronized AnnouncementServer server(int id) {
+		if (processes) throw new RuntimeException("The servers run in child processes");
+		if (id < 1 || id > replicas.size()) throw new RuntimeException("No server" + id + " running");
+
+		return replicas.get(id - 1).server;
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* In this JVM, as AnnouncementServerApp sets it up */
+	private Replica run(int id, File state) throws Exception {
+		Replica replica = new Replica();
+		replica.id = Constants.SERVER_NAME + id;
+
+		PersistenceUtils.setDirectory(replica.id, state);
+		AnnouncementServer singleton = AnnouncementServer.getInstance();
+		replica.server = PersistenceUtils.recover(replica.id);
+		AnnouncementServer.setInstance(singleton); // recover replaced it
+		if (replica.server == null) throw new RuntimeException("Could not recover " + replica.id);
+		CryptoTools.getKeyCache().preload(replica.id);
+
+		replica.endpoint = new AnnouncementServerEndpointManager(url(id));
+		replica.endpoint.setVerbose(false);
+		replica.endpoint.portImpl.proxy.myId = replica.id;
+		replica.endpoint.portImpl.proxy.setServer(replica.server);
+
+		if (ReliableBroadcast.ENABLED) {
+			replica.broadcast = new ReliableBroadcast(host, id, size(), faults);
+			replica.endpoint.portImpl.proxy.setBroadcast(replica.broadcast);
+			replica.broadcast.start();
+		}
+		if (StateTransfer.ENABLED) {
+			replica.transfer = new StateTransfer(host, id, size(), faults, replica.server);
+			replica.transfer.start();
+		}
+		replica.endpoint.start();
+
+		return replica;
+	}
+
+	private Replica launch(int id, File state) throws IOException {
+		Replica replica = new Replica();
+		replica.id = Constants.SERVER_NAME + id;
+
+		List<String> command = new ArrayList<>();
+		command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		for (String name : System.getProperties().stringPropertyNames()) {
+			if ((name.startsWith("ws.") || name.equals("keystore.dir")) && !name.equals("ws.recover") && !name.equals("ws.state.dir")) {
+				command.add("-D" + name + "=" + System.getProperty(name));
+			}
+		}
+		command.add("-Dws.recover=y");
+		command.add("-Dws.state.dir=" + state.getPath() + File.separator);
+		command.add(AnnouncementServerApp.class.getName());
+		command.add(host);
+		command.add(String.valueOf(id));
+		command.add(String.valueOf(faults));
+
+		replica.process = new ProcessBuilder(command)
+			.redirectErrorStream(true)
+			.redirectOutput(new File(state, "server.out"))
+			.start();
+
+		return replica;
+	}
+
+	/* Polls the WSDL of a child process until it is published */
+	private void awaitEndpoint(int id) throws Exception {
+		Process process = replicas.get(id - 1).process;
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+
+		while (true) {
+			if (!process.isAlive()) {
+				throw new RuntimeException(String.format("server%d exited, see %s", id, new File(new File(directory, Constants.SERVER_NAME + id), "server.out")));
+			}
+
+			try {
+				HttpURLConnection connection = (HttpURLConnection) new URL(url(id) + "?wsdl").openConnection();
+				connection.setConnectTimeout(1000);
+				connection.setReadTimeout(1000);
+				if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) return;
+			} catch (IOException e) {
+				// not listening yet
+			}
+
+			if (System.currentTimeMillis() > deadline) throw new RuntimeException("server" + id + " did not start");
+			Thread.sleep(100);
+		}
+	}
+
+	/* Presses enter on the child's prompt, so it commits its log and exits */
+	private static void shutdown(Process process) throws InterruptedException {
+		try {
+			OutputStream in = process.getOutputStream();
+			in.write('\n');
+			in.flush();
+		} catch (IOException e) {
+			// already exited
+		}
+
+		if (!process.waitFor(TIMEOUT, TimeUnit.MILLISECONDS)) {
+			process.destroyForcibly();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package org.announcementserver.ws;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+* Executor of the requests received by the endpoint
+*
+* Requests run on a pool of ws.threads threads, or, with
+* ws.executor=virtual, each on its own virtual thread (when the JVM has
+* them). At most ws.queue requests wait for a thread (in virtual mode, at
+* most ws.queue requests are in flight). A request beyond that limit is not
+* queued for a worker: it runs on the shedding thread, where the port
+* answers it with a signed ServerBusy fault without doing any work (see
+* shedding). At most ws.shed.queue requests wait for the shedding thread,
+* the ones beyond are dropped: execute throws and the HTTP server closes
+* their connection.
+*/
+
+public class ServerExecutor implements Executor {
+	public static final String MODE = System.getProperty("ws.executor", "bounded");
+	public static final int THREADS = Integer.getInteger("ws.threads", 2 * Runtime.getRuntime().availableProcessors());
+	public static final int QUEUE = Integer.getInteger("ws.queue", 256);
+	public static final int SHED_QUEUE = Integer.getInteger("ws.shed.queue", 1024);
+
+	private static final ThreadLocal<Boolean> SHED = new ThreadLocal<>();
+
+	private final ExecutorService workers;
+	private final ExecutorService shedder;
+	private final int limit;
+	private final AtomicInteger pending = new AtomicInteger(); // of the workers only
+	private final AtomicLong shed = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	public ServerExecutor() {
+		this(MODE, THREADS, QUEUE, SHED_QUEUE);
+	}
+
+	public ServerExecutor(String mode, int threads, int queue) {
+		this(mode, threads, queue, SHED_QUEUE);
+	}
+
+	public ServerExecutor(String mode, int threads, int queue, int shedQueue) {
+		ExecutorService virtual = mode.equals("virtual") ? newVirtualExecutor() : null;
+
+		if (virtual != null) {
+			this.workers = virtual;
+			this.limit = queue;
+		} else {
+			this.workers = Executors.newFixedThreadPool(threads, daemon("request"));
+			this.limit = threads + queue;
+		}
+		this.shedder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(shedQueue), daemon("shedder"));
+	}
+
+	/* Throws RejectedExecutionException if the request is dropped */
+	@Override
+	public void execute(Runnable request) {
+		if (pending.incrementAndGet() > limit) {
+			pending.decrementAndGet();
+			try {
+				shedder.execute(() -> run(request, true));
+			} catch (RejectedExecutionException e) {
+				dropped.incrementAndGet();
+				throw e;
+			}
+			shed.incrementAndGet();
+		} else {
+			workers.execute(() -> run(request, false));
+		}
+	}
+
+	/* True if the request running on this thread must be answered with ServerBusy */
+	public static boolean shedding() {
+		return Boolean.TRUE.equals(SHED.get());
+	}
+
+	public long getShed() {
+		return shed.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	public void shutdown() {
+		workers.shutdown();
+		shedder.shutdown();
+		try {
+			workers.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// --- Auxiliary functions -------------
+
+	private void run(Runnable request, boolean shedding) {
+		SHED.set(shedding);
+		try {
+			request.run();
+		} finally {
+			SHED.remove();
+			if (!shedding) pending.decrementAndGet();
+		}
+	}
+
+	private static ExecutorService newVirtualExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			System.out.println("Virtual threads are not available, using a bounded pool");
+			return null;
+		}
+	}
+
+	private static ThreadFactory daemon(String name) {
+		return r -> {
+			Thread thread = new Thread(r, name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
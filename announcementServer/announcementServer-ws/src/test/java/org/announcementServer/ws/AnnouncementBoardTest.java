@@ -0,0 +1,335 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementBoard;
+import org.announcementserver.ws.AnnouncementMessage;
+import org.junit.Test;
+
+public class AnnouncementBoardTest {
+
+	/**
+	 * -- Test Description --
+	 * Announcements arriving in any order end up sorted
+	 * exactly like the previous ArrayList + sort board
+	 */
+
+	@Test
+	public void testOrderMatchesSortedList() {
+		AnnouncementBoard board = new AnnouncementBoard();
+		List<Announcement> expected = new ArrayList<>();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 1000; i++) {
+			Announcement announcement = new Announcement("client" + (random.nextInt(3) + 1), "post", random.nextInt(200));
+			board.add(announcement);
+			expected.add(announcement);
+		}
+		expected.sort(null);
+
+		assertEquals(expected, new ArrayList<>(board.snapshot()));
+	}
+
+	/**
+	 * -- Test Description --
+	 * Same wts from different authors are ordered by
+	 * reverse author name, as Announcement.compareTo defines
+	 */
+
+	@Test
+	public void testTiesBrokenByAuthor() {
+		AnnouncementBoard board = new AnnouncementBoard();
+		board.add(new Announcement("client1", "a", 1));
+		board.add(new Announcement("client3", "b", 1));
+		board.add(new Announcement("client2", "c", 1));
+
+		List<Announcement> snapshot = board.snapshot();
+		assertEquals("client3", snapshot.get(0).getAuthor());
+		assertEquals("client2", snapshot.get(1).getAuthor());
+		assertEquals("client1", snapshot.get(2).getAuthor());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A snapshot is not affected by later posts
+	 */
+
+	@Test
+	public void testSnapshotIsStable() {
+		AnnouncementBoard board = new AnnouncementBoard();
+		board.add(new Announcement("client1", "a", 2));
+		List<Announcement> snapshot = board.snapshot();
+
+		board.add(new Announcement("client1", "b", 3));
+		board.add(new Announcement("client1", "c", 1));
+
+		assertEquals(1, snapshot.size());
+		assertEquals(Integer.valueOf(2), snapshot.get(0).getId());
+		assertEquals(3, board.size());
+	}
+
+	/**
+	 * -- Test Description --
+	 * Readers running concurrently with a writer always
+	 * see a sorted prefix of the board
+	 */
+
+	@Test
+	public void testConcurrentReadersSeeSortedBoard() throws Exception {
+		AnnouncementBoard board = new AnnouncementBoard();
+		AtomicBoolean sorted = new AtomicBoolean(true);
+		AtomicBoolean running = new AtomicBoolean(true);
+
+		Thread reader = new Thread(() -> {
+			while (running.get()) {
+				List<Announcement> snapshot = board.snapshot();
+				for (int i = 1; i < snapshot.size(); i++) {
+					if (snapshot.get(i - 1).compareTo(snapshot.get(i)) > 0) sorted.set(false);
+				}
+			}
+		});
+		reader.start();
+
+		for (int i = 0; i < 5000; i++) {
+			// Mostly in order, one in ten arrives late
+			board.add(new Announcement("client1", "post", i % 10 == 0 ? i / 2 : i));
+		}
+		running.set(false);
+		reader.join();
+
+		assertTrue(sorted.get());
+		assertEquals(5000, board.size());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A board survives the snapshot serialization
+	 */
+
+	@Test
+	public void testSerialization() throws Exception {
+		AnnouncementBoard board = new AnnouncementBoard();
+		for (int i = 1; i <= 100; i++) {
+			board.add(new Announcement("client1", "post" + i, i));
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(board);
+		}
+		AnnouncementBoard copy;
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			copy = (AnnouncementBoard) ois.readObject();
+		}
+
+		assertEquals(100, copy.size());
+		copy.add(new Announcement("client1", "post101", 101));
+		assertEquals("post101", copy.snapshot().get(100).getContent());
+	}
+
+	/**
+	 * -- Test Description --
+	 * The board's hash chain matches the one a client
+	 * computes from the posts it receives
+	 */
+
+	@Test
+	public void testChainMatchesClientChain() {
+		AnnouncementBoard board = new AnnouncementBoard();
+		List<AnnouncementMessage> posts = new ArrayList<>();
+
+		for (int i = 1; i <= 20; i++) {
+			Announcement announcement = new Announcement("client1", "post" + i, i);
+			announcement.addReference("pa1c" + (i - 1));
+			announcement.setType("General");
+			announcement.setSignature("signature" + i);
+			board.add(announcement);
+			posts.add(message(announcement));
+		}
+
+		AnnouncementBoard.Snapshot snapshot = board.snapshot();
+		assertArrayEquals(AnnouncementTools.EMPTY_DIGEST, snapshot.prefix());
+		assertArrayEquals(AnnouncementTools.chain(AnnouncementTools.EMPTY_DIGEST, posts), snapshot.head());
+
+		AnnouncementBoard.Snapshot range = snapshot.range(15, 20);
+		assertEquals(5, range.size());
+		assertArrayEquals(AnnouncementTools.chain(range.prefix(), posts.subList(15, 20)), snapshot.head());
+		assertArrayEquals(AnnouncementTools.chain(AnnouncementTools.EMPTY_DIGEST, posts.subList(0, 15)), range.prefix());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A late announcement rewrites the chain after it, ending
+	 * with the same head as a board filled in order
+	 */
+
+	@Test
+	public void testLateAnnouncementUpdatesChain() throws Exception {
+		AnnouncementBoard late = new AnnouncementBoard();
+		AnnouncementBoard inOrder = new AnnouncementBoard();
+
+		for (int i : new int[] { 1, 2, 4, 5, 3 }) {
+			late.add(new Announcement("client1", "post" + i, i));
+		}
+		for (int i = 1; i <= 5; i++) {
+			inOrder.add(new Announcement("client1", "post" + i, i));
+		}
+
+		assertArrayEquals(inOrder.snapshot().head(), late.snapshot().head());
+		assertArrayEquals(inOrder.snapshot().range(0, 3).head(), late.snapshot().range(0, 3).head());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(late);
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			assertArrayEquals(inOrder.snapshot().head(), ((AnnouncementBoard) ois.readObject()).snapshot().head());
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * Announcements added together before the last ones are
+	 * merged in, as if they had been added one by one
+	 */
+
+	@Test
+	public void testAddAllBeforeLast() throws Exception {
+		AnnouncementBoard merged = new AnnouncementBoard();
+		AnnouncementBoard oneByOne = new AnnouncementBoard();
+		List<Announcement> early = new ArrayList<>();
+
+		for (int i = 1; i <= 40; i++) {
+			Announcement announcement = new Announcement("client" + (i % 3 + 1), "post" + i, i / 2);
+			if (i % 4 == 0 || i > 35) {
+				merged.add(announcement);
+			} else {
+				early.add(announcement);
+			}
+			oneByOne.add(announcement);
+		}
+		merged.addAll(early);
+
+		assertEquals(oneByOne.size(), merged.size());
+		assertArrayEquals(oneByOne.snapshot().head(), merged.snapshot().head());
+		for (Announcement announcement : early) {
+			assertTrue(merged.contains(announcement));
+		}
+		assertFalse(merged.contains(new Announcement("client1", "post", 100)));
+	}
+
+	/**
+	 * -- Test Description --
+	 * Announcements are only appended when the board ends at
+	 * the given prefix and they end at the given head
+	 */
+
+	@Test
+	public void testAppendChecksDigests() {
+		AnnouncementBoard source = new AnnouncementBoard();
+		List<Announcement> tail = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			Announcement announcement = new Announcement("client1", "post" + i, i);
+			source.add(announcement);
+			if (i > 5) tail.add(announcement);
+		}
+		AnnouncementBoard.Snapshot expected = source.snapshot();
+
+		AnnouncementBoard board = new AnnouncementBoard();
+		board.addAll(expected.range(0, 5));
+
+		assertFalse(board.append(tail, expected.range(0, 4).head(), expected.head()));
+		try {
+			board.append(tail, expected.range(0, 5).head(), expected.range(0, 9).head());
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals(5, board.size());
+		}
+
+		assertTrue(board.append(tail, expected.range(0, 5).head(), expected.head()));
+		assertArrayEquals(expected.head(), board.snapshot().head());
+	}
+
+	/**
+	 * -- Test Description --
+	 * The hook of an append runs only once the announcements
+	 * fit, before they are on the board
+	 */
+
+	@Test
+	public void testAppendRunsHookBeforePublishing() {
+		AnnouncementBoard source = new AnnouncementBoard();
+		for (int i = 1; i <= 10; i++) {
+			source.add(new Announcement("client1", "post" + i, i));
+		}
+		AnnouncementBoard.Snapshot expected = source.snapshot();
+
+		AnnouncementBoard board = new AnnouncementBoard();
+		board.addAll(expected.range(0, 5));
+		List<Integer> seen = new ArrayList<>();
+
+		assertFalse(board.append(expected.range(5, 10), expected.range(0, 4).head(), expected.head(), () -> seen.add(board.size())));
+		assertTrue(seen.isEmpty());
+
+		assertTrue(board.append(expected.range(5, 10), expected.range(0, 5).head(), expected.head(), () -> seen.add(board.size())));
+		assertEquals(Arrays.asList(5), seen);
+		assertEquals(10, board.size());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A read since a wts returns only the later posts,
+	 * and its prefix is the head of the board up to them
+	 */
+
+	@Test
+	public void testSinceLinksToEarlierHead() {
+		AnnouncementBoard board = new AnnouncementBoard();
+		for (int i = 1; i <= 10; i++) {
+			board.add(new Announcement("client1", "post" + i, i));
+		}
+		byte[] cached = board.snapshot().head();
+
+		for (int i = 11; i <= 13; i++) {
+			board.add(new Announcement("client1", "post" + i, i));
+		}
+
+		AnnouncementBoard.Snapshot delta = board.snapshot().since(10);
+		assertEquals(3, delta.size());
+		assertEquals("post11", delta.get(0).getContent());
+		assertArrayEquals(cached, delta.prefix());
+		assertArrayEquals(board.snapshot().head(), delta.head());
+
+		assertEquals(0, board.snapshot().since(13).size());
+		assertEquals(13, board.snapshot().since(0).size());
+	}
+
+	// --- Auxiliary functions -------------
+
+	private AnnouncementMessage message(Announcement announcement) {
+		AnnouncementMessage res = new AnnouncementMessage();
+		res.setWriter(announcement.getAuthor());
+		res.setMessage(announcement.getContent());
+		res.getAnnouncementList().addAll(announcement.getReferences());
+		res.setWts(announcement.getId());
+		res.setType(announcement.getType());
+		res.setSignature(announcement.getSignature());
+		return res;
+	}
+}
@@ -0,0 +1,154 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.announcementserver.utils.PersistenceUtils;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchTest {
+	private static final String SERVER_ID = "batchTest";
+
+	AnnouncementServer instance;
+
+	@Before
+	public void start() {
+		instance = TestTools.server(SERVER_ID);
+		instance.register("client1");
+	}
+
+	/**
+	 * -- Test Description --
+	 * A batch takes one sequence number and one log record,
+	 * and all of its posts survive a restart
+	 */
+
+	@Test
+	public void testBatchIsOneOperation() {
+		List<Integer> ret = instance.postBatch("client1", posts("client1", "Personal", 1, 3), 0);
+
+		assertEquals(Arrays.asList(0, 3), ret);
+		assertEquals(Integer.valueOf(1), instance.sns.get("client1"));
+		assertEquals(Integer.valueOf(3), instance.wtss.get("client1"));
+		assertEquals(2, PersistenceUtils.getStats(SERVER_ID).getRecords());
+
+		AnnouncementServer recovered = restart();
+
+		assertEquals(Integer.valueOf(1), recovered.sns.get("client1"));
+		assertEquals(Integer.valueOf(3), recovered.wtss.get("client1"));
+
+		List<Announcement> board = recovered.read("client1", "client1", 0, 1);
+		assertEquals(3, board.size());
+		assertEquals("post3", board.get(2).getContent());
+	}
+
+	/**
+	 * -- Test Description --
+	 * If any post of the batch is invalid none is added
+	 */
+
+	@Test
+	public void testInvalidBatchAddsNothing() {
+		List<Announcement> batch = posts("client1", "Personal", 1, 3);
+		batch.get(2).setContent(new String(new char[256]));
+
+		try {
+			instance.postBatch("client1", batch, 0);
+			fail();
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		assertEquals(Integer.valueOf(0), instance.sns.get("client1"));
+		assertEquals(Integer.valueOf(0), instance.wtss.get("client1"));
+		assertEquals(0, instance.read("client1", "client1", 0, 0).size());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A post may refer to an earlier post of its own batch
+	 */
+
+	@Test
+	public void testReferToEarlierPostOfBatch() {
+		List<Announcement> batch = posts("client1", "Personal", 1, 2);
+		batch.get(1).addReference("pa1c1");
+
+		instance.postBatch("client1", batch, 0);
+
+		assertEquals(Integer.valueOf(2), instance.wtss.get("client1"));
+	}
+
+	/**
+	 * -- Test Description --
+	 * Posts out of order or by another writer are refused
+	 */
+
+	@Test
+	public void testMalformedBatchIsRefused() {
+		instance.register("client2");
+
+		List<Announcement> unordered = posts("client1", "Personal", 1, 2);
+		unordered.get(1).setId(1);
+		List<Announcement> mixed = posts("client1", "Personal", 1, 2);
+		mixed.get(1).setAuthor("client2");
+
+		for (List<Announcement> batch : Arrays.asList(unordered, mixed, new ArrayList<Announcement>())) {
+			try {
+				instance.postBatch("client1", batch, 0);
+				fail();
+			} catch (RuntimeException e) {
+				// expected
+			}
+		}
+
+		assertEquals(Integer.valueOf(0), instance.sns.get("client1"));
+	}
+
+	/**
+	 * -- Test Description --
+	 * A general batch is added after a read, and a batch
+	 * older than the last read is ignored as a whole
+	 */
+
+	@Test
+	public void testGeneralBatch() {
+		instance.readGeneral("client1", 1, 0);
+		instance.postGeneralBatch("client1", posts("client1", "General", 1, 3), 1);
+
+		instance.readGeneral("client1", 1, 2);
+		instance.postGeneralBatch("client1", posts("client1", "General", 3, 2), 3);
+
+		assertEquals(Integer.valueOf(3), instance.sns.get("client1"));
+		assertEquals(3, instance.readGeneral("client1", 0, 3).size());
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		TestTools.cleanup(SERVER_ID);
+	}
+
+	// --- Auxiliary functions -------------
+
+	private AnnouncementServer restart() {
+		return TestTools.restart(SERVER_ID);
+	}
+
+	private List<Announcement> posts(String author, String type, Integer first, Integer count) {
+		List<Announcement> res = new ArrayList<>();
+		for (int wts = first; wts < first + count; wts++) {
+			Announcement post = TestTools.announcement(author, wts);
+			post.setType(type);
+			res.add(post);
+		}
+		return res;
+	}
+}
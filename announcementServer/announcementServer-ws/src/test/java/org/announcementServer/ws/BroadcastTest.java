@@ -0,0 +1,233 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.announcementserver.broadcast.PeerTransport;
+import org.announcementserver.broadcast.ReliableBroadcast;
+import org.announcementserver.common.CryptoTools;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BroadcastTest {
+	private static final int N = 4;
+	private static final int F = 1;
+
+	List<ReliableBroadcast> servers;
+	ExecutorService executor;
+
+	@Before
+	public void start() throws Exception {
+		servers = new ArrayList<>();
+		for (int id = 1; id <= N; id++) {
+			servers.add(new ReliableBroadcast("localhost", id, N, F));
+		}
+		executor = Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * -- Test Description --
+	 * When every server gets the same write, every
+	 * server delivers it
+	 */
+
+	@Test
+	public void testAllDeliver() throws Exception {
+		startServers(N);
+
+		List<Future<?>> writes = new ArrayList<>();
+		for (int id = 1; id <= N; id++) {
+			writes.add(deliver(id, "client1", 1, digest("post")));
+		}
+
+		for (Future<?> write : writes) {
+			write.get();
+		}
+		assertEquals(N, (int) servers.stream().mapToLong(ReliableBroadcast::getDelivered).sum());
+	}
+
+	/**
+	 * -- Test Description --
+	 * With f servers down the others still deliver, and the
+	 * messages of many writes are sent in fewer frames
+	 */
+
+	@Test
+	public void testFaultyServerDown() throws Exception {
+		startServers(N - F);
+
+		List<Future<?>> writes = new ArrayList<>();
+		for (int wts = 1; wts <= 50; wts++) {
+			for (int id = 1; id <= N - F; id++) {
+				writes.add(deliver(id, "client1", wts, digest("post" + wts)));
+			}
+		}
+
+		for (Future<?> write : writes) {
+			write.get();
+		}
+		for (int id = 1; id <= N - F; id++) {
+			ReliableBroadcast server = servers.get(id - 1);
+			assertEquals(50, server.getDelivered());
+			assertTrue(server.getFrames() <= server.getMessages());
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * A server that got another post for the same write does
+	 * not deliver it, the ones with the post of the majority do
+	 */
+
+	@Test
+	public void testConflictingPosts() throws Exception {
+		startServers(N);
+
+		List<Future<?>> writes = new ArrayList<>();
+		for (int id = 1; id < N; id++) {
+			writes.add(deliver(id, "client1", 1, digest("post")));
+		}
+		Future<?> other = deliver(N, "client1", 1, digest("other post"));
+
+		for (Future<?> write : writes) {
+			write.get();
+		}
+		try {
+			other.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("Broadcast of client1:1 delivered another post", e.getCause().getMessage());
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * A server with no request for a write delivers it from
+	 * the votes of the others, answers the request that comes
+	 * late, and no server keeps the instance
+	 */
+
+	@Test
+	public void testVotesBeforeRequest() throws Exception {
+		startServers(N);
+
+		List<Future<?>> writes = new ArrayList<>();
+		for (int id = 1; id < N; id++) {
+			writes.add(deliver(id, "client1", 1, digest("post")));
+		}
+		for (Future<?> write : writes) {
+			write.get();
+		}
+
+		long deadline = System.currentTimeMillis() + ReliableBroadcast.TIMEOUT;
+		while (servers.get(N - 1).getDelivered() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, servers.get(N - 1).getDelivered());
+		for (ReliableBroadcast server : servers) {
+			assertEquals(0, server.getInstances());
+		}
+
+		deliver(N, "client1", 1, digest("post")).get();
+		assertEquals(0, servers.get(N - 1).getInstances());
+	}
+
+	/**
+	 * -- Test Description --
+	 * With fewer than 2f + 1 servers up a write fails without
+	 * waiting for the timeout
+	 */
+
+	@Test
+	public void testTooFewServers() throws Exception {
+		startServers(2 * F);
+
+		long start = System.currentTimeMillis();
+		try {
+			deliver(1, "client1", 1, digest("post")).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("Broadcast of client1:1 cannot be delivered, 2 servers reachable", e.getCause().getMessage());
+		}
+		assertTrue(System.currentTimeMillis() - start < ReliableBroadcast.TIMEOUT);
+		assertEquals(0, servers.get(0).getInstances());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A server started after the others delivered gets the
+	 * frames it missed, and delivers the write
+	 */
+
+	@Test
+	public void testServerBackLater() throws Exception {
+		startServers(N - F);
+
+		List<Future<?>> writes = new ArrayList<>();
+		for (int id = 1; id <= N - F; id++) {
+			writes.add(deliver(id, "client1", 1, digest("post")));
+		}
+		for (Future<?> write : writes) {
+			write.get();
+		}
+
+		servers.get(N - 1).start();
+		deliver(N, "client1", 1, digest("post")).get();
+		assertEquals(1, servers.get(N - 1).getDelivered());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A peer connection announcing a frame longer than a
+	 * batch is closed before the frame is read
+	 */
+
+	@Test
+	public void testOversizedFrame() throws Exception {
+		startServers(1);
+
+		try (Socket socket = new Socket("localhost", PeerTransport.PORT_START + 1)) {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(Integer.MAX_VALUE);
+			out.flush();
+
+			socket.setSoTimeout(ReliableBroadcast.TIMEOUT);
+			assertEquals(-1, socket.getInputStream().read());
+		}
+	}
+
+	@After
+	public void cleanup() {
+		executor.shutdownNow();
+		for (ReliableBroadcast server : servers) {
+			server.stop();
+		}
+	}
+
+	// --- Auxiliary functions -------------
+
+	private void startServers(int count) throws Exception {
+		for (int id = 1; id <= count; id++) {
+			servers.get(id - 1).start();
+		}
+	}
+
+	private Future<?> deliver(int id, String writer, int wts, byte[] digest) {
+		return executor.submit(() -> servers.get(id - 1).deliver(writer, wts, digest));
+	}
+
+	private byte[] digest(String message) {
+		return CryptoTools.encoder().string("client1").string(message).digest();
+	}
+}
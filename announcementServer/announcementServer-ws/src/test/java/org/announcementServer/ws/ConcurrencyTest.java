@@ -0,0 +1,189 @@
+package org.announcementServer.ws;
+
+import static org.announcementServer.ws.TestTools.announcement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.announcementserver.ws.AnnouncementMessage;
+import org.announcementserver.ws.AnnouncementServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrencyTest {
+	private static final String SERVER_ID = "concurrencyTest";
+	private static final String[] CLIENTS = { "client1", "client2", "client3" };
+	private static final int OPERATIONS = 200;
+
+	AnnouncementServer instance;
+	ExecutorService executor;
+
+	@Before
+	public void start() {
+		instance = TestTools.server(SERVER_ID);
+		executor = Executors.newFixedThreadPool(CLIENTS.length + 1);
+
+		for (String client : CLIENTS) {
+			instance.register(client);
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * Operations no longer synchronize on the server object:
+	 * while another thread holds its monitor, posts and reads
+	 * on every board still complete
+	 */
+
+	@Test
+	public void testOperationsDoNotUseServerMonitor() throws Exception {
+		synchronized (instance) {
+			Future<?> post = executor.submit(() -> instance.post(announcement("client1", 1), 0));
+			Future<?> postGeneral = executor.submit(() -> instance.postGeneral(announcement("client2", 1), 0));
+			Future<?> read = executor.submit(() -> instance.read("client3", "client1", 0, 0));
+
+			post.get(10, TimeUnit.SECONDS);
+			postGeneral.get(10, TimeUnit.SECONDS);
+			read.get(10, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * Clients hammering their own boards, the general board and each
+	 * other's boards at the same time neither deadlock nor lose updates
+	 */
+
+	@Test
+	public void testContendedOperationsKeepConsistentState() throws Exception {
+		List<Callable<Void>> tasks = new ArrayList<>();
+		// General posts must not be older than the last one their author read
+		AtomicInteger generalWts = new AtomicInteger();
+
+		for (final String client : CLIENTS) {
+			tasks.add(() -> {
+				int sn = 0;
+				for (int i = 1; i <= OPERATIONS; i++) {
+					switch (i % 4) {
+					case 0:
+						instance.postGeneral(announcement(client, generalWts.incrementAndGet()), sn++);
+						break;
+					case 1:
+						instance.read(client, CLIENTS[i % CLIENTS.length], 0, sn++);
+						break;
+					case 2:
+						instance.readGeneral(client, 1, sn++);
+						break;
+					default:
+						instance.post(announcement(client, i), sn++);
+					}
+				}
+				return null;
+			});
+		}
+
+		for (Future<Void> result : executor.invokeAll(tasks, 60, TimeUnit.SECONDS)) {
+			result.get();
+		}
+
+		int generalPosts = OPERATIONS / 4;
+		int personalPosts = OPERATIONS / 4;
+
+		for (String client : CLIENTS) {
+			assertEquals(Integer.valueOf(OPERATIONS), instance.sns.get(client));
+			assertEquals(personalPosts, instance.read(client, client, 0, OPERATIONS).size());
+		}
+		assertEquals(CLIENTS.length * generalPosts, instance.readGeneral("client1", 0, OPERATIONS + 1).size());
+	}
+
+	/**
+	 * -- Test Description --
+	 * While one client's lock is held, its own post waits but
+	 * another client still posts to its board and to the
+	 * general board
+	 */
+
+	@Test
+	public void testOtherClientsProgressWhileOneIsLocked() throws Exception {
+		Lock locked = instance.clientLock("client1");
+		Future<?> blocked;
+
+		locked.lock();
+		try {
+			blocked = executor.submit(() -> instance.post(announcement("client1", 1), 0));
+			Future<?> post = executor.submit(() -> instance.post(announcement("client2", 1), 0));
+			post.get(10, TimeUnit.SECONDS);
+			Future<?> postGeneral = executor.submit(() -> instance.postGeneral(announcement("client2", 2), 1));
+			postGeneral.get(10, TimeUnit.SECONDS);
+
+			assertFalse(blocked.isDone());
+			assertEquals(1, instance.read("client3", "client2", 0, 0).size());
+			assertTrue(instance.read("client3", "client1", 0, 1).isEmpty());
+		} finally {
+			locked.unlock();
+		}
+
+		blocked.get(10, TimeUnit.SECONDS);
+		assertEquals(1, instance.read("client3", "client1", 0, 2).size());
+	}
+
+	/**
+	 * -- Test Description --
+	 * Write backs lock both the sender and the writer; two clients
+	 * writing back each other's boards must not deadlock
+	 */
+
+	@Test
+	public void testCrossWriteBacksDoNotDeadlock() throws Exception {
+		instance.post(announcement("client1", 1), 0);
+		instance.post(announcement("client2", 1), 0);
+
+		Future<?> first = executor.submit(() -> {
+			for (int i = 1; i <= OPERATIONS; i++) {
+				instance.writeBack("client1", messages("client2", i), i);
+			}
+		});
+		Future<?> second = executor.submit(() -> {
+			for (int i = 1; i <= OPERATIONS; i++) {
+				instance.writeBack("client2", messages("client1", i), i);
+			}
+		});
+
+		first.get(60, TimeUnit.SECONDS);
+		second.get(60, TimeUnit.SECONDS);
+
+		assertEquals(Integer.valueOf(OPERATIONS), instance.wtss.get("client1"));
+		assertEquals(Integer.valueOf(OPERATIONS), instance.wtss.get("client2"));
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		executor.shutdownNow();
+		TestTools.cleanup(SERVER_ID);
+	}
+
+	// --- Auxiliary functions -------------
+
+	private List<AnnouncementMessage> messages(String writer, Integer wts) {
+		List<AnnouncementMessage> res = new ArrayList<>();
+		AnnouncementMessage message = new AnnouncementMessage();
+		message.setWriter(writer);
+		message.setMessage("post" + wts);
+		message.setWts(wts);
+		message.setType("Personal");
+		message.setSignature("signature");
+		res.add(message);
+		return res;
+	}
+}
@@ -1,6 +1,5 @@
 package org.announcementServer.ws;
 
-import org.announcementserver.ws.AnnouncementServer;
 import org.announcementserver.ws.AnnouncementServerProxy;
 import org.announcementserver.ws.Announcement;
 import org.announcementserver.common.*;
@@ -33,10 +32,13 @@ import org.announcementserver.ws.AnnouncementMessage;
 
 
 public class CryptoTest {
+	private static final String SERVER_ID = "cryptoTest";
+
 	AnnouncementServerProxy instance;
 	
 	@Before
 	public void start() {
+		TestTools.server(SERVER_ID);
 		instance = AnnouncementServerProxy.getInstance();
 	}
 	
@@ -58,16 +60,17 @@ public class CryptoTest {
 		exceptionRule.expectMessage("Error: Possible tampering detected on Hash");
 		
 		instance.setId("server1");
-		List<String> toHash = new ArrayList<>();
 		
 		RegisterReq request = new RegisterReq();
 		request.setSender("client1");
 		request.setDestination("server1");
 		
-		toHash.add(request.getSender());
-		toHash.add("this is a broken hash");
+		byte[] hash = CryptoTools.encoder()
+			.string(request.getSender())
+			.string("this is a broken hash")
+			.digest();
 		
-		String signature = CryptoTools.makeSignature(toHash.toArray(new String[0]));
+		String signature = CryptoTools.makeSignature(request.getSender(), hash);
 		request.setSignature(signature);
 		
 		instance.register(request);
@@ -113,16 +116,19 @@ public class CryptoTest {
 		exceptionRule.expectMessage("Sequence numbers don't match");
 		
 		instance.setId("server1");
-		List<String> toHash = new ArrayList<>();
 		
 		RegisterReq request = new RegisterReq();
 		request.setSender("client1");
 		request.setDestination("server1");
+		request.setNonce(TestTools.nonce(instance, "client1", "server1"));
 		
-		toHash.add(request.getSender());
-		toHash.add(request.getDestination());
+		byte[] hash = CryptoTools.encoder()
+			.string(request.getSender())
+			.string(request.getDestination())
+			.string(request.getNonce())
+			.digest();
 		
-		String signature = CryptoTools.makeSignature(toHash.toArray(new String[0])); 
+		String signature = CryptoTools.makeSignature(request.getSender(), hash); 
 		request.setSignature(signature);
 		
 		instance.register(request);
@@ -141,20 +147,20 @@ public class CryptoTest {
 		post.setWts(1);
 		post.setType("Personal");
 		
-		List<String> messHash = AnnouncementTools.postToSign(post, false);
+		byte[] messHash = AnnouncementTools.encodePost(CryptoTools.encoder(), post, false).digest();
 		
-		String messSig = CryptoTools.makeSignature(messHash.toArray(new String[0]));
+		String messSig = CryptoTools.makeSignature("client1", messHash);
 		
 		post.setSignature(messSig);
 		writeRequest.setAnnouncement(post);
 		
-		toHash = new ArrayList<>();
-		toHash.add("client1");
-		toHash.add("server1");
-		toHash.add(String.valueOf(0));
-		toHash.addAll(AnnouncementTools.postToSign(post, true));
+		MessageEncoder encoder = CryptoTools.encoder()
+			.string("client1")
+			.string("server1")
+			.number(0);
+		hash = AnnouncementTools.encodePost(encoder, post, true).digest();
 		
-		signature = CryptoTools.makeSignature(toHash.toArray(new String[0]));
+		signature = CryptoTools.makeSignature("client1", hash);
 		
 		writeRequest.setSignature(signature);
 		
@@ -164,8 +170,8 @@ public class CryptoTest {
 	}
 	
 	@After
-	public void cleanup() {
-		AnnouncementServer.getInstance().clean();
+	public void cleanup() throws Exception {
+		TestTools.cleanup(SERVER_ID);
 	}
 	
 	
@@ -0,0 +1,91 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.announcementserver.utils.GroupCommit;
+import org.announcementserver.utils.OperationLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GroupCommitTest {
+
+	private File file;
+	private OperationLog log;
+	private GroupCommit commit;
+
+	@Before
+	public void start() throws IOException {
+		file = File.createTempFile("groupCommitTest", ".wal");
+		log = new OperationLog(file);
+		commit = new GroupCommit("groupCommitTest", log, 0, null);
+	}
+
+	/**
+	 * -- Test Description --
+	 * Once a write fails, that record and every later one
+	 * fail, and none of them reaches the file
+	 */
+
+	@Test
+	public void testFailureIsFatal() throws Exception {
+		commit.submit(new byte[] { 1 }).get(5, TimeUnit.SECONDS);
+
+		log.close(); // the next write fails
+		assertFailed(commit.submit(new byte[] { 2 }));
+		assertFailed(commit.submit(new byte[] { 3 }));
+
+		assertEquals(1, records());
+	}
+
+	/**
+	 * -- Test Description --
+	 * Records queued before close are committed, the ones
+	 * submitted after it fail at once
+	 */
+
+	@Test
+	public void testSubmitAfterClose() throws Exception {
+		CompletableFuture<Void> queued = commit.submit(new byte[] { 1 });
+		commit.close();
+
+		queued.get(5, TimeUnit.SECONDS);
+		CompletableFuture<Void> late = commit.submit(new byte[] { 2 });
+		assertTrue(late.isCompletedExceptionally());
+
+		assertEquals(1, records());
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		commit.close();
+		file.delete();
+	}
+
+	// --- Auxiliary functions -------------
+
+	private void assertFailed(CompletableFuture<Void> record) throws Exception {
+		try {
+			record.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+
+	private int records() throws IOException {
+		List<Long> lsns = new ArrayList<>();
+		OperationLog.read(file, (lsn, record) -> lsns.add(lsn));
+		return lsns.size();
+	}
+}
@@ -0,0 +1,79 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.security.KeyStoreException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.common.KeyCache;
+import org.junit.Test;
+
+public class KeyCacheTest {
+	private static final String DIRECTORY = "src/main/resources/";
+
+	/**
+	 * -- Test Description --
+	 * Keys are read from the keystore once and then
+	 * served from memory
+	 */
+
+	@Test
+	public void testKeysAreLoadedOnce() throws Exception {
+		KeyCache keys = new KeyCache(DIRECTORY);
+
+		PublicKey publicKey = keys.getPublicKey("client1");
+		PrivateKey privateKey = keys.getPrivateKey("client1");
+
+		assertSame(publicKey, keys.getPublicKey("client1"));
+		assertSame(privateKey, keys.getPrivateKey("client1"));
+	}
+
+	/**
+	 * -- Test Description --
+	 * Reloading a principal reads its keystore again
+	 * and leaves the other principals cached
+	 */
+
+	@Test
+	public void testReload() throws Exception {
+		KeyCache keys = new KeyCache(DIRECTORY);
+		keys.preload("client1", "server1");
+
+		// Certificates, and so public keys, may be shared by the JDK between loads
+		PrivateKey client = keys.getPrivateKey("client1");
+		PrivateKey server = keys.getPrivateKey("server1");
+
+		keys.reload("client1");
+
+		assertNotSame(client, keys.getPrivateKey("client1"));
+		assertArrayEquals(client.getEncoded(), keys.getPrivateKey("client1").getEncoded());
+		assertSame(server, keys.getPrivateKey("server1"));
+
+		keys.reloadAll();
+
+		assertNotSame(server, keys.getPrivateKey("server1"));
+	}
+
+	/**
+	 * -- Test Description --
+	 * The cache serves the same keys CryptoTools signs with
+	 */
+
+	@Test
+	public void testSignatureWithCachedKeys() throws Exception {
+		String hash = CryptoTools.makeHash("client1", "server1");
+		String signature = CryptoTools.makeSignature("client1", "server1");
+
+		assertEquals(hash, CryptoTools.decryptSignature("client1", signature));
+	}
+
+	@Test(expected = KeyStoreException.class)
+	public void testUnknownPrincipal() throws Exception {
+		new KeyCache(DIRECTORY).getPublicKey("client42");
+	}
+}
@@ -0,0 +1,113 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import javax.xml.ws.BindingProvider;
+
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.ws.AnnouncementServerPortType;
+import org.announcementserver.ws.AnnouncementServerService;
+import org.announcementserver.ws.LocalCluster;
+import org.announcementserver.ws.NonceReq;
+import org.announcementserver.ws.RegisterReq;
+import org.announcementserver.ws.RegisterRet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocalClusterTest {
+	private static final File DIRECTORY = new File("target/localClusterTest");
+
+	LocalCluster cluster;
+
+	@Before
+	public void start() throws Exception {
+		delete(DIRECTORY);
+		cluster = new LocalCluster("localhost", 1, DIRECTORY, false);
+		cluster.start();
+	}
+
+	@After
+	public void stop() {
+		cluster.stop();
+		delete(DIRECTORY);
+	}
+
+	/**
+	 * -- Test Description --
+	 * Each server of the cluster answers on its own port, from
+	 * its own state, logged to its own directory
+	 */
+
+	@Test
+	public void testServersKeepStateApart() throws Exception {
+		assertEquals(4, cluster.size());
+
+		RegisterRet ret = register(2);
+
+		assertEquals("server2", ret.getSender());
+		assertEquals(Arrays.asList("client1"), cluster.server(2).registered());
+		for (int id : new int[] { 1, 3, 4 }) {
+			assertTrue(cluster.server(id).registered().isEmpty());
+		}
+		assertTrue(new File(DIRECTORY, "server2/server2Log.wal").length() > 0);
+		assertFalse(new File("src/main/resources/server2Log.wal").exists());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A cluster started again on the same directory recovers
+	 * the state of every server
+	 */
+
+	@Test
+	public void testRestartRecovers() throws Exception {
+		register(1);
+		register(4);
+
+		cluster.stop();
+		cluster = new LocalCluster("localhost", 1, DIRECTORY, false);
+		cluster.start();
+
+		assertEquals(Arrays.asList("client1"), cluster.server(1).registered());
+		assertTrue(cluster.server(2).registered().isEmpty());
+		assertEquals(Arrays.asList("client1"), cluster.server(4).registered());
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* client1 registers with server `id` through its endpoint */
+	private RegisterRet register(int id) throws Exception {
+		AnnouncementServerPortType port = new AnnouncementServerService().getAnnouncementServerPort();
+		((BindingProvider) port).getRequestContext().put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY, cluster.url(id));
+
+		NonceReq nonce = new NonceReq();
+		nonce.setSender("client1");
+		nonce.setDestination("server" + id);
+
+		RegisterReq request = new RegisterReq();
+		request.setSender("client1");
+		request.setDestination("server" + id);
+		request.setNonce(port.nonce(nonce).getNonce());
+		request.setSignature(CryptoTools.makeSignature("client1", CryptoTools.encoder()
+			.string("client1")
+			.string("server" + id)
+			.string(request.getNonce())
+			.digest()));
+
+		return port.register(request);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) delete(child);
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,102 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.common.MessageEncoder;
+import org.junit.Test;
+
+public class MessageEncoderTest {
+
+	/**
+	 * -- Test Description --
+	 * Fields are length prefixed, so moving bytes from one
+	 * field to the next changes the hash
+	 */
+
+	@Test
+	public void testFieldBoundaries() {
+		byte[] first = CryptoTools.encoder().string("client1").string("server1").digest();
+		byte[] second = CryptoTools.encoder().string("client1server").string("1").digest();
+
+		assertFalse(Arrays.equals(first, second));
+	}
+
+	/**
+	 * -- Test Description --
+	 * Nulls, empty values and their string forms
+	 * are all encoded differently
+	 */
+
+	@Test
+	public void testNullsAreExplicit() {
+		byte[] nullString = CryptoTools.encoder().string(null).digest();
+		byte[] literal = CryptoTools.encoder().string("null").digest();
+		byte[] empty = CryptoTools.encoder().string("").digest();
+		byte[] nullNumber = CryptoTools.encoder().number(null).digest();
+		byte[] zero = CryptoTools.encoder().number(0).digest();
+
+		assertFalse(Arrays.equals(nullString, literal));
+		assertFalse(Arrays.equals(nullString, empty));
+		assertFalse(Arrays.equals(nullNumber, zero));
+		assertFalse(Arrays.equals(CryptoTools.encoder().strings(Arrays.asList("a", "b")).digest(),
+			CryptoTools.encoder().strings(Arrays.asList("ab")).digest()));
+	}
+
+	/**
+	 * -- Test Description --
+	 * The encoding matches its specification: big endian lengths
+	 * and numbers, UTF-8 text, including long and non ASCII strings
+	 */
+
+	@Test
+	public void testEncoding() throws Exception {
+		char[] filler = new char[1000];
+		Arrays.fill(filler, 'é');
+		String text = "olá € 😀 " + new String(filler);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(utf8.length);
+		out.write(utf8);
+		out.writeByte(1);
+		out.writeInt(-7);
+		out.writeInt(-1);
+
+		byte[] expected = MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+		byte[] encoded = new MessageEncoder(MessageDigest.getInstance("SHA-256"))
+			.string(text)
+			.number(-7)
+			.string(null)
+			.digest();
+
+		assertArrayEquals(expected, encoded);
+	}
+
+	/**
+	 * -- Test Description --
+	 * An encoder is reused after digest, and reset
+	 * drops a partially encoded message
+	 */
+
+	@Test
+	public void testReuse() {
+		byte[] first = CryptoTools.encoder().string("client1").number(3).digest();
+
+		MessageEncoder encoder = CryptoTools.encoder().string("partial");
+		encoder.reset();
+		byte[] second = encoder.string("client1").number(3).digest();
+		byte[] third = encoder.string("client1").number(3).digest();
+
+		assertArrayEquals(first, second);
+		assertArrayEquals(first, third);
+	}
+}
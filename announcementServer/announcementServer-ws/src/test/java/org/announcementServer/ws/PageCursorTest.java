@@ -0,0 +1,75 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.announcementserver.utils.PageCursor;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementBoard;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PageCursorTest {
+
+	private AnnouncementBoard board;
+
+	@Before
+	public void start() {
+		board = new AnnouncementBoard();
+		for (int i = 1; i <= 10; i++) {
+			board.add(new Announcement("client1", "post" + i, i));
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * A cursor resumes right after its page, also
+	 * once more posts were added to the board
+	 */
+
+	@Test
+	public void testResumeAfterPage() {
+		String cursor = PageCursor.make("client1", board.snapshot().range(0, 4));
+		board.add(new Announcement("client1", "post11", 11));
+
+		AnnouncementBoard.Snapshot rest = PageCursor.resume(cursor, "client1", board.snapshot());
+
+		assertEquals(7, rest.size());
+		assertEquals("post5", rest.get(0).getContent());
+	}
+
+	/**
+	 * -- Test Description --
+	 * Forged cursors, cursors of other boards and cursors
+	 * into a board that changed before them are refused
+	 */
+
+	@Test
+	public void testInvalidCursorsAreRefused() {
+		String cursor = PageCursor.make("client1", board.snapshot().range(0, 4));
+		char[] forged = cursor.toCharArray();
+		forged[forged.length / 2] = (forged[forged.length / 2] == 'A') ? 'B' : 'A';
+
+		AnnouncementBoard late = new AnnouncementBoard();
+		late.add(new Announcement("client2", "late", 1));
+		for (Announcement announcement : board.snapshot()) {
+			late.add(announcement);
+		}
+
+		assertRefused(new String(forged), "client1", board);
+		assertRefused(cursor, "general", board);
+		assertRefused(cursor, "client1", late);
+		assertRefused("not a cursor", "client1", board);
+	}
+
+	// --- Auxiliary functions -------------
+
+	private void assertRefused(String cursor, String name, AnnouncementBoard on) {
+		try {
+			PageCursor.resume(cursor, name, on.snapshot());
+			fail();
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+}
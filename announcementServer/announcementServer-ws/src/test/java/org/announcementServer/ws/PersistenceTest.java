@@ -0,0 +1,260 @@
+package org.announcementServer.ws;
+
+import static org.announcementServer.ws.TestTools.announcement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.announcementserver.utils.PersistenceUtils;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PersistenceTest {
+	private static final String SERVER_ID = "persistenceTest";
+
+	AnnouncementServer instance;
+
+	@Before
+	public void start() {
+		instance = TestTools.server(SERVER_ID);
+	}
+
+	/**
+	 * -- Test Description --
+	 * The state is rebuilt from the last snapshot plus
+	 * the operations logged after it
+	 */
+
+	@Test
+	public void testRecoverSnapshotAndLogTail() {
+		instance.register("client1");
+		instance.post(announcement("client1", "first", 1), 0);
+
+		PersistenceUtils.serialize(instance, SERVER_ID);
+
+		instance.post(announcement("client1", "second", 2), 1);
+		instance.readGeneral("client1", 0, 2);
+
+		AnnouncementServer recovered = restart();
+
+		assertEquals(Integer.valueOf(3), recovered.sns.get("client1"));
+		assertEquals(Integer.valueOf(2), recovered.wtss.get("client1"));
+		assertEquals(Integer.valueOf(1), recovered.expectedWts.get("client1"));
+
+		List<Announcement> board = recovered.read("client1", "client1", 0, 3);
+		assertEquals(2, board.size());
+		assertEquals("second", board.get(1).getContent());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A record that was only partially written before a crash
+	 * is discarded, and the log keeps accepting operations
+	 */
+
+	@Test
+	public void testTornRecordIsIgnored() throws IOException {
+		instance.register("client1");
+		instance.post(announcement("client1", "first", 1), 0);
+
+		try (FileOutputStream log = new FileOutputStream(logFile(), true)) {
+			log.write(new byte[] { 0, 0, 0, 42, 1, 2, 3 });
+		}
+
+		AnnouncementServer recovered = restart();
+		assertEquals(Integer.valueOf(1), recovered.sns.get("client1"));
+
+		recovered.post(announcement("client1", "second", 2), 1);
+
+		recovered = restart();
+		assertEquals(Integer.valueOf(2), recovered.sns.get("client1"));
+		assertEquals(Integer.valueOf(2), recovered.wtss.get("client1"));
+	}
+
+	/**
+	 * -- Test Description --
+	 * A last record whose checksum fails is a torn tail and
+	 * is cut off, one followed by valid records is corruption
+	 * and recovery refuses the log
+	 */
+
+	@Test
+	public void testCorruptedRecordIsRefused() throws IOException {
+		instance.register("client1");
+		instance.post(announcement("client1", "first", 1), 0);
+		instance.post(announcement("client1", "second", 2), 1);
+		PersistenceUtils.close(SERVER_ID);
+
+		flip(logFile().length() - 1);
+		AnnouncementServer recovered = restart();
+		assertEquals(Integer.valueOf(1), recovered.wtss.get("client1"));
+		PersistenceUtils.close(SERVER_ID);
+
+		flip(20); // inside the first record
+		try {
+			restart();
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Log persistenceTestLog.wal is corrupted at offset 0", e.getMessage());
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * Operations from concurrent clients are committed in
+	 * shared batches and every acknowledged one survives a restart
+	 */
+
+	@Test
+	public void testConcurrentOperationsAreDurable() throws InterruptedException {
+		final String[] clients = { "client1", "client2", "client3" };
+		final int operations = 50;
+		List<Thread> threads = new ArrayList<>();
+
+		for (final String client : clients) {
+			instance.register(client);
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < operations; i++) {
+					instance.post(announcement(client, "post" + i, i + 1), i);
+				}
+			}));
+		}
+
+		for (Thread thread : threads) thread.start();
+		for (Thread thread : threads) thread.join();
+
+		assertEquals(clients.length * (operations + 1), PersistenceUtils.getStats(SERVER_ID).getRecords());
+
+		AnnouncementServer recovered = restart();
+
+		for (String client : clients) {
+			assertEquals(Integer.valueOf(operations), recovered.sns.get(client));
+			assertEquals(Integer.valueOf(operations), recovered.wtss.get(client));
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * After two snapshots the older segment is gone, and a
+	 * damaged snapshot is recovered from the backup and the
+	 * segments kept after it
+	 */
+
+	@Test
+	public void testBackupReplaysKeptSegments() throws IOException {
+		snapshotTwice();
+
+		assertFalse(file("Log-1.wal").exists());
+		assertTrue(file("Log-2.wal").exists());
+
+		damage(file("State.ser"));
+		AnnouncementServer recovered = restart();
+
+		assertEquals(Integer.valueOf(3), recovered.sns.get("client1"));
+		assertEquals(Integer.valueOf(3), recovered.wtss.get("client1"));
+		assertEquals("third", recovered.read("client1", "client1", 0, 3).get(2).getContent());
+	}
+
+	/**
+	 * -- Test Description --
+	 * Recovery refuses a log missing the records between
+	 * the snapshot and the ones replayed
+	 */
+
+	@Test
+	public void testGapAfterSnapshotIsRefused() throws IOException {
+		snapshotTwice();
+
+		damage(file("State.ser"));
+		assertTrue(file("Log-2.wal").delete());
+
+		try {
+			restart();
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Log of persistenceTest is missing the records after lsn 2", e.getMessage());
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * A request to a server whose log was not opened
+	 * fails and leaves the files of the previous run
+	 */
+
+	@Test
+	public void testClosedLogKeepsFiles() {
+		instance.register("client1");
+		instance.post(announcement("client1", "first", 1), 0);
+		PersistenceUtils.close(SERVER_ID);
+
+		try {
+			instance.post(announcement("client1", "second", 2), 1);
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("No log opened for persistenceTest", e.getMessage());
+		}
+		assertTrue(logFile().exists());
+
+		AnnouncementServer recovered = restart();
+
+		assertEquals(Integer.valueOf(1), recovered.wtss.get("client1"));
+		assertEquals(1, recovered.read("client1", "client1", 0, 1).size());
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		TestTools.cleanup(SERVER_ID);
+	}
+
+	// --- Auxiliary functions -------------
+
+	private AnnouncementServer restart() {
+		return TestTools.restart(SERVER_ID);
+	}
+
+	private File logFile() {
+		return file("Log.wal");
+	}
+
+	private File file(String name) {
+		return new File(PersistenceUtils.FILEPATH + SERVER_ID + name);
+	}
+
+	/* Registration and first post, snapshot, second post, snapshot, third post */
+	private void snapshotTwice() {
+		instance.register("client1");
+		instance.post(announcement("client1", "first", 1), 0);
+		PersistenceUtils.serialize(instance, SERVER_ID);
+		instance.post(announcement("client1", "second", 2), 1);
+		PersistenceUtils.serialize(instance, SERVER_ID);
+		instance.post(announcement("client1", "third", 3), 2);
+	}
+
+	/* Flips the bits of one byte of the log */
+	private void flip(long offset) throws IOException {
+		try (RandomAccessFile log = new RandomAccessFile(logFile(), "rw")) {
+			log.seek(offset);
+			int value = log.read();
+			log.seek(offset);
+			log.write(~value);
+		}
+	}
+
+	private void damage(File file) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(new byte[] { 1, 2, 3 });
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.announcementserver.ws.ServerExecutor;
+import org.junit.After;
+import org.junit.Test;
+
+public class ServerExecutorTest {
+
+	private ServerExecutor executor = new ServerExecutor("bounded", 2, 3);
+
+	@After
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * -- Test Description --
+	 * Requests within the threads and the queue are run
+	 * normally, the ones beyond it are shed at once, while
+	 * the others are still blocked
+	 */
+
+	@Test
+	public void testShedsBeyondQueue() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch shedDone = new CountDownLatch(2);
+		AtomicBoolean normalShed = new AtomicBoolean(false);
+		AtomicInteger shed = new AtomicInteger();
+
+		for (int i = 0; i < 5; i++) {
+			executor.execute(() -> {
+				if (ServerExecutor.shedding()) normalShed.set(true);
+				await(release);
+			});
+		}
+		for (int i = 0; i < 2; i++) {
+			executor.execute(() -> {
+				if (ServerExecutor.shedding()) shed.incrementAndGet();
+				shedDone.countDown();
+			});
+		}
+
+		assertTrue(shedDone.await(5, TimeUnit.SECONDS));
+		assertEquals(2, shed.get());
+		assertEquals(2, executor.getShed());
+
+		release.countDown();
+		assertFalse(normalShed.get());
+	}
+
+	/**
+	 * -- Test Description --
+	 * Once the backlog drains, requests are accepted again
+	 */
+
+	@Test
+	public void testAcceptsAfterDrain() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch blocked = new CountDownLatch(5);
+
+		for (int i = 0; i < 5; i++) {
+			executor.execute(() -> {
+				await(release);
+				blocked.countDown();
+			});
+		}
+		release.countDown();
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+		CountDownLatch done = new CountDownLatch(1);
+		AtomicBoolean shed = new AtomicBoolean(true);
+		// pending is released just after the request ends
+		Thread.sleep(100);
+		executor.execute(() -> {
+			shed.set(ServerExecutor.shedding());
+			done.countDown();
+		});
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertFalse(shed.get());
+		assertEquals(0, executor.getShed());
+	}
+
+	/**
+	 * -- Test Description --
+	 * Requests beyond the shedding queue are dropped, and
+	 * the shed ones still waiting do not keep the workers'
+	 * requests out
+	 */
+
+	@Test
+	public void testDropsBeyondShedQueue() throws Exception {
+		ServerExecutor small = new ServerExecutor("bounded", 1, 0, 1);
+		CountDownLatch releaseWorker = new CountDownLatch(1);
+		CountDownLatch releaseShed = new CountDownLatch(1);
+		CountDownLatch shedRunning = new CountDownLatch(1);
+		try {
+			small.execute(() -> await(releaseWorker));
+			small.execute(() -> {
+				shedRunning.countDown();
+				await(releaseShed);
+			});
+			assertTrue(shedRunning.await(5, TimeUnit.SECONDS));
+			small.execute(() -> {}); // waits for the shedding thread
+
+			try {
+				small.execute(() -> {});
+				fail();
+			} catch (RejectedExecutionException e) {
+				assertEquals(1, small.getDropped());
+			}
+			assertEquals(2, small.getShed());
+
+			releaseWorker.countDown();
+			// pending is released just after the request ends
+			Thread.sleep(100);
+
+			CountDownLatch done = new CountDownLatch(1);
+			AtomicBoolean shed = new AtomicBoolean(true);
+			small.execute(() -> {
+				shed.set(ServerExecutor.shedding());
+				done.countDown();
+			});
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertFalse(shed.get());
+		} finally {
+			releaseShed.countDown();
+			small.shutdown();
+		}
+	}
+
+	// --- Auxiliary functions -------------
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.crypto.SecretKey;
+
+import org.announcementserver.common.Constants;
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.common.MessageEncoder;
+import org.announcementserver.utils.AnnouncementTools;
+import org.announcementserver.ws.AnnouncementMessage;
+import org.announcementserver.ws.AnnouncementServerProxy;
+import org.announcementserver.ws.RegisterReq;
+import org.announcementserver.ws.WriteReq;
+import org.announcementserver.ws.WriteRet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SessionTest {
+	private static final String SERVER_ID = "sessionTest";
+
+	AnnouncementServerProxy instance;
+	SecretKey session;
+
+	@Before
+	public void start() throws Exception {
+		TestTools.server(SERVER_ID);
+		instance = AnnouncementServerProxy.getInstance();
+		instance.setId("server1");
+
+		session = CryptoTools.newSessionKey();
+		register(CryptoTools.wrapKey("server1", session));
+	}
+
+	/**
+	 * -- Test Description --
+	 * After registering with a session key, a request authenticated
+	 * with it is accepted and the reply is authenticated with it too
+	 */
+
+	@Test
+	public void testRequestWithSessionKey() throws Exception {
+		WriteRet ret = instance.post(post(0, session));
+
+		assertTrue(CryptoTools.isMac(ret.getSignature()));
+		assertTrue(CryptoTools.verifyMac(session, CryptoTools.encoder()
+			.string("server1")
+			.string("client1")
+			.number(ret.getSeqNumber())
+			.digest(), ret.getSignature()));
+	}
+
+	/**
+	 * -- Test Description --
+	 * A request authenticated with another key, or after the
+	 * client registered without one, is refused as such
+	 */
+
+	@Test
+	public void testUnknownSessionKey() throws Exception {
+		try {
+			instance.post(post(0, CryptoTools.newSessionKey()));
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals(Constants.SESSION_INVALID, e.getMessage());
+		}
+
+		register(null);
+
+		try {
+			instance.post(post(0, session));
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals(Constants.SESSION_INVALID, e.getMessage());
+		}
+	}
+
+	/**
+	 * -- Test Description --
+	 * A signed request is still accepted, and answered
+	 * with a signature
+	 */
+
+	@Test
+	public void testSignedRequest() throws Exception {
+		WriteRet ret = instance.post(post(0, null));
+
+		assertFalse(CryptoTools.isMac(ret.getSignature()));
+	}
+
+	/**
+	 * -- Test Description --
+	 * A register request sent again is refused, as is one
+	 * with the nonce handed out to another client
+	 */
+
+	@Test
+	public void testReplayedRegister() throws Exception {
+		RegisterReq request = registerRequest(null, TestTools.nonce(instance, "client1", "server1"));
+		instance.register(request);
+
+		try {
+			instance.register(request);
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals(Constants.NONCE_INVALID, e.getMessage());
+		}
+
+		try {
+			instance.register(registerRequest(null, TestTools.nonce(instance, "client2", "server1")));
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals(Constants.NONCE_INVALID, e.getMessage());
+		}
+
+		instance.register(registerRequest(null, TestTools.nonce(instance, "client1", "server1")));
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		TestTools.cleanup(SERVER_ID);
+	}
+
+	// --- Auxiliary functions -------------
+
+	private void register(String wrapped) throws Exception {
+		instance.register(registerRequest(wrapped, TestTools.nonce(instance, "client1", "server1")));
+	}
+
+	private RegisterReq registerRequest(String wrapped, String nonce) throws Exception {
+		RegisterReq request = new RegisterReq();
+		request.setSender("client1");
+		request.setDestination("server1");
+		request.setNonce(nonce);
+		request.setSessionKey(wrapped);
+
+		MessageEncoder encoder = CryptoTools.encoder()
+			.string("client1")
+			.string("server1")
+			.string(nonce);
+		if (wrapped != null) encoder.string(wrapped);
+		request.setSignature(CryptoTools.makeSignature("client1", encoder.digest()));
+
+		return request;
+	}
+
+	/* Authenticated with `key`, or signed without one */
+	private WriteReq post(int seqNumber, SecretKey key) throws Exception {
+		AnnouncementMessage post = new AnnouncementMessage();
+		post.setWriter("client1");
+		post.setMessage("test");
+		post.setWts(1);
+		post.setType("Personal");
+		post.setSignature(CryptoTools.makeSignature("client1",
+			AnnouncementTools.encodePost(CryptoTools.encoder(), post, false).digest()));
+
+		WriteReq request = new WriteReq();
+		request.setSender("client1");
+		request.setDestination("server1");
+		request.setSeqNumber(seqNumber);
+		request.setAnnouncement(post);
+
+		MessageEncoder encoder = CryptoTools.encoder()
+			.string("client1")
+			.string("server1")
+			.number(seqNumber);
+		byte[] hash = AnnouncementTools.encodePost(encoder, post, true).digest();
+		request.setSignature(key == null ? CryptoTools.makeSignature("client1", hash) : CryptoTools.makeMac(key, hash));
+
+		return request;
+	}
+}
@@ -0,0 +1,83 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+import java.security.PublicKey;
+
+import javax.crypto.BadPaddingException;
+
+import org.announcementserver.common.CryptoTools;
+import org.announcementserver.common.KeyCache;
+import org.announcementserver.common.SignatureProvider;
+import org.junit.Test;
+
+public class SignatureProviderTest {
+	private static final String DIRECTORY = "src/main/resources/";
+
+	/**
+	 * -- Test Description --
+	 * Every scheme verifies its own signatures with the keys of
+	 * its keystores, and no signature of another hash or signer
+	 */
+
+	@Test
+	public void testRsa() throws Exception {
+		checkScheme(SignatureProvider.forName("rsa"));
+	}
+
+	@Test
+	public void testEcdsa() throws Exception {
+		checkScheme(SignatureProvider.forName("ecdsa"));
+	}
+
+	@Test
+	public void testEd25519() throws Exception {
+		SignatureProvider scheme = null;
+		try {
+			scheme = SignatureProvider.forName("ed25519");
+		} catch (RuntimeException e) {
+			assumeNoException(e); // JVM older than 15
+		}
+		checkScheme(scheme);
+	}
+
+	/**
+	 * -- Test Description --
+	 * A malformed signature is not valid
+	 */
+
+	@Test
+	public void testMalformedSignature() throws Exception {
+		SignatureProvider scheme = SignatureProvider.forName("ecdsa");
+		KeyCache keys = new KeyCache(DIRECTORY, scheme.keystores());
+
+		assertFalse(scheme.verify(keys.getPublicKey("client1"), hash("post"), new byte[] { 1, 2, 3 }));
+	}
+
+	// --- Auxiliary functions -------------
+
+	private void checkScheme(SignatureProvider scheme) throws Exception {
+		KeyCache keys = new KeyCache(DIRECTORY, scheme.keystores());
+
+		byte[] signature = scheme.sign(keys.getPrivateKey("client1"), hash("post"));
+
+		assertTrue(verifies(scheme, keys.getPublicKey("client1"), hash("post"), signature));
+		assertFalse(verifies(scheme, keys.getPublicKey("client1"), hash("other post"), signature));
+		assertFalse(verifies(scheme, keys.getPublicKey("client2"), hash("post"), signature));
+	}
+
+	/* rsa throws when the signature is not of the key's owner */
+	private boolean verifies(SignatureProvider scheme, PublicKey key, byte[] hash, byte[] signature) throws Exception {
+		try {
+			return scheme.verify(key, hash, signature);
+		} catch (BadPaddingException e) {
+			return false;
+		}
+	}
+
+	private byte[] hash(String message) {
+		return CryptoTools.encoder().string("client1").string(message).digest();
+	}
+}
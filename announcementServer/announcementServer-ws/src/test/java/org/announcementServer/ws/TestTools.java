@@ -0,0 +1,60 @@
+package org.announcementServer.ws;
+
+import java.io.IOException;
+
+import org.announcementserver.utils.PersistenceUtils;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementServer;
+import org.announcementserver.ws.AnnouncementServerProxy;
+import org.announcementserver.ws.NonceReq;
+
+/*
+* Servers and posts shared by the tests that call an AnnouncementServer
+* directly, logging to PersistenceUtils.FILEPATH
+*/
+
+class TestTools {
+
+	/* A fresh singleton server, the files of a previous run deleted */
+	static AnnouncementServer server(String serverId) {
+		AnnouncementServer.setInstance(null);
+		AnnouncementServer server = AnnouncementServer.getInstance();
+		server.setId(serverId);
+		PersistenceUtils.start(server, serverId);
+		return server;
+	}
+
+	/* The singleton recovered from the server's snapshots and log */
+	static AnnouncementServer restart(String serverId) {
+		AnnouncementServer.setInstance(null);
+		PersistenceUtils.recover(serverId);
+		return AnnouncementServer.getInstance();
+	}
+
+	/* Closes the server's log, deletes its files and drops the singleton */
+	static void cleanup(String serverId) throws IOException {
+		PersistenceUtils.close(serverId);
+		PersistenceUtils.delete(serverId);
+		AnnouncementServer.setInstance(null);
+	}
+
+	/* A nonce the proxy hands out for the client's next register */
+	static String nonce(AnnouncementServerProxy proxy, String client, String server) {
+		NonceReq request = new NonceReq();
+		request.setSender(client);
+		request.setDestination(server);
+		return proxy.nonce(request).getNonce();
+	}
+
+	/* Personal post with a placeholder signature, the server does not check it */
+	static Announcement announcement(String author, Integer wts) {
+		return announcement(author, "post" + wts, wts);
+	}
+
+	static Announcement announcement(String author, String content, Integer wts) {
+		Announcement res = new Announcement(author, content, wts);
+		res.setType("Personal");
+		res.setSignature("signature");
+		return res;
+	}
+}
@@ -0,0 +1,146 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.announcementserver.transfer.StateTransfer;
+import org.announcementserver.utils.PersistenceUtils;
+import org.announcementserver.ws.Announcement;
+import org.announcementserver.ws.AnnouncementServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransferTest {
+	private static final int N = 4;
+	private static final int F = 1;
+	private static final String LAGGARD_ID = "transferTest";
+	private static final int GENERAL_POSTS = 3 * StateTransfer.CHUNK / 2;
+
+	List<AnnouncementServer> peers;
+	List<StateTransfer> transfers;
+	AnnouncementServer laggard;
+	StateTransfer transfer;
+
+	@Before
+	public void start() throws Exception {
+		peers = new ArrayList<>();
+		transfers = new ArrayList<>();
+		for (int id = 1; id < N; id++) {
+			AnnouncementServer peer = AnnouncementServer.create("server" + id);
+			fill(peer, GENERAL_POSTS);
+			peers.add(peer);
+
+			StateTransfer server = new StateTransfer("localhost", id, N, F, peer);
+			server.start();
+			transfers.add(server);
+		}
+
+		laggard = AnnouncementServer.create(LAGGARD_ID);
+		PersistenceUtils.start(laggard, LAGGARD_ID);
+		transfer = new StateTransfer("localhost", N, N, F, laggard);
+	}
+
+	@After
+	public void stop() throws Exception {
+		transfers.forEach(StateTransfer::stop);
+		if (transfer != null) transfer.stop();
+		TestTools.cleanup(LAGGARD_ID);
+	}
+
+	/**
+	 * -- Test Description --
+	 * An empty server gets every board and client of its
+	 * peers, in chunks checked against their digests
+	 */
+
+	@Test
+	public void testEmptyServerCatchesUp() {
+		int added = transfer.catchUp();
+
+		AnnouncementServer peer = peers.get(0);
+		assertEquals(GENERAL_POSTS + 2 * 100, added);
+		assertEquals(peer.registered(), laggard.registered());
+		assertArrayEquals(peer.board(null).head(), laggard.board(null).head());
+		for (String client : peer.registered()) {
+			assertArrayEquals(peer.board(client).head(), laggard.board(client).head());
+			assertEquals(peer.sns.get(client), laggard.sns.get(client));
+			assertEquals(peer.wtss.get(client), laggard.wtss.get(client));
+		}
+		assertEquals(0, transfer.catchUp());
+	}
+
+	/**
+	 * -- Test Description --
+	 * A server behind only gets the posts it lacks, and the
+	 * tampered posts of a faulty peer are never added
+	 */
+
+	@Test
+	public void testFaultyPeerOutvoted() throws Exception {
+		fill(laggard, GENERAL_POSTS / 3);
+
+		// The first peer asked forges a post the laggard does not have
+		AnnouncementServer faulty = AnnouncementServer.create("server1");
+		fill(faulty, GENERAL_POSTS - 1);
+		faulty.putGeneral(new Announcement("client2", "forged", GENERAL_POSTS));
+		transfers.get(0).stop();
+		transfers.set(0, new StateTransfer("localhost", 1, N, F, faulty));
+		transfers.get(0).start();
+
+		int added = transfer.catchUp();
+
+		AnnouncementServer peer = peers.get(1);
+		assertEquals(GENERAL_POSTS - GENERAL_POSTS / 3, added);
+		assertArrayEquals(peer.board(null).head(), laggard.board(null).head());
+		assertEquals("post" + GENERAL_POSTS, laggard.board(null).get(GENERAL_POSTS - 1).getContent());
+	}
+
+	/**
+	 * -- Test Description --
+	 * When every peer misses a different post, the server
+	 * gets all the posts that f + 1 peers hold
+	 */
+
+	@Test
+	public void testPeersMissingDifferentPosts() throws Exception {
+		for (int id = 1; id < N; id++) {
+			AnnouncementServer peer = AnnouncementServer.create("server" + id);
+			fill(peer, GENERAL_POSTS, 1000 * id);
+			transfers.get(id - 1).stop();
+			transfers.set(id - 1, new StateTransfer("localhost", id, N, F, peer));
+			transfers.get(id - 1).start();
+		}
+
+		int added = transfer.catchUp();
+
+		assertEquals(GENERAL_POSTS + 2 * 100, added);
+		assertArrayEquals(peers.get(0).board(null).head(), laggard.board(null).head());
+	}
+
+	// --- Auxiliary functions -------------
+
+	/* Two clients with 100 personal posts each, and `general` posts on the general board */
+	private void fill(AnnouncementServer server, int general) {
+		fill(server, general, 0);
+	}
+
+	/* Same, without the general post of wts `missing` */
+	private void fill(AnnouncementServer server, int general, int missing) {
+		for (String client : new String[] { "client1", "client2" }) {
+			server.addClient(client);
+			server.sns.put(client, 101);
+			server.wtss.put(client, 100);
+			for (int i = 1; i <= 100; i++) {
+				server.putPersonal(client, new Announcement(client, "post" + i, i));
+			}
+		}
+		for (int i = 1; i <= general; i++) {
+			if (i == missing) continue;
+			server.putGeneral(new Announcement((i % 2 == 0) ? "client1" : "client2", "post" + i, i));
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.announcementServer.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.announcementserver.common.Constants;
+import org.announcementserver.ws.AnnouncementMessage;
+import org.announcementserver.ws.AnnouncementServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WriteBackTest {
+	private static final String SERVER_ID = "writeBackTest";
+
+	AnnouncementServer instance;
+
+	@Before
+	public void start() {
+		instance = TestTools.server(SERVER_ID);
+		instance.register("client1");
+		instance.register("client2");
+		instance.post(TestTools.announcement("client1", 1), 0);
+	}
+
+	/**
+	 * -- Test Description --
+	 * The posts the server already has are skipped,
+	 * the ones after them are added
+	 */
+
+	@Test
+	public void testOverlapIsSkipped() {
+		assertEquals(Integer.valueOf(0), instance.writeBack("client2", messages("client1", 1, 3), 0));
+
+		assertEquals(Integer.valueOf(3), instance.wtss.get("client1"));
+		assertEquals(Integer.valueOf(1), instance.sns.get("client2"));
+		assertEquals(3, instance.read("client2", "client1", 0, 1).size());
+	}
+
+	/**
+	 * -- Test Description --
+	 * Posts that do not follow the server's last one are
+	 * refused, without taking the sequence number
+	 */
+
+	@Test
+	public void testGapIsRefused() {
+		try {
+			instance.writeBack("client2", messages("client1", 3, 4), 0);
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals(Constants.WRITEBACK_GAP, e.getMessage());
+		}
+
+		assertEquals(Integer.valueOf(1), instance.wtss.get("client1"));
+		assertEquals(Integer.valueOf(0), instance.sns.get("client2"));
+		assertEquals(1, instance.read("client2", "client1", 0, 0).size());
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		TestTools.cleanup(SERVER_ID);
+	}
+
+	// --- Auxiliary functions -------------
+
+	private List<AnnouncementMessage> messages(String writer, int first, int last) {
+		List<AnnouncementMessage> res = new ArrayList<>();
+		for (int wts = first; wts <= last; wts++) {
+			AnnouncementMessage message = new AnnouncementMessage();
+			message.setWriter(writer);
+			message.setMessage("post" + wts);
+			message.setWts(wts);
+			message.setType("Personal");
+			message.setSignature("signature");
+			res.add(message);
+		}
+		return res;
+	}
+}